@@ -1,7 +1,11 @@
 package net.praqma.jenkins.configrotator;
 
 import net.praqma.jenkins.configrotator.scm.ConfigRotatorChangeLogEntry;
+import hudson.Util;
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
@@ -35,6 +39,34 @@ public abstract class AbstractConfiguration<T extends AbstractConfigurationCompo
         return changedComponents;
     }
 
+    /**
+     * Mark the components that differ from another configuration as changed, and the others as not.
+     *
+     * @param other the other configuration, null to mark all components as changed
+     */
+    public void markChangedSince( AbstractConfiguration<?> other ) {
+        for( int i = 0; i < list.size(); i++ ) {
+            T component = list.get( i );
+            boolean same = other != null && i < other.getList().size() && component.getIdentity().equals( other.getList().get( i ).getIdentity() );
+            component.setChangedLast( !same );
+        }
+    }
+
+    /**
+     * Describe the changed components against another configuration than the previous result, as the steps of a
+     * {@link Bisection} change since the last compatible step.
+     *
+     * @param other the configuration the components changed since, null if there is none
+     */
+    public void describeChangesSince( AbstractConfiguration<?> other ) {
+        StringBuilder builder = new StringBuilder();
+        for( Integer i : getChangedComponentIndecies() ) {
+            String before = other != null && i < other.getList().size() ? other.getList().get( i ).prettyPrint() : "";
+            builder.append( String.format( "%s<br/>%s%n", before, getList().get( i ).prettyPrint() ) );
+        }
+        description = builder.length() > 0 ? builder.toString() : null;
+    }
+
     /**
      * Gets the index of the changed component.
      *
@@ -53,6 +85,27 @@ public abstract class AbstractConfiguration<T extends AbstractConfigurationCompo
         return indicies;
     }
 
+    /**
+     * A fingerprint of the configuration, a hash over the identities of its components, in order.
+     * Configurations with the same fingerprint build the same, also in other jobs.
+     *
+     * @return the fingerprint
+     */
+    public String getFingerprint() {
+        try {
+            MessageDigest digest = MessageDigest.getInstance( "SHA-256" );
+            digest.update( getClass().getName().getBytes( StandardCharsets.UTF_8 ) );
+            for( T component : getList() ) {
+                digest.update( (byte) '\n' );
+                digest.update( component.getIdentity().getBytes( StandardCharsets.UTF_8 ) );
+            }
+            return Util.toHexString( digest.digest() );
+        } catch( NoSuchAlgorithmException e ) {
+            /* Every Java platform has SHA-256 */
+            throw new IllegalStateException( e );
+        }
+    }
+
     @Override
     public String toString() {
         return getClass().getSimpleName() + "[" + list + "]";
@@ -67,17 +120,15 @@ public abstract class AbstractConfiguration<T extends AbstractConfigurationCompo
 
     public String getDescription( ConfigurationRotatorBuildAction action ) {
         if( description == null ) {
-            ConfigurationRotator rotator = (ConfigurationRotator) action.getBuild().getProject().getScm();
             if( getChangedComponents().isEmpty() ) {
                 return "New Configuration - no changes yet";
             } else {
-                ConfigurationRotatorBuildAction previous = rotator.getAcrs().getPreviousResult( action.getBuild(), null );
+                ConfigurationRotatorBuildAction previous = action.getPreviousResult();
                 List<Integer> changes = getChangedComponentIndecies();
-                List<AbstractConfigurationComponent> changedComps = getChangedComponents();
 
                 StringBuilder builder = new StringBuilder();
                 for(Integer i : changes) {
-                   String c = String.format( "%s<br/>%s%n", ((T)previous.getConfigurationWithOutCast().getList().get( i) ).prettyPrint(), changedComps.get(i).prettyPrint() );
+                   String c = String.format( "%s<br/>%s%n", ((T)previous.getConfigurationWithOutCast().getList().get( i) ).prettyPrint(), getList().get(i).prettyPrint() );
                    builder.append(c);
                 }
 
@@ -5,7 +5,6 @@ import net.praqma.html.Html;
 import net.praqma.util.xml.feed.Entry;
 import net.praqma.util.xml.feed.Feed;
 import net.praqma.util.xml.feed.FeedException;
-import net.praqma.util.xml.feed.Person;
 
 import java.io.File;
 import java.io.IOException;
@@ -40,24 +39,56 @@ public abstract class AbstractConfigurationComponent implements Serializable, Fe
 
     public abstract String getComponentName();
 
+    /**
+     * @return true if this component was read in the format of an earlier version, and its build should be saved again
+     */
+    public boolean isMigrated() {
+        return false;
+    }
+
     public abstract String prettyPrint();
 
+    /**
+     * @return what identifies the content of this component. Two components with the same identity build the same
+     */
+    public String getIdentity() {
+        return getComponentName() + "@" + prettyPrint();
+    }
+
     @Override
     public File getFeedFile( File path ) {
         return new File( path, ConfigurationRotatorReport.urlTtransform( getComponentName() ) + ".xml" );
     }
 
-    public Feed getFeed( File feedFile, String url, Date updated ) throws FeedException, IOException {
-        String feedId = url + "feed/?component=" + ConfigurationRotatorReport.urlTtransform( getComponentName() );
-        String feedTitle = getComponentName();
+    /**
+     * @param url the url of the feeds of the rotator
+     * @return the id of the feed of this component
+     */
+    public String getFeedUrlId( String url ) {
+        return url + "feed/?component=" + ConfigurationRotatorReport.urlTtransform( getComponentName() );
+    }
 
-        Feed feed = ConfigurationRotatorReport.getFeedFromFile( feedFile, feedTitle, feedId, updated );
+    public String getFeedTitle() {
+        return getComponentName();
+    }
+
+    public Feed getFeed( File feedFile, String url, Date updated ) throws FeedException, IOException {
+        Feed feed = ConfigurationRotatorReport.getFeedFromFile( feedFile, getFeedTitle(), getFeedUrlId( url ), updated );
 
         return feed;
     }
 
     @Override
     public Entry getFeedEntry( AbstractBuild<?, ?> build, Date updated ) {
+        return getFeedRecord( build, updated ).toEntry();
+    }
+
+    /**
+     * @param build the build
+     * @param updated the time of the entry
+     * @return the entry of the feed of this component about the build, as stored by the {@link FeedStore}
+     */
+    public FeedStore.Record getFeedRecord( AbstractBuild<?, ?> build, Date updated ) {
         ConfigurationRotatorBuildAction action = build.getAction( ConfigurationRotatorBuildAction.class );
         AbstractConfiguration configuration = action.getConfigurationWithOutCast();
         List<AbstractConfigurationComponent> components = configuration.getList();
@@ -65,23 +96,23 @@ public abstract class AbstractConfigurationComponent implements Serializable, Fe
 
         String id = build.getParent().getDisplayName() + "#" + build.getNumber() + ", " + getFeedId();
 
-        Entry entry = new Entry( getFeedName() + " in new " + action.getResult().toString() + " configuration", id, updated );
+        String title = getFeedName() + " in new " + action.getResult().toString() + " configuration";
         int l = components.size() - 1;
-        entry.summary = getFeedName() + " is " + action.getResult().toString() + " with "
+        String summary = getFeedName() + " is " + action.getResult().toString() + " with "
                 + l + " other component" + ( l == 1 ? "" : "s" );
 
-        entry.author = new Person( "Jenkins config-rotator job: "
-                + build.getParent().getDisplayName() + ", build: #" + build.getNumber() );
+        String author = "Jenkins config-rotator job: "
+                + build.getParent().getDisplayName() + ", build: #" + build.getNumber();
 
-        entry.content = configuration.getDescription( action );
+        String content = configuration.getDescription( action );
         Html.Break br1 = new Html.Break();
         Html.Anchor linkFeeds = new Html.Anchor( ConfigurationRotatorReport.feedFrontpageUrl(), "Click here for a list of available feeds" );
         Html.Break br2 = new Html.Break();
         Html.Anchor joblink = new Html.Anchor( ConfigurationRotatorReport.generateJobUrl( build ), "Click here to go to the build that created this feed" );
 
-        entry.content += configuration.toHtml() + br1 + linkFeeds + br2 + joblink;
+        content += configuration.toHtml() + br1 + linkFeeds + br2 + joblink;
 
-        return entry;
+        return new FeedStore.Record( id, title, updated, summary, author, content, action.getResult().toString() );
     }
 
     public static class Element {
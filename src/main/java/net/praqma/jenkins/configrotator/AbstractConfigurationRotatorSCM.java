@@ -9,6 +9,7 @@ import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
 import hudson.model.BuildListener;
 import hudson.model.Describable;
+import hudson.model.Items;
 import hudson.model.TaskListener;
 import hudson.scm.PollingResult;
 
@@ -25,8 +26,37 @@ import org.kohsuke.stapler.DataBoundSetter;
 public abstract class AbstractConfigurationRotatorSCM implements Describable<AbstractConfigurationRotatorSCM>, ExtensionPoint {
 
     private static final Logger LOGGER = Logger.getLogger(AbstractConfigurationRotatorSCM.class.getName());
-    protected AbstractConfiguration projectConfiguration;
+
+    /**
+     * The current configuration, persisted in the {@link RotationState} of the job and omitted from the job configuration
+     */
+    private AbstractConfiguration currentConfiguration;
+
+    /**
+     * The current configuration, as persisted in the job configuration before the {@link RotationState}
+     */
+    @Deprecated
+    private AbstractConfiguration projectConfiguration;
     private boolean useNewest = false;
+    private int resolveThreads = 0;
+    private boolean concurrentBuilds = false;
+    private int batchSize = 0;
+    private RotationStrategy strategy;
+
+    /**
+     * The maximum number of tested configurations to rotate past in one build
+     */
+    public static final int MAX_SKIPPED = Integer.getInteger(AbstractConfigurationRotatorSCM.class.getName() + ".maxSkipped", 50);
+
+    /**
+     * The number of upcoming configurations queued, zero to resolve one at a time
+     */
+    public static final int LOOK_AHEAD = Integer.getInteger(AbstractConfigurationRotatorSCM.class.getName() + ".lookAhead", 20);
+
+    /**
+     * The number of last results the {@link RotationStrategy} is given the history of
+     */
+    public static final int HISTORY = 20;
 
     /**
      * @return The name of the abstract configuration rotator SCM.
@@ -40,17 +70,205 @@ public abstract class AbstractConfigurationRotatorSCM implements Describable<Abs
     }
 
     public void setConfiguration(AbstractConfiguration configuration) {
-        this.projectConfiguration = configuration;
+        this.currentConfiguration = configuration;
     }
 
     public AbstractConfiguration getConfiguration() {
-        return projectConfiguration;
+        return currentConfiguration;
+    }
+
+    /**
+     * Recreate a configuration of this rotator from the identities of its components, for a build that has been
+     * discarded, see {@link RotationHistory}. What the identities leave out is taken from the current configuration,
+     * component by component. Rotators that can recreate their configurations should override this.
+     *
+     * @param identities the identities of the components, see {@link AbstractConfigurationComponent#getIdentity()}
+     * @return the configuration, or null if it cannot be recreated
+     */
+    public AbstractConfiguration recreateConfiguration(List<String> identities) {
+        return null;
+    }
+
+    protected Object readResolve() {
+        if (projectConfiguration != null) {
+            currentConfiguration = projectConfiguration;
+            projectConfiguration = null;
+        }
+        return this;
     }
 
     public abstract AbstractConfiguration nextConfiguration(TaskListener listener, AbstractConfiguration configuration, FilePath workspace) throws ConfigurationRotatorException;
 
+    /**
+     * The next configuration, advancing the component chosen by the {@link #getStrategy() strategy}. Rotators choosing
+     * a component should override this. This default ignores the history.
+     *
+     * @param listener the listener
+     * @param configuration the configuration
+     * @param workspace the workspace
+     * @param history the recent rotations of the job, updated with the component advanced
+     * @return the next configuration, or null if there is none
+     * @throws ConfigurationRotatorException if the configuration could not be resolved
+     */
+    public AbstractConfiguration nextConfiguration(TaskListener listener, AbstractConfiguration configuration, FilePath workspace, RotationStrategy.History history) throws ConfigurationRotatorException {
+        return nextConfiguration(listener, configuration, workspace);
+    }
+
     public abstract AbstractConfigurationRotatorSCM.Poller getPoller(AbstractProject<?, ?> project, FilePath workspace, TaskListener listener);
 
+    /**
+     * The upcoming configurations after a configuration, in the order of the rotation. Rotators able to resolve the
+     * pending versions of their components at once should merge them with a {@link Timeline}.
+     * This default rotates one configuration at a time.
+     *
+     * @param listener the listener
+     * @param configuration the configuration
+     * @param workspace the workspace
+     * @param limit the maximum number of configurations
+     * @param history the recent rotations of the job, updated with the upcoming configurations
+     * @return the upcoming configurations, empty if there are none
+     * @throws ConfigurationRotatorException if the configurations could not be resolved
+     */
+    public List<AbstractConfiguration> upcomingConfigurations(TaskListener listener, AbstractConfiguration configuration, FilePath workspace, int limit, RotationStrategy.History history) throws ConfigurationRotatorException {
+        List<AbstractConfiguration> upcoming = new ArrayList<>();
+        AbstractConfiguration next = configuration;
+        while (upcoming.size() < limit && (next = nextConfiguration(listener, next, workspace, history)) != null) {
+            upcoming.add(next);
+        }
+        return upcoming;
+    }
+
+    /**
+     * The recent rotations of a job, from its last results and the configuration rotated from.
+     *
+     * @param project the project
+     * @param configuration the configuration rotated from
+     * @return the history
+     */
+    public RotationStrategy.History getHistory(AbstractProject<?, ?> project, AbstractConfiguration configuration) {
+        List<AbstractConfiguration> configurations = new ArrayList<>();
+        configurations.add(configuration);
+        for (ConfigurationRotatorBuildAction action : getLastResults(project, getClass(), HISTORY)) {
+            AbstractConfiguration c = action.getConfigurationWithOutCast();
+            if (c == null) {
+                continue;
+            }
+            /* The configuration rotated from is usually the last result */
+            if (configurations.size() == 1 && c.getFingerprint().equals(configuration.getFingerprint())) {
+                continue;
+            }
+            configurations.add(c);
+        }
+        return RotationStrategy.History.of(configuration.getList().size(), configurations);
+    }
+
+    /**
+     * @return true if the upcoming configurations are queued, see {@link RotationQueue}. Not when rotating to the newest versions
+     */
+    public boolean isLookAhead() {
+        return !isUseNewest() && LOOK_AHEAD > 0;
+    }
+
+    /**
+     * The next configuration, from the {@link RotationQueue} of the job, which is filled if it is empty.
+     *
+     * @param project the project
+     * @param listener the listener
+     * @param configuration the current configuration
+     * @param workspace the workspace
+     * @return the next configuration, or null if there is none
+     * @throws ConfigurationRotatorException if the configurations could not be resolved
+     */
+    public AbstractConfiguration peekConfiguration(AbstractProject<?, ?> project, TaskListener listener, AbstractConfiguration configuration, FilePath workspace) throws ConfigurationRotatorException {
+        if (!isLookAhead()) {
+            return nextConfiguration(listener, configuration, workspace, getHistory(project, configuration));
+        }
+
+        RotationQueue queue = RotationQueue.get(project);
+        String settings = getRotationSettings();
+        AbstractConfiguration next = queue.peek(configuration, settings);
+        if (next == null) {
+            queue.fill(project, configuration, settings, upcomingConfigurations(listener, configuration, workspace, LOOK_AHEAD, getHistory(project, configuration)));
+            next = queue.peek(configuration, settings);
+        }
+        return next;
+    }
+
+    /**
+     * Take the next configuration from the {@link RotationQueue} of the job, see {@link #peekConfiguration}.
+     *
+     * @param project the project
+     * @param listener the listener
+     * @param configuration the current configuration
+     * @param workspace the workspace
+     * @return the next configuration, or null if there is none
+     * @throws ConfigurationRotatorException if the configurations could not be resolved
+     */
+    public AbstractConfiguration takeConfiguration(AbstractProject<?, ?> project, TaskListener listener, AbstractConfiguration configuration, FilePath workspace) throws ConfigurationRotatorException {
+        AbstractConfiguration next = peekConfiguration(project, listener, configuration, workspace);
+        if (next != null && isLookAhead()) {
+            RotationQueue.get(project).pop(project, configuration, getRotationSettings());
+        }
+        return next;
+    }
+
+    /**
+     * @return what the upcoming configurations depend on besides the configuration they follow, the strategy and the
+     * batch size. The {@link RotationQueue} is dropped when they change
+     */
+    public String getRotationSettings() {
+        return Util.getDigestOf(Items.XSTREAM2.toXML(getStrategy()) + "\n" + batchSize);
+    }
+
+    /**
+     * Rotate past the configurations already tested, by this or any other job, see {@link FingerprintIndex}. At most
+     * {@link #MAX_SKIPPED} configurations are skipped.
+     *
+     * @param project the project
+     * @param listener the listener
+     * @param configuration the configuration
+     * @param workspace the workspace
+     * @param take true to take the configurations skipped from the {@link RotationQueue}, false when only looking
+     * @return the first configuration not tested, the configuration itself if it was not, or null if there is none
+     * @throws ConfigurationRotatorException if the next configuration could not be resolved
+     */
+    public AbstractConfiguration skipTested(AbstractProject<?, ?> project, TaskListener listener, AbstractConfiguration configuration, FilePath workspace, boolean take) throws ConfigurationRotatorException {
+        AbstractConfiguration candidate = configuration;
+        for (int skipped = 0; candidate != null; skipped++) {
+            FingerprintIndex.Tested tested = FingerprintIndex.lookup((AbstractConfiguration<?>) candidate);
+            if (tested == null) {
+                return candidate;
+            }
+            if (skipped >= MAX_SKIPPED) {
+                listener.getLogger().println(ConfigurationRotator.LOGGERNAME + "The next " + MAX_SKIPPED + " configurations are already tested, nothing to rotate");
+                return null;
+            }
+            if (take) {
+                listener.getLogger().println(ConfigurationRotator.LOGGERNAME + "Configuration already tested " + tested + ", skipping it");
+                candidate = takeConfiguration(project, listener, candidate, workspace);
+            } else {
+                /* The queue follows the configuration of the job, leave it */
+                candidate = nextConfiguration(listener, candidate, workspace, getHistory(project, candidate));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the strategy choosing the component to advance
+     */
+    public RotationStrategy getStrategy() {
+        return strategy != null ? strategy : RotationStrategy.getDefault();
+    }
+
+    /**
+     * @param strategy the strategy choosing the component to advance, null for the default
+     */
+    @DataBoundSetter
+    public void setStrategy(RotationStrategy strategy) {
+        this.strategy = strategy;
+    }
+
     /**
      * @return the useNewest
      */
@@ -66,6 +284,66 @@ public abstract class AbstractConfigurationRotatorSCM implements Describable<Abs
         this.useNewest = useNewest;
     }
 
+    /**
+     * @return the maximum number of components resolved concurrently when looking for the next configuration
+     */
+    public int getResolveThreads() {
+        return resolveThreads > 0 ? resolveThreads : ParallelResolver.DEFAULT_THREADS;
+    }
+
+    /**
+     * @param resolveThreads the maximum number of concurrent resolutions. Zero or less means the default
+     */
+    @DataBoundSetter
+    public void setResolveThreads(int resolveThreads) {
+        this.resolveThreads = resolveThreads;
+    }
+
+    /**
+     * @return true if builds running side by side each reserve a configuration of their own, see {@link Reservations}
+     */
+    public boolean isConcurrentBuilds() {
+        return concurrentBuilds;
+    }
+
+    /**
+     * @param concurrentBuilds true to let builds running side by side each reserve a configuration of their own
+     */
+    @DataBoundSetter
+    public void setConcurrentBuilds(boolean concurrentBuilds) {
+        this.concurrentBuilds = concurrentBuilds;
+    }
+
+    /**
+     * @param project the project
+     * @return true if the project rotates concurrently, which it must also allow builds to do
+     */
+    public boolean isConcurrent(AbstractProject<?, ?> project) {
+        return concurrentBuilds && project.isConcurrentBuild();
+    }
+
+    /**
+     * @return the number of pending changes tested together, see {@link Bisection}. One or less to test one at a time
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @param batchSize the number of pending changes tested together
+     */
+    @DataBoundSetter
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * @return true if pending changes are tested in batches, which are bisected when incompatible. Not when rotating to the newest versions
+     */
+    public boolean isBatch() {
+        return !isUseNewest() && batchSize > 1;
+    }
+
     /**
      *
      * @param <C> AbstractConfiguration
@@ -90,27 +368,87 @@ public abstract class AbstractConfigurationRotatorSCM implements Describable<Abs
             this.canPollWhileBuilding = canPollWhileBuilding;
         }
 
+        /**
+         * Cheap check, done before resolving the next configuration, of whether anything could have changed since
+         * the last poll that found no changes.
+         *
+         * @param configuration the current configuration
+         * @return true if there certainly are no changes
+         */
+        protected boolean isUnchanged(C configuration) {
+            return false;
+        }
+
+        /**
+         * What the next configurations are resolved from, checked cheaply, such as the remote tips. The
+         * {@link RotationQueue} is dropped when it changes.
+         *
+         * @param configuration the current configuration
+         * @return the source, or null if it can not be checked cheaply
+         */
+        protected String getSource(C configuration) {
+            return null;
+        }
+
+        /**
+         * Called when resolving the next configuration found no changes.
+         *
+         * @param configuration the current configuration
+         */
+        protected void recordUnchanged(C configuration) {
+            /* Default is no op */
+        }
+
         public PollingResult poll(ConfigurationRotatorBuildAction action) throws AbortException {
             PrintStream out = listener.getLogger();
             LOGGER.fine(ConfigurationRotator.LOGGERNAME + "Polling started");
 
-            if(!canPollWhileBuilding && project.isBuilding()) {
+            AbstractConfiguration configuration = action != null ? action.getConfiguration() : null;
+            if (isConcurrent(project)) {
+                Reservations reservations = Reservations.get(project);
+                if (reservations.hasReleased()) {
+                    LOGGER.fine("Found configurations given back");
+                    return PollingResult.BUILD_NOW;
+                }
+                /* Rotate past the configurations reserved by the builds in flight */
+                configuration = reservations.getBase(configuration);
+            } else if(!canPollWhileBuilding && project.isBuilding()) {
                 return PollingResult.NO_CHANGES;
+            } else if (isBatch()) {
+                Bisection bisection = Bisection.get(project);
+                if (bisection.isPending()) {
+                    /* The next step depends on the result of the one building */
+                    LOGGER.fine("Batch pending");
+                    return project.isBuilding() ? PollingResult.NO_CHANGES : PollingResult.BUILD_NOW;
+                }
+                configuration = bisection.getBase(configuration);
             }
 
-            AbstractConfiguration configuration = action.getConfiguration();
-
             if (configuration != null) {
                 LOGGER.fine("Resolving next configuration based on " + configuration);
                 try {
+                    RotationQueue queue = isLookAhead() ? RotationQueue.get(project) : null;
+                    AbstractConfiguration queued = queue != null ? queue.peek(configuration, getRotationSettings()) : null;
+                    if (queued != null && queue.isFrom(project, getSource((C) configuration)) && FingerprintIndex.lookup(queued) == null) {
+                        LOGGER.fine("Found queued configurations");
+                        return PollingResult.BUILD_NOW;
+                    }
+
+                    if (isUnchanged((C) configuration)) {
+                        LOGGER.fine("Nothing changed since last poll");
+                        return PollingResult.NO_CHANGES;
+                    }
+
+                    /* A build would rotate past the configurations already tested */
                     AbstractConfiguration other;
-                    other = nextConfiguration(listener, configuration, workspace);
+                    other = skipTested(project, listener, peekConfiguration(project, listener, configuration, workspace), workspace, false);
                     if (other != null) {
                         LOGGER.fine("Found changes");
                         printConfiguration(out, other);
                         return PollingResult.BUILD_NOW;
                     } else {
                         LOGGER.fine("No changes!");
+                        recordUnchanged((C) configuration);
                         return PollingResult.NO_CHANGES;
                     }
                 } catch (ConfigurationRotatorException e) {
@@ -145,6 +483,11 @@ public abstract class AbstractConfigurationRotatorSCM implements Describable<Abs
         protected BuildListener listener;
         protected PrintStream out;
 
+        /**
+         * The step of a batch the configuration is, if any
+         */
+        protected String step;
+
         public Performer(AbstractBuild<?, ?> build, FilePath workspace, BuildListener listener) {
             this.build = build;
             this.workspace = workspace;
@@ -156,6 +499,93 @@ public abstract class AbstractConfigurationRotatorSCM implements Describable<Abs
 
         public abstract C getNextConfiguration(ConfigurationRotatorBuildAction action) throws ConfigurationRotatorException;
 
+        /**
+         * Reserve the next configuration for the build, when rotating concurrently. A configuration given back by a
+         * build without a determined result is taken first, otherwise the one after the furthest reserved.
+         *
+         * @param action the last result, or null if there is none
+         * @return the configuration reserved, or null if there is none
+         * @throws ConfigurationRotatorException if the next configuration could not be resolved
+         */
+        public AbstractConfiguration reserveNextConfiguration(ConfigurationRotatorBuildAction action) throws ConfigurationRotatorException {
+            Reservations reservations = Reservations.get(build.getProject());
+            synchronized (reservations) {
+                AbstractConfiguration configuration = reservations.takeReleased();
+                if (configuration != null) {
+                    out.println(ConfigurationRotator.LOGGERNAME + "Building a configuration given back");
+                    reservations.reserve(build, configuration, false);
+                    return configuration;
+                }
+
+                AbstractConfiguration base = reservations.getBase(action != null ? action.getConfigurationWithOutCast() : null);
+                if (base == null) {
+                    return null;
+                }
+                configuration = skipTested(takeConfiguration(build.getProject(), listener, base, workspace));
+                if (configuration != null) {
+                    reserve(configuration);
+                }
+                return configuration;
+            }
+        }
+
+        /**
+         * The next configuration when testing batches, see {@link Bisection}. The result of the last step of a batch
+         * decides the next, otherwise a new batch is taken after a compatible configuration. After an incompatible
+         * configuration, the changes are tested one at a time until the configuration is compatible again.
+         *
+         * @param action the last result
+         * @return the next configuration, or null if there is none
+         * @throws ConfigurationRotatorException if the next configuration could not be resolved
+         */
+        public AbstractConfiguration getBatchConfiguration(ConfigurationRotatorBuildAction action) throws ConfigurationRotatorException {
+            AbstractProject<?, ?> project = build.getProject();
+            Bisection bisection = Bisection.get(project);
+            synchronized (bisection) {
+                AbstractConfiguration next = bisection.next(project, action, out);
+                if (next != null) {
+                    step = bisection.describe();
+                    return next;
+                }
+
+                AbstractConfiguration last = action.getConfigurationWithOutCast();
+                AbstractConfiguration base = bisection.getBase(last);
+                if (base != last || !action.isCompatible()) {
+                    bisection.resumed(project);
+                    return skipTested(takeConfiguration(project, listener, base, workspace));
+                }
+
+                List<AbstractConfiguration> batch = upcomingConfigurations(listener, base, workspace, batchSize, getHistory(project, base));
+                out.println(ConfigurationRotator.LOGGERNAME + "Testing " + batch.size() + " pending changes together");
+                next = bisection.start(project, base, batch, action);
+                step = bisection.describe();
+                return next;
+            }
+        }
+
+        /**
+         * Reserve a configuration for the build, when rotating concurrently.
+         *
+         * @param configuration the configuration
+         */
+        public void reserve(AbstractConfiguration configuration) {
+            if (isConcurrent(build.getProject())) {
+                Reservations.get(build.getProject()).reserve(build, configuration, true);
+            }
+        }
+
+        /**
+         * Rotate past the configurations already tested, taking them from the {@link RotationQueue}, see
+         * {@link AbstractConfigurationRotatorSCM#skipTested(AbstractProject, TaskListener, AbstractConfiguration, FilePath, boolean)}.
+         *
+         * @param configuration the configuration
+         * @return the first configuration not tested, the configuration itself if it was not, or null if there is none
+         * @throws ConfigurationRotatorException if the next configuration could not be resolved
+         */
+        public AbstractConfiguration skipTested(AbstractConfiguration configuration) throws ConfigurationRotatorException {
+            return AbstractConfigurationRotatorSCM.this.skipTested(build.getProject(), listener, configuration, workspace, true);
+        }
+
         public abstract void checkConfiguration(C configuration) throws ConfigurationRotatorException;
 
         public abstract void createWorkspace(C configuration) throws ConfigurationRotatorException, IOException, InterruptedException;
@@ -167,8 +597,10 @@ public abstract class AbstractConfigurationRotatorSCM implements Describable<Abs
         public abstract void print(C configuration);
 
         public void save(C configuration) {
-            projectConfiguration = (AbstractConfiguration) configuration;
+            setConfiguration((AbstractConfiguration) configuration);
             final ConfigurationRotatorBuildAction action1 = new ConfigurationRotatorBuildAction(build, getSCMClass(), (AbstractConfiguration) configuration);
+            action1.setPreviousResult(getPreviousResult(build, null));
+            action1.setStep(step);
             build.addAction(action1);
         }
     }
@@ -292,6 +724,10 @@ public abstract class AbstractConfigurationRotatorSCM implements Describable<Abs
     }
 
     public ConfigurationRotatorBuildAction getLastResult(AbstractProject<?, ?> project, Class<? extends AbstractConfigurationRotatorSCM> clazz) {
+        if (ResultIndex.isIndexed(project)) {
+            return ResultIndex.getLastResult(project, clazz);
+        }
+
         for (AbstractBuild<?, ?> b = getLastBuildToBeConsidered(project); b != null; b = b.getPreviousBuild()) {
             ConfigurationRotatorBuildAction r = b.getAction(ConfigurationRotatorBuildAction.class);
             if (r != null && r.isDetermined() && (clazz == null || r.getClazz().equals(clazz)) ) {
@@ -311,6 +747,10 @@ public abstract class AbstractConfigurationRotatorSCM implements Describable<Abs
     }
 
     public ConfigurationRotatorBuildAction getPreviousResult(AbstractBuild<?, ?> build, Class<? extends AbstractConfigurationRotatorSCM> clazz) {
+        if (ResultIndex.isIndexed(build.getProject())) {
+            return ResultIndex.getPreviousResult(build, clazz);
+        }
+
         for (AbstractBuild<?, ?> b = build.getPreviousBuild(); b != null; b = b.getPreviousBuild()) {
             ConfigurationRotatorBuildAction r = b.getAction(ConfigurationRotatorBuildAction.class);
             if (r != null && r.isDetermined() && (clazz == null || r.getClazz().equals(clazz)) ) {
@@ -321,6 +761,10 @@ public abstract class AbstractConfigurationRotatorSCM implements Describable<Abs
     }
 
     public ArrayList<ConfigurationRotatorBuildAction> getLastResults(AbstractProject<?, ?> project, Class<? extends AbstractConfigurationRotatorSCM> clazz, int limit) {
+        if (ResultIndex.isIndexed(project)) {
+            return new ArrayList<ConfigurationRotatorBuildAction>(ResultIndex.getLastResults(project, clazz, limit));
+        }
+
         ArrayList<ConfigurationRotatorBuildAction> actions = new ArrayList<ConfigurationRotatorBuildAction>();
         for (AbstractBuild<?, ?> b = getLastBuildToBeConsidered(project); b != null; b = b.getPreviousBuild()) {
             ConfigurationRotatorBuildAction r = b.getAction(ConfigurationRotatorBuildAction.class);
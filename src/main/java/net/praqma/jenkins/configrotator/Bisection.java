@@ -0,0 +1,284 @@
+package net.praqma.jenkins.configrotator;
+
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.model.AbstractProject;
+import hudson.model.Item;
+import hudson.model.Items;
+import hudson.model.listeners.ItemListener;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A batch of pending changes tested in one configuration, and the bisection of it when it is incompatible.
+ * <p>
+ * The batch is the upcoming configurations after a compatible configuration, each adding one change, and its last
+ * configuration is tested first. If it is incompatible, the configuration midway between the last known compatible
+ * and the first known incompatible one is tested, until the first incompatible change is isolated. Configurations
+ * tested by other builds, see {@link FingerprintIndex}, are not tested again. The rotation then goes on from the last
+ * configuration of the batch. The batch is written to the job directory, so a bisection survives a restart. It is
+ * forgotten when the job is deleted, and follows it when it is renamed, see {@link ItemListenerImpl}.
+ * </p>
+ */
+public class Bisection {
+
+    private static final Logger LOGGER = Logger.getLogger( Bisection.class.getName() );
+
+    public static final String FILE_NAME = "config-rotator-bisection.xml";
+
+    private static final Map<String, Bisection> BISECTIONS = new ConcurrentHashMap<>();
+
+    /**
+     * The compatible configuration the batch was taken from
+     */
+    private AbstractConfiguration base;
+    private List<AbstractConfiguration> steps = new ArrayList<>();
+
+    /**
+     * The index of the last known compatible step, -1 for the base
+     */
+    private int good;
+
+    /**
+     * The index of the first known incompatible step, the number of steps if the batch is not tested yet
+     */
+    private int bad;
+
+    private int testing;
+
+    /**
+     * The number of the last result when the step tested was chosen
+     */
+    private int lastNumber;
+
+    /**
+     * The configuration to go on from when a bisection has ended
+     */
+    private AbstractConfiguration resume;
+
+    private Bisection() { }
+
+    private static XmlFile getFile( AbstractProject<?, ?> project ) {
+        return new XmlFile( Items.XSTREAM2, new File( project.getRootDir(), FILE_NAME ) );
+    }
+
+    public static synchronized Bisection get( AbstractProject<?, ?> project ) {
+        Bisection bisection = BISECTIONS.get( project.getFullName() );
+        if( bisection == null ) {
+            bisection = new Bisection();
+            XmlFile file = getFile( project );
+            if( file.exists() ) {
+                try {
+                    file.unmarshal( bisection );
+                } catch( IOException | RuntimeException e ) {
+                    LOGGER.log( Level.WARNING, "Unable to read the bisection of " + project.getFullName(), e );
+                    bisection = new Bisection();
+                }
+            }
+            BISECTIONS.put( project.getFullName(), bisection );
+        }
+        return bisection;
+    }
+
+    /**
+     * @return true if a step of a batch is to be tested
+     */
+    public synchronized boolean isPending() {
+        return !steps.isEmpty();
+    }
+
+    /**
+     * @param last the configuration of the last result
+     * @return the configuration to rotate from, the last of a batch bisected, otherwise the last result
+     */
+    public synchronized AbstractConfiguration getBase( AbstractConfiguration last ) {
+        return resume != null ? resume : last;
+    }
+
+    /**
+     * Start testing a batch.
+     *
+     * @param project the project
+     * @param base the compatible configuration the batch is taken from
+     * @param batch the upcoming configurations after it, in order
+     * @param last the last result
+     * @return the last configuration of the batch, or null if the batch is empty
+     */
+    public synchronized AbstractConfiguration start( AbstractProject<?, ?> project, AbstractConfiguration base, List<AbstractConfiguration> batch, ConfigurationRotatorBuildAction last ) {
+        resume = null;
+        steps = new ArrayList<>();
+        if( batch.size() > 1 ) {
+            this.base = base;
+            steps.addAll( batch );
+            good = -1;
+            bad = steps.size();
+            testing = steps.size() - 1;
+            lastNumber = last != null ? last.getNumber() : 0;
+        }
+        save( project );
+
+        if( batch.isEmpty() ) {
+            return null;
+        }
+        AbstractConfiguration tip = batch.get( batch.size() - 1 );
+        tip.markChangedSince( base );
+        tip.describeChangesSince( base );
+        return tip;
+    }
+
+    /**
+     * Go on from the configuration given, after a bisection has ended.
+     *
+     * @param project the project
+     */
+    public synchronized void resumed( AbstractProject<?, ?> project ) {
+        if( resume != null ) {
+            resume = null;
+            save( project );
+        }
+    }
+
+    /**
+     * Forget the batch, when the job is set to another configuration.
+     *
+     * @param project the project
+     */
+    public synchronized void reset( AbstractProject<?, ?> project ) {
+        steps = new ArrayList<>();
+        base = null;
+        resume = null;
+        save( project );
+    }
+
+    /**
+     * Apply the last result to the batch and choose the step to test next.
+     *
+     * @param project the project
+     * @param last the last result
+     * @param out the build log
+     * @return the configuration to test next, or null if there is no batch or it is done
+     */
+    public synchronized AbstractConfiguration next( AbstractProject<?, ?> project, ConfigurationRotatorBuildAction last, PrintStream out ) {
+        if( steps.isEmpty() ) {
+            return null;
+        }
+
+        AbstractConfiguration tested = steps.get( testing );
+        AbstractConfiguration configuration = last != null ? last.getConfigurationWithOutCast() : null;
+        if( configuration != null && tested.getFingerprint().equals( configuration.getFingerprint() ) ) {
+            apply( testing, last.isCompatible() );
+        } else if( last != null && last.getNumber() != lastNumber ) {
+            out.println( ConfigurationRotator.LOGGERNAME + "The job has rotated past the batch, abandoning it" );
+            steps = new ArrayList<>();
+            save( project );
+            return null;
+        } else {
+            /* The step was not determined, test it again */
+            return issue( testing );
+        }
+
+        while( good < bad - 1 ) {
+            int mid = ( good + bad ) / 2;
+            FingerprintIndex.Tested known = FingerprintIndex.lookup( steps.get( mid ) );
+            if( known == null ) {
+                out.println( String.format( "%sBisecting the batch, %d changes left", ConfigurationRotator.LOGGERNAME, bad - good - 1 ) );
+                testing = mid;
+                lastNumber = last.getNumber();
+                save( project );
+                return issue( mid );
+            }
+            out.println( ConfigurationRotator.LOGGERNAME + "Change " + ( mid + 1 ) + " of the batch already tested " + known );
+            apply( mid, known.getResult().equals( ConfigurationRotator.ResultType.COMPATIBLE ) );
+        }
+
+        if( bad < steps.size() ) {
+            out.println( String.format( "%sThe first incompatible change is %d of %d", ConfigurationRotator.LOGGERNAME, bad + 1, steps.size() ) );
+            out.println( ConfigurationRotator.LOGGERNAME + "Changed: " + getChange( bad ) );
+            resume = steps.get( steps.size() - 1 );
+        } else {
+            out.println( ConfigurationRotator.LOGGERNAME + "The batch is compatible" );
+        }
+        steps = new ArrayList<>();
+        base = null;
+        save( project );
+        return null;
+    }
+
+    /**
+     * @return a description of the step tested, or null if there is no batch
+     */
+    public synchronized String describe() {
+        if( steps.isEmpty() ) {
+            return null;
+        }
+        if( bad == steps.size() ) {
+            return String.format( "Batch of %d changes", steps.size() );
+        }
+        return String.format( "Bisection of a batch of %d changes, %d of %d", steps.size(), testing + 1, steps.size() );
+    }
+
+    private List<String> getChange( int step ) {
+        List<? extends AbstractConfigurationComponent> before = ( step > 0 ? steps.get( step - 1 ) : base ).getList();
+        List<? extends AbstractConfigurationComponent> after = steps.get( step ).getList();
+        List<String> changed = new ArrayList<>();
+        for( int i = 0; i < after.size(); i++ ) {
+            if( i >= before.size() || !after.get( i ).getIdentity().equals( before.get( i ).getIdentity() ) ) {
+                changed.add( after.get( i ).prettyPrint() );
+            }
+        }
+        return changed;
+    }
+
+    private void apply( int step, boolean compatible ) {
+        if( compatible ) {
+            good = step;
+        } else {
+            bad = step;
+        }
+    }
+
+    private AbstractConfiguration issue( int step ) {
+        AbstractConfiguration configuration = steps.get( step );
+        AbstractConfiguration since = good >= 0 ? steps.get( good ) : base;
+        /* The previous result may be a later, incompatible step */
+        configuration.markChangedSince( since );
+        configuration.describeChangesSince( since );
+        return configuration;
+    }
+
+    private void save( AbstractProject<?, ?> project ) {
+        try {
+            getFile( project ).write( this );
+        } catch( IOException e ) {
+            LOGGER.log( Level.WARNING, "Unable to write the bisection of " + project.getFullName(), e );
+        }
+    }
+
+    /**
+     * Forgets the batch of a job when it is deleted, and follows it when it is renamed.
+     */
+    @Extension
+    public static class ItemListenerImpl extends ItemListener {
+
+        @Override
+        public void onLocationChanged( Item item, String oldFullName, String newFullName ) {
+            Bisection bisection = BISECTIONS.remove( oldFullName );
+            if( bisection != null ) {
+                BISECTIONS.put( newFullName, bisection );
+            }
+        }
+
+        @Override
+        public void onDeleted( Item item ) {
+            BISECTIONS.remove( item.getFullName() );
+        }
+    }
+}
@@ -47,7 +47,13 @@ public class ConfigurationRotator extends SCM {
     public static final String URL_NAME = "config-rotator";
     public static final String NAME = "ConfigRotator";
     public static final String LOGGERNAME = "[" + NAME + "] ";
+
+    /**
+     * Determines whether the job was just configured, and must be checked for reconfiguration.
+     * Persisted in the {@link RotationState} of the job, with {@link #reconfigure}.
+     */
     public boolean justConfigured = false;
+    private transient boolean stateLoaded = false;
 
     public static final String SEPARATOR = getProperty( "file.separator" );
     public static final String FEED_DIR = "config-rotator-feeds" + SEPARATOR;
@@ -90,8 +96,47 @@ public class ConfigurationRotator extends SCM {
         this.reconfigure = reconfigure;
     }
 
+    /**
+     * Load the {@link RotationState} of the job, once. A rotator just configured keeps its fresh state and persists it.
+     * A job without a state, configured by an earlier version, is checked for reconfiguration.
+     *
+     * @param project the project
+     */
+    public synchronized void loadState( AbstractProject<?, ?> project ) {
+        if( stateLoaded ) {
+            return;
+        }
+        stateLoaded = true;
+
+        if( !justConfigured ) {
+            RotationState state = RotationState.load( project );
+            if( state != null ) {
+                reconfigure = state.isReconfigure();
+                justConfigured = state.isJustConfigured();
+                acrs.setConfiguration( state.getConfiguration() );
+                return;
+            }
+            justConfigured = true;
+        }
+        saveState( project );
+    }
+
+    /**
+     * Persist the {@link RotationState} of the job.
+     *
+     * @param project the project
+     */
+    public synchronized void saveState( AbstractProject<?, ?> project ) {
+        try {
+            new RotationState( reconfigure, justConfigured, acrs.getConfiguration() ).save( project );
+        } catch( IOException e ) {
+            LOGGER.log( Level.WARNING, "Unable to save the rotation state of " + project.getFullName(), e );
+        }
+    }
+
     @Override
     public SCMRevisionState calcRevisionsFromBuild( AbstractBuild<?, ?> arg0, Launcher arg1, TaskListener arg2 ) throws IOException, InterruptedException {
+        loadState( arg0.getProject() );
         if( !doReconfigure() ) {
             return new SCMRevisionState() {
             };
@@ -105,19 +150,13 @@ public class ConfigurationRotator extends SCM {
         PrintStream out = listener.getLogger();
         out.println( LOGGERNAME + "Version: " + VERSION );
         LOGGER.fine( "Version: " + VERSION );
-
-        /*
-           * Determine if the job was reconfigured
-           */
-        if( justConfigured ) {
-            reconfigure = acrs.wasReconfigured( build.getProject(), listener);
-            out.println(LOGGERNAME + "Project was reconfigured: "+reconfigure);
-            LOGGER.fine( "Was reconfigured: " + reconfigure );
-        }
+        loadState( build.getProject() );
 
         AbstractConfigurationRotatorSCM.Performer<AbstractConfiguration<?>> performer = acrs.getPerform( build, workspace, listener );
         ConfigurationRotatorBuildAction lastAction = acrs.getLastResult( build.getProject(), performer.getSCMClass() );
         AbstractConfiguration<?> configuration = null;
+        boolean concurrent = acrs.isConcurrent( build.getProject() );
+        boolean fromScratch = false;
 
         /* Regarding JENKINS-14746 */
         ensurePublisher( build );
@@ -125,12 +164,47 @@ public class ConfigurationRotator extends SCM {
         boolean performResult = false;
         try {
 
-            if( reconfigure || lastAction == null ) {
-                out.println( LOGGERNAME + "Configuration from scratch" );
-                configuration = performer.getInitialConfiguration();
-            } else {
-                out.println( LOGGERNAME + "Getting next configuration" );
-                configuration = performer.getNextConfiguration( lastAction );
+            /* The builds of a job choose their configurations one at a time, locked by the reservations of the job */
+            Reservations reservations = Reservations.get( build.getProject() );
+            synchronized( reservations ) {
+                /*
+                 * Determine if the job was reconfigured
+                 */
+                if( justConfigured ) {
+                    reconfigure = acrs.wasReconfigured( build.getProject(), listener);
+                    out.println(LOGGERNAME + "Project was reconfigured: "+reconfigure);
+                    LOGGER.fine( "Was reconfigured: " + reconfigure );
+                }
+
+                fromScratch = reconfigure || ( lastAction == null && !( concurrent && reservations.isActive() ) );
+                if( fromScratch ) {
+                    out.println( LOGGERNAME + "Configuration from scratch" );
+                    configuration = performer.getInitialConfiguration();
+                    /* Build the initial configuration anyway, if there is nothing untested after it */
+                    AbstractConfiguration<?> untested = performer.skipTested( configuration );
+                    if( untested != null ) {
+                        configuration = untested;
+                    }
+                    if( configuration != null ) {
+                        performer.reserve( configuration );
+                    }
+                } else if( concurrent ) {
+                    out.println( LOGGERNAME + "Reserving next configuration" );
+                    configuration = performer.reserveNextConfiguration( lastAction );
+                } else if( acrs.isBatch() ) {
+                    out.println( LOGGERNAME + "Getting next batch configuration" );
+                    configuration = performer.getBatchConfiguration( lastAction );
+                } else {
+                    out.println( LOGGERNAME + "Getting next configuration" );
+                    configuration = performer.skipTested( performer.getNextConfiguration( lastAction ) );
+                }
+
+                if( concurrent && configuration != null ) {
+                    /* The next build must not start from scratch again */
+                    reconfigure = false;
+                    justConfigured = false;
+                    saveState( build.getProject() );
+                }
             }
 
             acrs.printConfiguration( out, configuration );
@@ -150,6 +224,7 @@ public class ConfigurationRotator extends SCM {
             //We need to reset here.
             reconfigure = false;
             justConfigured = false;
+            saveState( build.getProject() );
             throw new AbortException( e.getMessage() );
         }
 
@@ -169,7 +244,7 @@ public class ConfigurationRotator extends SCM {
             try {
                 List<ConfigRotatorChangeLogEntry> entries = null;
                 if( clw != null ) {
-                    if( lastAction == null || reconfigure ) {
+                    if( fromScratch ) {
                         entries = Collections.emptyList();
                     } else {
                         entries = clw.getChangeLogEntries( configuration );
@@ -191,7 +266,7 @@ public class ConfigurationRotator extends SCM {
             reconfigure = false;
             justConfigured = false;
 
-            build.getProject().save();
+            saveState( build.getProject() );
 
             return true;
         }
@@ -202,12 +277,17 @@ public class ConfigurationRotator extends SCM {
         if( describable == null ) {
             LOGGER.info( "Adding publisher to project" );
             build.getProject().getPublishersList().add( new ConfigurationRotatorPublisher() );
+            build.getProject().save();
         }
     }
 
     public AbstractConfiguration setConfigurationByAction( AbstractProject<?, ?> project, ConfigurationRotatorBuildAction action ) throws IOException {
+        loadState( project );
         justConfigured = true;
         AbstractConfiguration acr = acrs.setConfigurationByAction( project, action );
+        Reservations.reset( project );
+        Bisection.get( project ).reset( project );
+        saveState( project );
         return acr;
     }
 
@@ -221,12 +301,16 @@ public class ConfigurationRotator extends SCM {
         // changed a did schedule the same build with the same changes as last time
         // between the last one started and finished.
         // Basically this disables polling while the job has a build in the queue.
+        // Rotating concurrently, builds reserve their configurations when they start,
+        // so a build waiting in the queue still holds back the next one.
         if( project.isInQueue() ) {
             out.println( "A build already in queue - cancelling poll" );
             LOGGER.fine( "A build already in queue - cancelling poll" );
             return PollingResult.NO_CHANGES;
         }
 
+        loadState( project );
+
         /*
            * Determine if the job was reconfigured
            */
@@ -245,7 +329,7 @@ public class ConfigurationRotator extends SCM {
                 LOGGER.fine( "Reconfigured, build now!" );
                 out.println( LOGGERNAME + "Configuration from scratch, build now!" );
                 return PollingResult.BUILD_NOW;
-            } else if( lastAction == null)  {
+            } else if( lastAction == null && !( acrs.isConcurrent( project ) && Reservations.get( project ).isActive() ) )  {
                 if(dieaction != null && dieaction.died()) {
                     LOGGER.fine( "Do actual polling" );
                     out.println( LOGGERNAME + "Error in configuration...do not start build" );
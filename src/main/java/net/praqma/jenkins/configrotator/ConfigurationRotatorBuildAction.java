@@ -1,27 +1,111 @@
 package net.praqma.jenkins.configrotator;
 
 import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
 import hudson.model.Action;
+import hudson.model.Run;
 import hudson.scm.SCM;
 import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import javax.servlet.ServletException;
+import jenkins.model.RunAction2;
+import jenkins.util.Timer;
 import net.praqma.jenkins.configrotator.ConfigurationRotator.ResultType;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
 
-public class ConfigurationRotatorBuildAction implements Action {
+public class ConfigurationRotatorBuildAction implements Action, RunAction2 {
+
+	private static final Logger LOGGER = Logger.getLogger( ConfigurationRotatorBuildAction.class.getName() );
 	
     private String description;
 	private AbstractBuild<?, ?> build;
 	private Class<? extends AbstractConfigurationRotatorSCM> clazz;
 	private ResultType result = ResultType.UNDETERMINED;
 	private AbstractConfiguration configuration;
+
+	/**
+	 * The step of a batch the configuration is, null if it is not part of a batch
+	 */
+	private String step;
+
+	/**
+	 * The build number of the previous determined result, 0 if there is none and null if not resolved yet
+	 */
+	private Integer previousNumber;
+	private transient ConfigurationRotatorBuildAction previous;
+
+	/**
+	 * The project and build number of a detached action, one for a discarded build
+	 */
+	private transient AbstractProject<?, ?> project;
+	private transient int number;
 	
 	public ConfigurationRotatorBuildAction( AbstractBuild<?, ?> build, Class<? extends AbstractConfigurationRotatorSCM> clazz, AbstractConfiguration configuration ) {
 		this.build = build;
 		this.clazz = clazz;
 		this.configuration = configuration;
 	}
+
+	/**
+	 * An action for a build that has been discarded, recreated from the {@link RotationHistory}. It has no build.
+	 *
+	 * @param project the project
+	 * @param number the number of the discarded build
+	 * @param clazz the rotator SCM class
+	 * @param configuration the configuration
+	 * @param result the result
+	 * @return the action
+	 */
+	public static ConfigurationRotatorBuildAction detached( AbstractProject<?, ?> project, int number, Class<? extends AbstractConfigurationRotatorSCM> clazz, AbstractConfiguration configuration, ResultType result ) {
+		ConfigurationRotatorBuildAction action = new ConfigurationRotatorBuildAction( null, clazz, configuration );
+		action.project = project;
+		action.number = number;
+		action.result = result;
+		return action;
+	}
+
+	@Override
+	public void onAttached( Run<?, ?> r ) {
+		/* The build is set when the action is created */
+	}
+
+	/**
+	 * Save a build read with components of an earlier version, so it is migrated once, see {@link AbstractConfigurationComponent#isMigrated()}.
+	 */
+	@Override
+	public void onLoad( final Run<?, ?> r ) {
+		if( configuration == null ) {
+			return;
+		}
+		for( Object component : configuration.getList() ) {
+			if( ( (AbstractConfigurationComponent) component ).isMigrated() ) {
+				Timer.get().submit( new Runnable() {
+					@Override
+					public void run() {
+						try {
+							r.save();
+						} catch( IOException e ) {
+							LOGGER.log( Level.WARNING, "Unable to save the migrated configuration of " + r.getFullDisplayName(), e );
+						}
+					}
+				} );
+				return;
+			}
+		}
+	}
+
+	public boolean isDetached() {
+		return build == null;
+	}
+
+	/**
+	 * @return the build number, also of a detached action
+	 */
+	public int getNumber() {
+		return build != null ? build.getNumber() : number;
+	}
 	
 	public Class<?> getClazz() {
 		return clazz;
@@ -68,9 +152,65 @@ public class ConfigurationRotatorBuildAction implements Action {
 		return "config-rotator";
 	}
 
+	/**
+	 * @return the step of a batch the configuration is, see {@link Bisection}, or null if it is not part of a batch
+	 */
+	public String getStep() {
+		return step;
+	}
+
+	public void setStep( String step ) {
+		this.step = step;
+	}
+
 	public AbstractBuild<?, ?> getBuild() {
 		return build;
 	}
+
+	/**
+	 * Remember the previous determined result, so rendering this action does not have to look it up.
+	 *
+	 * @param previous the previous result, or null if there is none
+	 */
+	public void setPreviousResult( ConfigurationRotatorBuildAction previous ) {
+		this.previous = previous;
+		this.previousNumber = previous != null ? previous.getNumber() : 0;
+	}
+
+	/**
+	 * Remember the previous determined result as it is when the build completes.
+	 */
+	public void resolvePreviousResult() {
+		SCM scm = build.getProject().getScm();
+		if( scm instanceof ConfigurationRotator ) {
+			setPreviousResult( ((ConfigurationRotator)scm).getAcrs().getPreviousResult( build, null ) );
+		}
+	}
+
+	/**
+	 * @return the determined result before this build, or null if there is none
+	 */
+	public ConfigurationRotatorBuildAction getPreviousResult() {
+		if( isDetached() ) {
+			return previous != null ? previous : ResultIndex.getPreviousResult( project, number, null );
+		}
+
+		if( previous == null ) {
+			if( previousNumber == null ) {
+				/* Stored before the previous result was remembered */
+				resolvePreviousResult();
+			} else if( previousNumber > 0 ) {
+				AbstractBuild<?, ?> b = build.getProject().getBuildByNumber( previousNumber );
+				if( b != null ) {
+					previous = b.getAction( ConfigurationRotatorBuildAction.class );
+				} else {
+					/* Discarded, look it up in the history */
+					previous = ResultIndex.getPreviousResult( build.getProject(), build.getNumber(), null );
+				}
+			}
+		}
+		return previous;
+	}
 	
 	public <T extends AbstractConfiguration<? extends AbstractConfigurationComponent>> T getConfiguration() {
 		return (T)configuration;
@@ -2,8 +2,6 @@ package net.praqma.jenkins.configrotator;
 
 import hudson.model.Action;
 import jenkins.model.Jenkins;
-import net.praqma.util.xml.feed.AtomPublisher;
-import net.praqma.util.xml.feed.Feed;
 import org.apache.commons.io.FileUtils;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
@@ -13,8 +11,10 @@ import javax.servlet.http.HttpServletResponse;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.*;
 import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
 
 public abstract class ConfigurationRotatorFeedAction implements Action {
 
@@ -48,15 +48,17 @@ public abstract class ConfigurationRotatorFeedAction implements Action {
         return getComponents( xmlFilter );
     }
 
-    public String getFeedTitle( File feed ) {
-        String title = "Unknown";
-        try {
-            title = Feed.getFeed( new AtomPublisher(), feed ).title;
-        } catch( Exception e ) {
-            /* No op */
-        }
+    /**
+     * @param feed the feed
+     * @return what is known of the feed, or null if it is not indexed yet, see {@link FeedIndex}
+     */
+    public FeedIndex.Info getFeedInfo( File feed ) {
+        return FeedIndex.get( feed.getParentFile() ).getInfo( feed );
+    }
 
-        return title;
+    public String getFeedTitle( File feed ) {
+        FeedIndex.Info info = getFeedInfo( feed );
+        return info != null ? info.getTitle() : getComponentName( feed.getName() );
     }
 
     public List<File> getComponents( FileFilter filter ) {
@@ -75,10 +77,86 @@ public abstract class ConfigurationRotatorFeedAction implements Action {
     public void doFeed( StaplerRequest req, StaplerResponse rsp ) throws IOException, ServletException {
         String component = req.getParameter( "component" );
         File file = new File( new File( ConfigurationRotator.getFeedPath(), getComponentName() ), component + ".xml" );
-        if( file.exists() ) {
-            rsp.serveFile( req, FileUtils.openInputStream( file ), file.lastModified(), file.getTotalSpace(), file.getName() );
+        if( component != null && file.exists() ) {
+            serveFeed( req, rsp, file );
         } else {
             rsp.sendError( HttpServletResponse.SC_NOT_FOUND );
         }
     }
+
+    /**
+     * Serve a feed. Feed readers poll the feeds, so a reader having the feed is answered <code>304 Not Modified</code>,
+     * by the ETag or the modification time of the feed, and the feed is compressed for readers accepting it.
+     *
+     * @param req the request
+     * @param rsp the response
+     * @param file the feed
+     * @throws IOException if the feed could not be served
+     */
+    public static void serveFeed( StaplerRequest req, StaplerResponse rsp, File file ) throws IOException {
+        /* The feed is replaced on every write, see FeedStore, so its time to the millisecond and length identify it */
+        long modified = file.lastModified();
+        long lastModified = modified / 1000 * 1000;
+        String etag = "\"" + Long.toHexString( modified ) + "-" + Long.toHexString( file.length() ) + "\"";
+
+        rsp.setHeader( "ETag", etag );
+        rsp.setDateHeader( "Last-Modified", lastModified );
+        rsp.setHeader( "Vary", "Accept-Encoding" );
+
+        if( isNotModified( req, etag, lastModified ) ) {
+            rsp.setStatus( HttpServletResponse.SC_NOT_MODIFIED );
+            return;
+        }
+
+        rsp.setContentType( "application/xml;charset=UTF-8" );
+        if( acceptsGzip( req ) ) {
+            rsp.setHeader( "Content-Encoding", "gzip" );
+            try( OutputStream out = new GZIPOutputStream( rsp.getOutputStream() ) ) {
+                FileUtils.copyFile( file, out );
+            }
+        } else {
+            rsp.setHeader( "Content-Length", Long.toString( file.length() ) );
+            try( OutputStream out = rsp.getOutputStream() ) {
+                FileUtils.copyFile( file, out );
+            }
+        }
+    }
+
+    private static boolean isNotModified( StaplerRequest req, String etag, long lastModified ) {
+        String match = req.getHeader( "If-None-Match" );
+        if( match != null ) {
+            for( String tag : match.split( "," ) ) {
+                tag = tag.trim();
+                if( tag.startsWith( "W/" ) ) {
+                    tag = tag.substring( 2 );
+                }
+                if( tag.equals( "*" ) || tag.equals( etag ) ) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        try {
+            long since = req.getDateHeader( "If-Modified-Since" );
+            return since != -1 && lastModified <= since;
+        } catch( IllegalArgumentException e ) {
+            /* Not a date */
+            return false;
+        }
+    }
+
+    private static boolean acceptsGzip( StaplerRequest req ) {
+        String accept = req.getHeader( "Accept-Encoding" );
+        if( accept == null ) {
+            return false;
+        }
+        for( String encoding : accept.split( "," ) ) {
+            String[] parts = encoding.trim().split( ";" );
+            if( parts[0].trim().equalsIgnoreCase( "gzip" ) ) {
+                return parts.length == 1 || !parts[1].trim().matches( "q=0(\\.0*)?" );
+            }
+        }
+        return false;
+    }
 }
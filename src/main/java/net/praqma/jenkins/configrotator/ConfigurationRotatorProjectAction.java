@@ -44,6 +44,18 @@ public class ConfigurationRotatorProjectAction implements ProminentProjectAction
         }
     }
 
+    /**
+     * @return the number of upcoming configurations queued, see {@link RotationQueue}
+     */
+    public int getQueueDepth() {
+        SCM scm = project.getScm();
+        if (scm instanceof ConfigurationRotator && ((ConfigurationRotator) scm).getAcrs().isLookAhead()) {
+            return RotationQueue.get(project).size();
+        } else {
+            return 0;
+        }
+    }
+
     public ConfigurationRotatorBuildAction getLastAction() {
         SCM scm = project.getScm();
         if (scm instanceof ConfigurationRotator) {
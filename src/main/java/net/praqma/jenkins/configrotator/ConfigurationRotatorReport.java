@@ -53,6 +53,13 @@ public class ConfigurationRotatorReport extends Actionable implements Unprotecte
         return actions;
     }
 
+    /**
+     * @return the number of feed entries waiting to be written, see {@link FeedWriter}
+     */
+    public int getFeedQueueDepth() {
+        return FeedWriter.getInstance().getQueueDepth();
+    }
+
     public String getUrl(ConfigurationRotatorSCMDescriptor<AbstractConfigurationRotatorSCM> scm) {
         return getRootUrl() + getUrlName() + "/" + scm.getFeedComponentName();
     }
@@ -7,16 +7,11 @@ import hudson.model.TaskListener;
 import hudson.model.listeners.RunListener;
 
 import java.io.File;
-import java.io.IOException;
-import java.nio.charset.Charset;
 import java.util.Date;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import net.praqma.util.xml.feed.*;
-import org.apache.commons.io.output.FileWriterWithEncoding;
-
 /**
  * <p>
  * RunLister implements onCompleted method that runs for every job on Jenkins
@@ -48,9 +43,8 @@ import org.apache.commons.io.output.FileWriterWithEncoding;
  * <p>
  * We chose to implement this as a runlistener we find the runlistener way of
  * doing it more clear instead of using the notifier (the post build step).
- * We know there might be some concurrency problems writing the feed files
- * if a lots of build finish at the same time.
- * TODO: This will be handled later and implemented.
+ * The feed files are written one at a time per feed, see {@link FeedStore},
+ * so builds finishing at the same time do not overwrite each other.
  * </p>
  * <p>
  * Writing feeds: we would have liked to use a fully tested and mature open
@@ -72,8 +66,6 @@ public class ConfigurationRotatorRunListener extends RunListener<Run> {
 
     private static Logger LOGGER = Logger.getLogger( ConfigurationRotatorReport.class.getName() );
 
-    private TaskListener localListener;
-
     public ConfigurationRotatorRunListener() {
         super( Run.class );
 
@@ -82,12 +74,10 @@ public class ConfigurationRotatorRunListener extends RunListener<Run> {
     /**
      * Run listener for ConfigurationRotator jobs that does atom feed writing
      * for the results.
-     * Writes entries to an existing feed, which is read from the component-
-     * feedfile. If this file does not exist, an initial feed is created incl.
-     * the file.
+     * Queues entries for the feed of every component, see {@link FeedWriter},
+     * which appends them to the {@link FeedStore} in the background. The store
+     * renders the component-feedfile from the latest entries.
      * <p>
-     * Upon adding the new entry, the feed is written to the file
-     * (overwriting the existing feed).
      * Feed clients uses the entries id and timestamps, so they only see
      * the new entries added.
      * </p>
@@ -104,75 +94,65 @@ public class ConfigurationRotatorRunListener extends RunListener<Run> {
      * CR2-1 will have a feed entry about compatibility with CR1-1 and CR3-2.
      * They will be stored in:
      * JENKINNS-ROOTFOLDER/config-rotator/feed/myPVob/CR1-1.xml etc.
+     * <p>
+     * The result of the build is also recorded in the {@link ResultIndex}. When builds
+     * run side by side, see {@link Reservations}, a build completing before an
+     * earlier one is recorded after it.
+     * </p>
      *
      * @param run current running build
      * @param listener Jenkins listener
      */
     @Override
     public void onCompleted(Run run, TaskListener listener) {
-        localListener = listener;
-
         if (!(run instanceof AbstractBuild)) {
             String runClassName = run.getClass().getSimpleName();
             LOGGER.log(Level.INFO, String.format("Feed update skipped as run type '%s' is unsupported", runClassName));
         } else {
-            AbstractBuild<?, ?> build = (AbstractBuild<?, ?>) run;
-            if (build.getProject().getScm() instanceof ConfigurationRotator) {
-                AbstractConfigurationRotatorSCM crScm = ((ConfigurationRotator) build.getProject().getScm()).getAcrs();
-                ConfigurationRotatorBuildAction action = build.getAction(ConfigurationRotatorBuildAction.class);
-                // if no action, build failed someway to set ConfigurationRotatorBuildAction, thus we can not
-                // say anything about configuration.
-                if (action != null) {
-                    AbstractConfiguration configuration = action.getConfigurationWithOutCast();
-                    List<AbstractConfigurationComponent> components = configuration.getList();
-                    try {
-                        for (AbstractConfigurationComponent component : components) {
-                            File feedFile = component.getFeedFile(crScm.getFeedPath());
-                            Date updated = new Date();
-                            Feed feed = component.getFeed(feedFile, crScm.getFeedURL(), updated);
-                            Entry e = component.getFeedEntry(build, updated);
-                            feed.addEntry(e);
-                            feed.updated = updated;
-                            writeFeedToFile(feed, feedFile);
-                        }
-                    } catch (Exception fe) {
-                        LOGGER.log(Level.SEVERE, "Feed error", fe);
-                        localListener.getLogger().println("ConfigRotator RunListener caught excetption. Trace written to log.");
-                    }
-                }
+            /* A build completing before an earlier one is held back, so the results are recorded in order */
+            for (AbstractBuild<?, ?> build : Reservations.complete((AbstractBuild<?, ?>) run)) {
+                ResultIndex.completed(build);
+                /* The listener writes to the log of this build only, held builds are already done with theirs */
+                writeFeeds(build, build == run ? listener : null);
             }
         }
     }
 
-
-
     /**
-     * Write the feed to the file componentFileName overwriting existing xml
-     * file with atoms feed. If entries have unique id that are not changes,
-     * subscribers will see only new ones.
+     * Removes a deleted build from the {@link ResultIndex}.
      *
-     * @param feed feed
-     * @throws IOException when an error occurs (General)
-     * @throws FeedException when error in feeed
+     * @param run the deleted build
      */
-    private void writeFeedToFile( Feed feed, File feedFile ) throws FeedException {
+    @Override
+    public void onDeleted(Run run) {
+        ResultIndex.deleted(run);
+    }
 
-        try {
-            if( !feedFile.exists() ) {
-                if( !feedFile.getParentFile().exists() ) {
-                    // create file including dirs
-                    if( !feedFile.getParentFile().mkdirs() ) {
-                        throw new IOException( "ConfigRotator RunListener - writeFeedToFile: failed to make dirs" );
+    /**
+     * @param build the build
+     * @param listener the listener of the build, or null if the build has completed earlier
+     */
+    private void writeFeeds(AbstractBuild<?, ?> build, TaskListener listener) {
+        if (build.getProject().getScm() instanceof ConfigurationRotator) {
+            AbstractConfigurationRotatorSCM crScm = ((ConfigurationRotator) build.getProject().getScm()).getAcrs();
+            ConfigurationRotatorBuildAction action = build.getAction(ConfigurationRotatorBuildAction.class);
+            // if no action, build failed someway to set ConfigurationRotatorBuildAction, thus we can not
+            // say anything about configuration.
+            if (action != null) {
+                AbstractConfiguration configuration = action.getConfigurationWithOutCast();
+                List<AbstractConfigurationComponent> components = configuration.getList();
+                try {
+                    for (AbstractConfigurationComponent component : components) {
+                        File feedFile = component.getFeedFile(crScm.getFeedPath());
+                        FeedWriter.getInstance().submit(feedFile, component.getFeedTitle(), component.getFeedUrlId(crScm.getFeedURL()), component.getFeedRecord(build, new Date()));
+                    }
+                } catch (Exception fe) {
+                    LOGGER.log(Level.SEVERE, "Feed error for " + build.getFullDisplayName(), fe);
+                    if (listener != null) {
+                        listener.getLogger().println("ConfigRotator RunListener caught excetption. Trace written to log.");
                     }
                 }
             }
-
-            try(FileWriterWithEncoding writer = new FileWriterWithEncoding( feedFile, Charset.forName("utf-8") )) {
-                writer.write( feed.getXML( new AtomPublisher() ) );
-            }
-
-        } catch( IOException ex ) {
-            LOGGER.log(Level.SEVERE, "Error while creating feed file",ex);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,279 @@
+package net.praqma.jenkins.configrotator;
+
+import hudson.XmlFile;
+import hudson.model.Items;
+import jenkins.util.Timer;
+import net.praqma.util.xml.feed.AtomPublisher;
+import net.praqma.util.xml.feed.Feed;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The title, number of entries, time of the last entry and last result of the component feeds of a feed directory,
+ * so the feeds can be listed without reading them.
+ * <p>
+ * The index is updated by the {@link FeedStore} as it writes the feeds, and written to <code>feeds.index</code> in the
+ * feed directory {@link #SAVE_DELAY} milliseconds after it changed, so the feeds written together are saved once. A feed not indexed, written by an earlier version, is read once in the background and indexed, and
+ * rebuilt if it cannot be read, see {@link FeedRecovery}.
+ * </p>
+ */
+public class FeedIndex {
+
+    private static final Logger LOGGER = Logger.getLogger( FeedIndex.class.getName() );
+
+    public static final String FILE_NAME = "feeds.index";
+
+    public static final long SAVE_DELAY = 5000;
+
+    private static final Map<File, FeedIndex> INDEXES = new ConcurrentHashMap<>();
+
+    private static final Set<File> INDEXING = Collections.newSetFromMap( new ConcurrentHashMap<File, Boolean>() );
+
+    private static ExecutorService indexer;
+
+    private transient File directory;
+
+    /**
+     * The index changed and is to be written
+     */
+    private transient boolean dirty;
+
+    /**
+     * The feeds by the names of their files
+     */
+    private Map<String, Info> feeds = new TreeMap<>();
+
+    /**
+     * What is known of a feed.
+     */
+    public static class Info {
+        private String title;
+        private int count;
+        private long updated;
+        private String result;
+
+        private Info( String title ) {
+            this.title = title;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        /**
+         * @return the number of entries of the feed
+         */
+        public int getCount() {
+            return count;
+        }
+
+        public Date getUpdated() {
+            return new Date( updated );
+        }
+
+        /**
+         * @return the result of the last entry, or null if it is not known
+         */
+        public String getResult() {
+            return result;
+        }
+    }
+
+    private FeedIndex( File directory ) {
+        this.directory = directory;
+    }
+
+    private XmlFile getFile() {
+        return new XmlFile( Items.XSTREAM2, new File( directory, FILE_NAME ) );
+    }
+
+    /**
+     * @param directory the feed directory
+     * @return the index of the feeds in it
+     */
+    public static FeedIndex get( File directory ) {
+        FeedIndex index = INDEXES.get( directory );
+        if( index == null ) {
+            synchronized( INDEXES ) {
+                index = INDEXES.get( directory );
+                if( index == null ) {
+                    index = load( directory );
+                    INDEXES.put( directory, index );
+                }
+            }
+        }
+        return index;
+    }
+
+    private static FeedIndex load( File directory ) {
+        FeedIndex index = new FeedIndex( directory );
+        XmlFile file = index.getFile();
+        if( file.exists() ) {
+            try {
+                file.unmarshal( index );
+            } catch( IOException | RuntimeException e ) {
+                LOGGER.log( Level.WARNING, "Unable to read the feed index of " + directory + ", indexing the feeds again", e );
+                index = new FeedIndex( directory );
+            }
+        }
+        if( index.feeds == null ) {
+            index.feeds = new TreeMap<>();
+        }
+        return index;
+    }
+
+    /**
+     * @param feedFile the feed
+     * @return what is known of the feed, or null if it is not indexed yet
+     */
+    public synchronized Info getInfo( File feedFile ) {
+        Info info = feeds.get( feedFile.getName() );
+        if( info == null && feedFile.exists() ) {
+            schedule( feedFile );
+        }
+        return info;
+    }
+
+    /**
+     * Index entries appended to a feed.
+     *
+     * @param feedFile the feed
+     * @param title the title of the feed
+     * @param records the entries appended, oldest first
+     */
+    public synchronized void appended( File feedFile, String title, List<FeedStore.Record> records ) {
+        Info info = feeds.get( feedFile.getName() );
+        if( info == null ) {
+            info = new Info( title );
+            feeds.put( feedFile.getName(), info );
+        }
+        info.title = title;
+        info.count += records.size();
+        last( info, records );
+        save();
+    }
+
+    /**
+     * Index a feed rebuilt.
+     *
+     * @param feedFile the feed
+     * @param title the title of the feed
+     * @param count the number of entries of the feed
+     * @param records the last entries of the feed, oldest first
+     */
+    public synchronized void rebuilt( File feedFile, String title, int count, List<FeedStore.Record> records ) {
+        Info info = new Info( title );
+        info.count = count;
+        last( info, records );
+        feeds.put( feedFile.getName(), info );
+        save();
+    }
+
+    private static void last( Info info, List<FeedStore.Record> records ) {
+        if( !records.isEmpty() ) {
+            FeedStore.Record last = records.get( records.size() - 1 );
+            info.updated = last.getUpdated().getTime();
+            info.result = last.getResult();
+        }
+    }
+
+    /**
+     * Index a feed written by an earlier version, unless it is indexed.
+     *
+     * @param feedFile the feed
+     * @param feed the feed read
+     */
+    synchronized void indexed( File feedFile, Feed feed ) {
+        if( !feeds.containsKey( feedFile.getName() ) ) {
+            Info info = new Info( feed.title );
+            info.count = feed.entries.size();
+            info.updated = feed.updated != null ? feed.updated.getTime() : feedFile.lastModified();
+            if( !feed.entries.isEmpty() ) {
+                info.result = FeedStore.Record.of( feed.entries.get( feed.entries.size() - 1 ) ).getResult();
+            }
+            feeds.put( feedFile.getName(), info );
+            save();
+        }
+    }
+
+    private void save() {
+        if( dirty ) {
+            return;
+        }
+        dirty = true;
+        Timer.get().schedule( new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        }, SAVE_DELAY, TimeUnit.MILLISECONDS );
+    }
+
+    /**
+     * Write the index, if it changed since it was written.
+     */
+    public synchronized void flush() {
+        if( !dirty ) {
+            return;
+        }
+        dirty = false;
+        try {
+            getFile().write( this );
+        } catch( IOException e ) {
+            LOGGER.log( Level.WARNING, "Unable to write the feed index of " + directory, e );
+        }
+    }
+
+    /**
+     * Write the indexes that changed, when Jenkins stops.
+     */
+    public static void flushAll() {
+        for( FeedIndex index : INDEXES.values() ) {
+            index.flush();
+        }
+    }
+
+    private static synchronized void schedule( final File feedFile ) {
+        if( !INDEXING.add( feedFile ) ) {
+            return;
+        }
+        if( indexer == null ) {
+            indexer = Executors.newSingleThreadExecutor( new ThreadFactory() {
+                @Override
+                public Thread newThread( Runnable r ) {
+                    Thread t = new Thread( r, "ConfigRotator feed indexer" );
+                    t.setDaemon( true );
+                    return t;
+                }
+            } );
+        }
+        indexer.execute( new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Feed feed = Feed.getFeed( new AtomPublisher(), feedFile );
+                    get( feedFile.getParentFile() ).indexed( feedFile, feed );
+                } catch( Exception e ) {
+                    LOGGER.log( Level.WARNING, "Unable to read the feed " + feedFile + ", rebuilding it", e );
+                    FeedRecovery.schedule( feedFile );
+                } finally {
+                    INDEXING.remove( feedFile );
+                }
+            }
+        } );
+    }
+}
@@ -0,0 +1,118 @@
+package net.praqma.jenkins.configrotator;
+
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import jenkins.model.Jenkins;
+import net.praqma.util.xml.feed.FeedException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Rebuilds a damaged component feed from the builds of the rotator jobs, as the run listener would have written it.
+ * <p>
+ * Only the entries after the damage are rebuilt, see {@link FeedStore#rebuild}, so the builds of every job rotating
+ * the component are read back from the last one to the first one completed before the last intact entry of the feed.
+ * The entries of builds deleted since are lost.
+ * </p>
+ */
+public final class FeedRecovery {
+
+    private static final Logger LOGGER = Logger.getLogger( FeedRecovery.class.getName() );
+
+    /**
+     * The feeds being rebuilt
+     */
+    private static final Set<File> RECOVERING = Collections.newSetFromMap( new ConcurrentHashMap<File, Boolean>() );
+
+    private FeedRecovery() { }
+
+    /**
+     * Rebuild a feed in the background, unless it is already being rebuilt.
+     *
+     * @param feedFile the feed
+     */
+    public static void schedule( final File feedFile ) {
+        if( !RECOVERING.add( feedFile ) ) {
+            return;
+        }
+
+        Thread thread = new Thread( new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    recover( feedFile );
+                } catch( IOException | FeedException | RuntimeException e ) {
+                    LOGGER.log( Level.SEVERE, "Unable to rebuild the feed " + feedFile, e );
+                } finally {
+                    RECOVERING.remove( feedFile );
+                }
+            }
+        }, "ConfigRotator feed recovery " + feedFile.getName() );
+        thread.setDaemon( true );
+        thread.start();
+    }
+
+    /**
+     * Rebuild a feed from the builds.
+     *
+     * @param feedFile the feed
+     * @return the number of builds read for entries, -1 if no rotator job has the feed
+     * @throws IOException if the feed could not be written
+     * @throws FeedException if the feed could not be rendered
+     */
+    public static int recover( File feedFile ) throws IOException, FeedException {
+        Jenkins jenkins = Jenkins.getInstance();
+        if( jenkins == null ) {
+            return -1;
+        }
+
+        long intact = FeedStore.getIntact( feedFile ).getTime();
+        String title = null;
+        String feedId = null;
+        List<FeedStore.Record> records = new ArrayList<>();
+        for( AbstractProject<?, ?> project : jenkins.getAllItems( AbstractProject.class ) ) {
+            if( !( project.getScm() instanceof ConfigurationRotator ) ) {
+                continue;
+            }
+            AbstractConfigurationRotatorSCM acrs = ( (ConfigurationRotator) project.getScm() ).getAcrs();
+            for( AbstractBuild<?, ?> build = project.getLastBuild(); build != null; build = build.getPreviousBuild() ) {
+                /* The builds before are in the feed, once the title of the feed is known */
+                boolean written = !build.isBuilding() && build.getTimeInMillis() + build.getDuration() <= intact;
+                if( written && title != null ) {
+                    break;
+                }
+                ConfigurationRotatorBuildAction action = build.getAction( ConfigurationRotatorBuildAction.class );
+                if( build.isBuilding() || action == null || action.getConfigurationWithOutCast() == null ) {
+                    continue;
+                }
+                for( AbstractConfigurationComponent component : action.getConfigurationWithOutCast().getList() ) {
+                    if( component.getFeedFile( acrs.getFeedPath() ).equals( feedFile ) ) {
+                        title = component.getFeedTitle();
+                        feedId = component.getFeedUrlId( acrs.getFeedURL() );
+                        if( !written ) {
+                            records.add( component.getFeedRecord( build, new Date( build.getTimeInMillis() + build.getDuration() ) ) );
+                        }
+                    }
+                }
+            }
+        }
+
+        if( title == null ) {
+            LOGGER.warning( "No rotator job has the feed " + feedFile );
+            return -1;
+        }
+
+        FeedStore.rebuild( feedFile, title, feedId, records );
+        LOGGER.info( String.format( "Rebuilt the feed %s from %d builds since %tc", feedFile, records.size(), new Date( intact ) ) );
+        return records.size();
+    }
+}
@@ -0,0 +1,613 @@
+package net.praqma.jenkins.configrotator;
+
+import net.praqma.util.xml.feed.AtomPublisher;
+import net.praqma.util.xml.feed.Entry;
+import net.praqma.util.xml.feed.Feed;
+import net.praqma.util.xml.feed.FeedException;
+import net.praqma.util.xml.feed.Person;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.commons.io.output.FileWriterWithEncoding;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The entries of the component feeds, appended to segment files instead of rewriting the feed.
+ * <p>
+ * The entries of a feed, <code>name.xml</code>, are kept in the directory <code>name.segments</code> next to it, in
+ * segments of at most {@link #ENTRIES} entries. An entry is appended to the last segment, and the Atom feed is then
+ * rendered from the last {@link #ENTRIES} entries only, so writing an entry costs the same however long the feed has
+ * grown. The older segments are kept. A feed written by earlier versions is moved into the directory, as
+ * <code>archive.xml</code>, when its first entry is appended, and its last entries are imported into the first segment.
+ * </p>
+ * <p>
+ * Feeds are locked by stripes of their files, and the Atom feed is written next to the feed and moved in place, so it
+ * is never read partly written. A damaged feed is rebuilt from the builds, see {@link FeedRecovery}, from its first
+ * damaged segment on. The feeds written are indexed, see {@link FeedIndex}.
+ * </p>
+ */
+public final class FeedStore {
+
+    private static final Logger LOGGER = Logger.getLogger( FeedStore.class.getName() );
+
+    /**
+     * The number of entries in a segment, and in the rendered feed
+     */
+    public static final int ENTRIES = Integer.getInteger( FeedStore.class.getName() + ".entries", 100 );
+
+    /**
+     * The longest text of an entry read, a longer one is taken as damage
+     */
+    static final int MAX_STRING = 16 * 1024 * 1024;
+
+    public static final String SEGMENTS = ".segments";
+    public static final String ARCHIVE = "archive.xml";
+    private static final String SEGMENT = ".seg";
+
+    /**
+     * A damaged segment is kept in the segments with this suffix when the feed is rebuilt
+     */
+    public static final String DAMAGED = ".damaged";
+
+    /**
+     * The segments of a feed being rebuilt, and the segments they replace until they are deleted
+     */
+    private static final String REBUILT = ".rebuilt";
+    private static final String REPLACED = ".replaced";
+
+    /**
+     * The result in the title of an entry, see {@link AbstractConfigurationComponent#getFeedRecord}
+     */
+    private static final Pattern RESULT = Pattern.compile( " in new (\\S+) configuration$" );
+
+    /**
+     * The last segment of the feeds appended to, and the number of entries in it
+     */
+    private static final Map<File, int[]> HEADS = new ConcurrentHashMap<>();
+
+    /**
+     * A feed is written holding the lock of its stripe, so different feeds are written side by side
+     */
+    private static final Object[] LOCKS = new Object[32];
+
+    static {
+        for( int i = 0; i < LOCKS.length; i++ ) {
+            LOCKS[i] = new Object();
+        }
+    }
+
+    private FeedStore() { }
+
+    /**
+     * An entry of a feed.
+     */
+    public static class Record implements Serializable {
+        private final String id;
+        private final String title;
+        private final long updated;
+        private final String summary;
+        private final String author;
+        private final String content;
+        private final String result;
+
+        public Record( String id, String title, Date updated, String summary, String author, String content, String result ) {
+            this.id = id;
+            this.title = title;
+            this.updated = updated.getTime();
+            this.summary = summary;
+            this.author = author;
+            this.content = content;
+            this.result = result;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public Date getUpdated() {
+            return new Date( updated );
+        }
+
+        /**
+         * @return the result of the configuration the entry is about
+         */
+        public String getResult() {
+            return result;
+        }
+
+        public Entry toEntry() {
+            Entry entry = new Entry( title, id, new Date( updated ) );
+            entry.summary = summary;
+            entry.author = new Person( author );
+            entry.content = content;
+            return entry;
+        }
+
+        void write( DataOutputStream out ) throws IOException {
+            writeString( out, id );
+            writeString( out, title );
+            out.writeLong( updated );
+            writeString( out, summary );
+            writeString( out, author );
+            writeString( out, content );
+            writeString( out, result );
+        }
+
+        /**
+         * @param entry an entry of a feed written by an earlier version
+         * @return the entry, with the result from its title
+         */
+        static Record of( Entry entry ) {
+            Matcher matcher = RESULT.matcher( entry.title != null ? entry.title : "" );
+            return new Record( entry.id, entry.title, entry.updated != null ? entry.updated : new Date( 0 ), entry.summary,
+                    entry.author != null ? entry.author.name : null, entry.content, matcher.find() ? matcher.group( 1 ) : null );
+        }
+
+        static Record read( DataInputStream in ) throws IOException {
+            String id = readString( in );
+            String title = readString( in );
+            long updated = in.readLong();
+            return new Record( id, title, new Date( updated ), readString( in ), readString( in ), readString( in ), readString( in ) );
+        }
+    }
+
+    static void writeString( DataOutputStream out, String value ) throws IOException {
+        if( value == null ) {
+            out.writeInt( -1 );
+        } else {
+            byte[] bytes = value.getBytes( StandardCharsets.UTF_8 );
+            out.writeInt( bytes.length );
+            out.write( bytes );
+        }
+    }
+
+    static String readString( DataInputStream in ) throws IOException {
+        int length = in.readInt();
+        if( length < 0 ) {
+            return null;
+        }
+        if( length > MAX_STRING || length > in.available() ) {
+            throw new EOFException( "The entry is longer than the file" );
+        }
+        byte[] bytes = new byte[length];
+        in.readFully( bytes );
+        return new String( bytes, StandardCharsets.UTF_8 );
+    }
+
+    /**
+     * @param feedFile the feed
+     * @return the directory of the segments of the feed
+     */
+    public static File getSegments( File feedFile ) {
+        return new File( feedFile.getParentFile(), getName( feedFile ) + SEGMENTS );
+    }
+
+    private static String getName( File feedFile ) {
+        String name = feedFile.getName();
+        return name.endsWith( ".xml" ) ? name.substring( 0, name.length() - 4 ) : name;
+    }
+
+    private static Object getLock( File feedFile ) {
+        return LOCKS[( feedFile.hashCode() & 0x7fffffff ) % LOCKS.length];
+    }
+
+    private static File getSegment( File segments, int number ) {
+        return new File( segments, String.format( "%08d%s", number, SEGMENT ) );
+    }
+
+    private static int getLastSegment( File segments ) {
+        File[] files = segments.listFiles( new FileFilter() {
+            @Override
+            public boolean accept( File file ) {
+                return file.isFile() && file.getName().endsWith( SEGMENT );
+            }
+        } );
+
+        int last = 0;
+        if( files != null ) {
+            for( File file : files ) {
+                try {
+                    last = Math.max( last, Integer.parseInt( file.getName().substring( 0, file.getName().length() - SEGMENT.length() ) ) );
+                } catch( NumberFormatException e ) {
+                    /* Not a segment */
+                }
+            }
+        }
+        return last;
+    }
+
+    /**
+     * The entries read from a segment.
+     */
+    private static class Segment {
+        private final List<Record> records = new ArrayList<>();
+
+        /**
+         * The length of the entries read
+         */
+        private long valid;
+        private long length;
+
+        private boolean isDamaged() {
+            return valid < length;
+        }
+    }
+
+    private static Segment readSegment( File file ) throws IOException {
+        Segment segment = new Segment();
+        if( !file.exists() ) {
+            return segment;
+        }
+        segment.length = file.length();
+        CountingInputStream counter = new CountingInputStream( new BufferedInputStream( new FileInputStream( file ) ) );
+        try( DataInputStream in = new DataInputStream( counter ) ) {
+            while( true ) {
+                segment.records.add( Record.read( in ) );
+                segment.valid = counter.getByteCount();
+            }
+        } catch( EOFException e ) {
+            /* The end of the segment, or an entry only partly written */
+        }
+        return segment;
+    }
+
+    /**
+     * Append an entry to a feed and render the feed.
+     *
+     * @param feedFile the feed
+     * @param title the title of the feed
+     * @param feedId the id of the feed
+     * @param record the entry
+     * @throws IOException if the entry or the feed could not be written
+     * @throws FeedException if the feed could not be rendered
+     */
+    public static void append( File feedFile, String title, String feedId, Record record ) throws IOException, FeedException {
+        append( feedFile, title, feedId, Collections.singletonList( record ) );
+    }
+
+    /**
+     * Append entries to a feed and render the feed once. An entry only partly written, when Jenkins stopped while
+     * appending, is cut off the segment first.
+     *
+     * @param feedFile the feed
+     * @param title the title of the feed
+     * @param feedId the id of the feed
+     * @param records the entries, oldest first
+     * @throws IOException if the entries or the feed could not be written
+     * @throws FeedException if the feed could not be rendered
+     */
+    public static void append( File feedFile, String title, String feedId, List<Record> records ) throws IOException, FeedException {
+        synchronized( getLock( feedFile ) ) {
+            File segments = open( feedFile );
+            if( !segments.exists() ) {
+                migrate( feedFile, segments );
+            }
+
+            int[] head = HEADS.get( segments );
+            if( head == null ) {
+                int last = Math.max( 1, getLastSegment( segments ) );
+                File file = getSegment( segments, last );
+                Segment segment = readSegment( file );
+                if( segment.isDamaged() ) {
+                    LOGGER.warning( "Cutting an entry partly written off " + file );
+                    try( RandomAccessFile cut = new RandomAccessFile( file, "rw" ) ) {
+                        cut.setLength( segment.valid );
+                    }
+                }
+                head = new int[]{ last, segment.records.size() };
+                HEADS.put( segments, head );
+            }
+
+            for( Record record : records ) {
+                if( head[1] >= ENTRIES ) {
+                    head[0]++;
+                    head[1] = 0;
+                }
+                try( DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( getSegment( segments, head[0] ), true ) ) ) ) {
+                    record.write( out );
+                } catch( IOException e ) {
+                    /* Count the segment again */
+                    HEADS.remove( segments );
+                    throw e;
+                }
+                head[1]++;
+            }
+
+            write( feedFile, render( title, feedId, getLast( feedFile, segments, head[0] ) ) );
+            FeedIndex.get( feedFile.getParentFile() ).appended( feedFile, title, records );
+        }
+    }
+
+    /**
+     * Move a feed written by an earlier version into the segments, as the archive, and import its last
+     * {@link #ENTRIES} entries into the first segment, so the feed rendered goes on from them. The feed is read once,
+     * and indexed from what is read.
+     */
+    private static void migrate( File feedFile, File segments ) throws IOException {
+        List<Record> imported = new ArrayList<>();
+        Feed legacy = null;
+        if( feedFile.exists() ) {
+            try {
+                legacy = Feed.getFeed( new AtomPublisher(), feedFile );
+                List<Entry> entries = legacy.entries;
+                for( Entry entry : entries.subList( Math.max( 0, entries.size() - ENTRIES ), entries.size() ) ) {
+                    imported.add( Record.of( entry ) );
+                }
+            } catch( Exception e ) {
+                LOGGER.log( Level.WARNING, "Unable to read the entries of " + feedFile + ", archiving it without them", e );
+                legacy = null;
+            }
+        }
+
+        if( !segments.mkdirs() ) {
+            throw new IOException( "Unable to create " + segments );
+        }
+        if( !imported.isEmpty() ) {
+            try( DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( getSegment( segments, 1 ) ) ) ) ) {
+                for( Record record : imported ) {
+                    record.write( out );
+                }
+            }
+        }
+        if( feedFile.exists() && !feedFile.renameTo( new File( segments, ARCHIVE ) ) ) {
+            LOGGER.warning( "Unable to archive " + feedFile );
+        }
+        if( legacy != null ) {
+            FeedIndex.get( feedFile.getParentFile() ).indexed( feedFile, legacy );
+        }
+    }
+
+    /**
+     * @param feedFile the feed
+     * @return the segments of the feed, put back in place if Jenkins stopped while they were replaced by
+     *         {@link #rebuild}
+     */
+    private static File open( File feedFile ) {
+        File segments = getSegments( feedFile );
+        File replaced = new File( segments.getParentFile(), segments.getName() + REPLACED );
+        if( !segments.exists() && replaced.exists() && !replaced.renameTo( segments ) ) {
+            LOGGER.warning( "Unable to put back " + replaced );
+        }
+        return segments;
+    }
+
+    /**
+     * @param feedFile the feed
+     * @return the time of the last entry before the damage of the feed, the entries of the builds completed since are
+     *         rebuilt, see {@link #rebuild}. The time 0 if the whole feed is rebuilt
+     * @throws IOException if the entries could not be read
+     */
+    public static Date getIntact( File feedFile ) throws IOException {
+        synchronized( getLock( feedFile ) ) {
+            File segments = open( feedFile );
+            int last = getLastSegment( segments );
+            Date intact = new Date( 0 );
+            for( int number = 1; number <= last; number++ ) {
+                Segment segment = readSegment( getSegment( segments, number ) );
+                if( !segment.records.isEmpty() ) {
+                    intact = segment.records.get( segment.records.size() - 1 ).getUpdated();
+                }
+                if( segment.isDamaged() ) {
+                    break;
+                }
+            }
+            return intact;
+        }
+    }
+
+    /**
+     * Rebuild a feed from its first damaged segment on, and render the feed. The segments before it are kept, the
+     * damaged segments are kept aside with the suffix {@link #DAMAGED}, and the entries read from them and from the
+     * segments after them are written again together with the entries rebuilt that the feed does not have.
+     * <p>
+     * The segments are rebuilt next to the segments of the feed, and swapped with them, so a feed is never left partly
+     * rebuilt.
+     * </p>
+     *
+     * @param feedFile the feed
+     * @param title the title of the feed
+     * @param feedId the id of the feed
+     * @param records the entries rebuilt, of the builds completed since the time given by {@link #getIntact(File)}
+     * @throws IOException if the entries or the feed could not be written
+     * @throws FeedException if the feed could not be rendered
+     */
+    public static void rebuild( File feedFile, String title, String feedId, List<Record> records ) throws IOException, FeedException {
+        synchronized( getLock( feedFile ) ) {
+            File segments = open( feedFile );
+            int last = getLastSegment( segments );
+
+            int first = last + 1;
+            int count = 0;
+            Set<String> ids = new HashSet<>();
+            List<Integer> damaged = new ArrayList<>();
+            List<Record> entries = new ArrayList<>();
+            for( int number = 1; number <= last; number++ ) {
+                Segment segment = readSegment( getSegment( segments, number ) );
+                if( segment.isDamaged() ) {
+                    first = Math.min( first, number );
+                    damaged.add( number );
+                }
+                for( Record record : segment.records ) {
+                    if( ids.add( record.getId() ) ) {
+                        count++;
+                        if( number >= first ) {
+                            entries.add( record );
+                        }
+                    }
+                }
+            }
+            for( Record record : records ) {
+                if( ids.add( record.getId() ) ) {
+                    entries.add( record );
+                    count++;
+                }
+            }
+            Collections.sort( entries, new Comparator<Record>() {
+                @Override
+                public int compare( Record r1, Record r2 ) {
+                    return r1.getUpdated().compareTo( r2.getUpdated() );
+                }
+            } );
+
+            File rebuilt = new File( segments.getParentFile(), segments.getName() + REBUILT );
+            FileUtils.deleteDirectory( rebuilt );
+            if( !rebuilt.mkdirs() ) {
+                throw new IOException( "Unable to create " + rebuilt );
+            }
+            for( int number = 1; number < first; number++ ) {
+                keep( getSegment( segments, number ), getSegment( rebuilt, number ) );
+            }
+            File[] kept = segments.listFiles();
+            if( kept != null ) {
+                for( File file : kept ) {
+                    if( file.getName().equals( ARCHIVE ) || file.getName().endsWith( DAMAGED ) ) {
+                        keep( file, new File( rebuilt, file.getName() ) );
+                    }
+                }
+            } else if( feedFile.exists() ) {
+                /* A feed of an earlier version that could not be read */
+                keep( feedFile, new File( rebuilt, ARCHIVE ) );
+            }
+            for( int number : damaged ) {
+                keep( getSegment( segments, number ), new File( rebuilt, getSegment( segments, number ).getName() + DAMAGED ) );
+            }
+
+            int number = first;
+            for( int i = 0; i < entries.size(); i += ENTRIES ) {
+                try( DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( getSegment( rebuilt, number++ ) ) ) ) ) {
+                    for( Record record : entries.subList( i, Math.min( i + ENTRIES, entries.size() ) ) ) {
+                        record.write( out );
+                    }
+                }
+            }
+
+            /* The segments replaced are put back by open() if Jenkins stops before the rebuilt ones are in place */
+            File replaced = new File( segments.getParentFile(), segments.getName() + REPLACED );
+            FileUtils.deleteDirectory( replaced );
+            HEADS.remove( segments );
+            if( segments.exists() && !segments.renameTo( replaced ) ) {
+                throw new IOException( "Unable to move aside " + segments );
+            }
+            if( !rebuilt.renameTo( segments ) ) {
+                if( replaced.exists() && !replaced.renameTo( segments ) ) {
+                    LOGGER.warning( "Unable to put back " + replaced );
+                }
+                throw new IOException( "Unable to replace " + segments );
+            }
+            FileUtils.deleteDirectory( replaced );
+
+            List<Record> lastEntries = getLast( feedFile, segments, getLastSegment( segments ) );
+            write( feedFile, render( title, feedId, lastEntries ) );
+            FeedIndex.get( feedFile.getParentFile() ).rebuilt( feedFile, title, count, lastEntries );
+        }
+    }
+
+    /**
+     * Link, or copy, a file into the segments being rebuilt, leaving it in the segments until they are replaced.
+     */
+    private static void keep( File file, File to ) throws IOException {
+        if( !file.exists() ) {
+            return;
+        }
+        try {
+            Files.createLink( to.toPath(), file.toPath() );
+        } catch( IOException | UnsupportedOperationException e ) {
+            Files.copy( file.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING );
+        }
+    }
+
+    /**
+     * @param feedFile the feed
+     * @return the last {@link #ENTRIES} entries of the feed, oldest first
+     * @throws IOException if the entries could not be read
+     */
+    public static List<Record> getLast( File feedFile ) throws IOException {
+        synchronized( getLock( feedFile ) ) {
+            File segments = open( feedFile );
+            return getLast( feedFile, segments, getLastSegment( segments ) );
+        }
+    }
+
+    private static List<Record> getLast( File feedFile, File segments, int last ) throws IOException {
+        List<Record> records = new ArrayList<>();
+        if( last > 1 ) {
+            Segment previous = readSegment( getSegment( segments, last - 1 ) );
+            if( previous.isDamaged() ) {
+                LOGGER.warning( "The feed segment " + getSegment( segments, last - 1 ) + " is damaged" );
+                FeedRecovery.schedule( feedFile );
+            }
+            records.addAll( previous.records );
+        }
+        records.addAll( readSegment( getSegment( segments, last ) ).records );
+        return records.size() > ENTRIES ? new ArrayList<>( records.subList( records.size() - ENTRIES, records.size() ) ) : records;
+    }
+
+    /**
+     * @param title the title of the feed
+     * @param feedId the id of the feed
+     * @param records the entries, oldest first
+     * @return the feed
+     */
+    public static Feed render( String title, String feedId, List<Record> records ) {
+        Date updated = records.isEmpty() ? new Date() : records.get( records.size() - 1 ).getUpdated();
+        Feed feed = new Feed( title, feedId, updated );
+        for( Record record : records ) {
+            feed.addEntry( record.toEntry() );
+        }
+        feed.updated = updated;
+        return feed;
+    }
+
+    /**
+     * Write the feed next to its file and move it in place, so the feed is never read partly written.
+     */
+    private static void write( File feedFile, Feed feed ) throws IOException, FeedException {
+        File temp = new File( feedFile.getParentFile(), feedFile.getName() + ".tmp" );
+        try {
+            try( FileWriterWithEncoding writer = new FileWriterWithEncoding( temp, Charset.forName( "utf-8" ) ) ) {
+                writer.write( feed.getXML( new AtomPublisher() ) );
+            }
+            try {
+                Files.move( temp.toPath(), feedFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+            } catch( AtomicMoveNotSupportedException e ) {
+                Files.move( temp.toPath(), feedFile.toPath(), StandardCopyOption.REPLACE_EXISTING );
+            }
+        } catch( IOException e ) {
+            LOGGER.log( Level.SEVERE, "Error while writing feed file " + feedFile, e );
+            throw e;
+        }
+    }
+}
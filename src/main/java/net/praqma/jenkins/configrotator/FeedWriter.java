@@ -0,0 +1,398 @@
+package net.praqma.jenkins.configrotator;
+
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.init.Terminator;
+import net.praqma.util.xml.feed.FeedException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Writes the entries of the component feeds in the background, so a completing build does not wait for the feeds.
+ * <p>
+ * The entries waiting for a feed are written together, with one rendering of the feed, see
+ * {@link FeedStore#append(File, String, String, List)}. An entry is added to a journal in the feed directory before it
+ * is queued, so entries queued when Jenkins stops are written when it starts again. The journal is emptied when the
+ * queue is, and rewritten with the entries still queued once most of its entries are written. At most
+ * {@link #CAPACITY} entries are queued, beyond that the build writes the entries queued for its feed and its own
+ * entry itself, so the entries of a feed are always written in order.
+ * </p>
+ */
+public class FeedWriter {
+
+    private static final Logger LOGGER = Logger.getLogger( FeedWriter.class.getName() );
+
+    public static final int CAPACITY = Integer.getInteger( FeedWriter.class.getName() + ".capacity", 1000 );
+
+    public static final String JOURNAL = "feed-journal.log";
+
+    /**
+     * The journal is rewritten when it has more than twice as many entries as are queued, plus this
+     */
+    public static final int COMPACT_SLACK = 100;
+
+    private static FeedWriter instance;
+
+    private final File journal;
+    private final int capacity;
+    private final Executor executor;
+
+    /**
+     * The entries waiting, per feed, in the order the feeds were first queued
+     */
+    private final Map<File, Pending> pending = new LinkedHashMap<>();
+
+    /**
+     * The number of entries queued or being written
+     */
+    private int depth;
+
+    private boolean draining;
+
+    /**
+     * The feeds being written, in the background or by a build when the queue is full
+     */
+    private final Set<File> writing = new HashSet<>();
+
+    /**
+     * The number of entries in the journal
+     */
+    private int journaled;
+
+    private static class Pending {
+        private final String title;
+        private final String feedId;
+        private final List<FeedStore.Record> records = new ArrayList<>();
+
+        private Pending( String title, String feedId ) {
+            this.title = title;
+            this.feedId = feedId;
+        }
+    }
+
+    /**
+     * @param journal the journal of the entries queued
+     * @param capacity the number of entries that can be queued
+     * @param executor runs the writing of the queued entries
+     */
+    public FeedWriter( File journal, int capacity, Executor executor ) {
+        this.journal = journal;
+        this.capacity = capacity;
+        this.executor = executor;
+    }
+
+    public static synchronized FeedWriter getInstance() {
+        if( instance == null ) {
+            instance = new FeedWriter( new File( ConfigurationRotator.getFeedPath(), JOURNAL ), CAPACITY, Executors.newSingleThreadExecutor( new ThreadFactory() {
+                @Override
+                public Thread newThread( Runnable r ) {
+                    Thread t = new Thread( r, "ConfigRotator feed writer" );
+                    t.setDaemon( true );
+                    return t;
+                }
+            } ) );
+        }
+        return instance;
+    }
+
+    /**
+     * @return the number of entries queued or being written
+     */
+    public synchronized int getQueueDepth() {
+        return depth;
+    }
+
+    /**
+     * Queue an entry of a feed.
+     *
+     * @param feedFile the feed
+     * @param title the title of the feed
+     * @param feedId the id of the feed
+     * @param record the entry
+     * @throws IOException if the queue is full and the entry could not be written
+     * @throws FeedException if the queue is full and the feed could not be rendered
+     */
+    public void submit( File feedFile, String title, String feedId, FeedStore.Record record ) throws IOException, FeedException {
+        List<FeedStore.Record> records = new ArrayList<>();
+        synchronized( this ) {
+            if( depth < capacity ) {
+                journal( feedFile, title, feedId, record );
+                queue( feedFile, title, feedId, record );
+                return;
+            }
+
+            /* The entries queued for the feed are written first, and not while they are being written */
+            try {
+                while( writing.contains( feedFile ) ) {
+                    wait();
+                }
+            } catch( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                throw new IOException( "Interrupted while waiting to write " + feedFile, e );
+            }
+            Pending feed = pending.remove( feedFile );
+            if( feed != null ) {
+                records.addAll( feed.records );
+                depth -= feed.records.size();
+            }
+            writing.add( feedFile );
+        }
+        records.add( record );
+
+        LOGGER.fine( "The feed queue is full, writing " + feedFile );
+        try {
+            FeedStore.append( feedFile, title, feedId, records );
+        } finally {
+            synchronized( this ) {
+                writing.remove( feedFile );
+                compact();
+                notifyAll();
+            }
+        }
+    }
+
+    private void queue( File feedFile, String title, String feedId, FeedStore.Record record ) {
+        Pending feed = pending.get( feedFile );
+        if( feed == null ) {
+            feed = new Pending( title, feedId );
+            pending.put( feedFile, feed );
+        }
+        feed.records.add( record );
+        depth++;
+
+        if( !draining ) {
+            draining = true;
+            executor.execute( new Runnable() {
+                @Override
+                public void run() {
+                    drain();
+                }
+            } );
+        }
+    }
+
+    private void drain() {
+        while( true ) {
+            File feedFile;
+            Pending feed;
+            synchronized( this ) {
+                while( ( feedFile = next() ) == null ) {
+                    if( pending.isEmpty() ) {
+                        compact();
+                        draining = false;
+                        notifyAll();
+                        return;
+                    }
+                    /* Every feed queued is being written by a build */
+                    try {
+                        wait();
+                    } catch( InterruptedException e ) {
+                        Thread.currentThread().interrupt();
+                        draining = false;
+                        notifyAll();
+                        return;
+                    }
+                }
+                feed = pending.remove( feedFile );
+                writing.add( feedFile );
+            }
+
+            try {
+                FeedStore.append( feedFile, feed.title, feed.feedId, feed.records );
+            } catch( IOException | FeedException | RuntimeException e ) {
+                LOGGER.log( Level.SEVERE, "Unable to write the feed " + feedFile, e );
+            }
+
+            synchronized( this ) {
+                writing.remove( feedFile );
+                depth -= feed.records.size();
+                compact();
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * @return the first feed queued that is not being written, or null if there is none
+     */
+    private File next() {
+        for( File feedFile : pending.keySet() ) {
+            if( !writing.contains( feedFile ) ) {
+                return feedFile;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Wait for the queued entries to be written.
+     *
+     * @param timeout the longest time to wait, in milliseconds
+     * @return true if the queue is empty
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public synchronized boolean flush( long timeout ) throws InterruptedException {
+        long until = System.currentTimeMillis() + timeout;
+        while( draining ) {
+            long left = until - System.currentTimeMillis();
+            if( left <= 0 ) {
+                return false;
+            }
+            wait( left );
+        }
+        return true;
+    }
+
+    private void journal( File feedFile, String title, String feedId, FeedStore.Record record ) {
+        if( !journal.getParentFile().exists() && !journal.getParentFile().mkdirs() ) {
+            LOGGER.warning( "Unable to create " + journal.getParentFile() );
+        }
+        try( DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( journal, true ) ) ) ) {
+            write( out, feedFile, title, feedId, record );
+            journaled++;
+        } catch( IOException e ) {
+            LOGGER.log( Level.WARNING, "Unable to journal an entry of " + feedFile, e );
+        }
+    }
+
+    private static void write( DataOutputStream out, File feedFile, String title, String feedId, FeedStore.Record record ) throws IOException {
+        FeedStore.writeString( out, feedFile.getPath() );
+        FeedStore.writeString( out, title );
+        FeedStore.writeString( out, feedId );
+        record.write( out );
+    }
+
+    /**
+     * Empty the journal when nothing is queued, or rewrite it with the entries queued when most of its entries are
+     * written. Not while a feed is being written, as the journal is all there is of its entries.
+     */
+    private void compact() {
+        if( !writing.isEmpty() ) {
+            return;
+        }
+        if( pending.isEmpty() ) {
+            truncate();
+            return;
+        }
+        if( journaled <= 2 * depth + COMPACT_SLACK ) {
+            return;
+        }
+
+        File temp = new File( journal.getParentFile(), journal.getName() + ".tmp" );
+        try {
+            try( DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( temp ) ) ) ) {
+                for( Map.Entry<File, Pending> entry : pending.entrySet() ) {
+                    for( FeedStore.Record record : entry.getValue().records ) {
+                        write( out, entry.getKey(), entry.getValue().title, entry.getValue().feedId, record );
+                    }
+                }
+            }
+            Files.move( temp.toPath(), journal.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+            LOGGER.fine( String.format( "Compacted the feed journal from %d to %d entries", journaled, depth ) );
+            journaled = depth;
+        } catch( IOException e ) {
+            LOGGER.log( Level.WARNING, "Unable to compact the feed journal " + journal, e );
+        }
+    }
+
+    private void truncate() {
+        if( journal.exists() && !journal.delete() ) {
+            LOGGER.warning( "Unable to empty the feed journal " + journal );
+        }
+        journaled = 0;
+    }
+
+    /**
+     * Queue the entries of the journal again. Entries already written to their feed are skipped.
+     *
+     * @return the number of entries queued
+     */
+    public synchronized int replay() {
+        if( !journal.exists() ) {
+            return 0;
+        }
+
+        Map<File, Pending> entries = new LinkedHashMap<>();
+        journaled = 0;
+        try( DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( journal ) ) ) ) {
+            while( true ) {
+                File feedFile = new File( FeedStore.readString( in ) );
+                String title = FeedStore.readString( in );
+                String feedId = FeedStore.readString( in );
+                FeedStore.Record record = FeedStore.Record.read( in );
+
+                Pending feed = entries.get( feedFile );
+                if( feed == null ) {
+                    feed = new Pending( title, feedId );
+                    entries.put( feedFile, feed );
+                }
+                feed.records.add( record );
+                journaled++;
+            }
+        } catch( EOFException e ) {
+            /* The end of the journal, or an entry only partly written */
+        } catch( IOException e ) {
+            LOGGER.log( Level.WARNING, "Unable to read the feed journal " + journal, e );
+        }
+
+        int count = 0;
+        for( Map.Entry<File, Pending> entry : entries.entrySet() ) {
+            Set<String> written = new HashSet<>();
+            try {
+                for( FeedStore.Record record : FeedStore.getLast( entry.getKey() ) ) {
+                    written.add( record.getId() );
+                }
+            } catch( IOException e ) {
+                LOGGER.log( Level.WARNING, "Unable to read the feed " + entry.getKey(), e );
+            }
+
+            Pending feed = entry.getValue();
+            for( FeedStore.Record record : feed.records ) {
+                if( !written.contains( record.getId() ) ) {
+                    queue( entry.getKey(), feed.title, feed.feedId, record );
+                    count++;
+                }
+            }
+        }
+
+        if( count == 0 ) {
+            truncate();
+        }
+        LOGGER.fine( String.format( "Replayed %d feed entries", count ) );
+        return count;
+    }
+
+    @Initializer( after = InitMilestone.JOB_LOADED )
+    public static void replayJournal() {
+        getInstance().replay();
+    }
+
+    @Terminator
+    public static void shutdown() throws InterruptedException {
+        if( instance != null && !instance.flush( 10000 ) ) {
+            LOGGER.warning( String.format( "%d feed entries left in the journal", instance.getQueueDepth() ) );
+        }
+        FeedIndex.flushAll();
+    }
+}
@@ -0,0 +1,205 @@
+package net.praqma.jenkins.configrotator;
+
+import hudson.model.AbstractBuild;
+import jenkins.model.Jenkins;
+import net.praqma.jenkins.configrotator.ConfigurationRotator.ResultType;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A controller wide index of the configurations tested, by their {@link AbstractConfiguration#getFingerprint() fingerprint},
+ * to the result and the build that tested them.
+ * <p>
+ * The index is an append-only log in the Jenkins root directory, with a line per determined build, and is read when it is
+ * first used. A later line for a configuration replaces an earlier one. The log is compacted to a line per configuration
+ * when most of its lines are replaced. Set the system property
+ * <code>net.praqma.jenkins.configrotator.FingerprintIndex.disabled</code> to build tested configurations again.
+ * </p>
+ */
+public final class FingerprintIndex {
+
+    private static final Logger LOGGER = Logger.getLogger( FingerprintIndex.class.getName() );
+
+    public static final String FILE_NAME = "config-rotator-fingerprints.log";
+
+    public static final boolean DISABLED = Boolean.getBoolean( FingerprintIndex.class.getName() + ".disabled" );
+
+    /**
+     * The log is compacted when it has more than twice as many lines as configurations, plus this
+     */
+    public static final int COMPACT_SLACK = 100;
+
+    private static Map<String, Tested> tested;
+    private static File loadedFrom;
+    private static int lines;
+
+    private FingerprintIndex() { }
+
+    /**
+     * A tested configuration.
+     */
+    public static final class Tested {
+        private final ResultType result;
+        private final String build;
+
+        Tested( ResultType result, String build ) {
+            this.result = result;
+            this.build = build;
+        }
+
+        public ResultType getResult() {
+            return result;
+        }
+
+        /**
+         * @return the full name of the job and the number of the build, separated by a #
+         */
+        public String getBuild() {
+            return build;
+        }
+
+        @Override
+        public String toString() {
+            return result + " in " + build;
+        }
+    }
+
+    private static File getFile() {
+        Jenkins jenkins = Jenkins.getInstance();
+        return jenkins != null ? new File( jenkins.getRootDir(), FILE_NAME ) : null;
+    }
+
+    private static synchronized Map<String, Tested> getTested() {
+        File file = getFile();
+        if( tested == null || ( file != null && !file.equals( loadedFrom ) ) ) {
+            tested = new HashMap<>();
+            loadedFrom = file;
+            lines = 0;
+            if( file != null && file.exists() ) {
+                try( BufferedReader reader = new BufferedReader( new InputStreamReader( new FileInputStream( file ), StandardCharsets.UTF_8 ) ) ) {
+                    String line;
+                    while( ( line = reader.readLine() ) != null ) {
+                        apply( line );
+                        lines++;
+                    }
+                } catch( IOException e ) {
+                    LOGGER.log( Level.WARNING, "Unable to read the tested configurations", e );
+                }
+            }
+            LOGGER.fine( String.format( "%d tested configurations in %d lines", tested.size(), lines ) );
+            compactIfNeeded();
+        }
+        return tested;
+    }
+
+    private static String toLine( String fingerprint, ResultType result, String build ) {
+        return fingerprint + " " + result + " " + build + "\n";
+    }
+
+    /**
+     * Rewrite the log with a line per configuration, if most of its lines are replaced.
+     */
+    private static void compactIfNeeded() {
+        File file = loadedFrom;
+        if( file == null || lines <= 2 * tested.size() + COMPACT_SLACK ) {
+            return;
+        }
+
+        File tmp = new File( file.getParentFile(), FILE_NAME + ".tmp" );
+        try {
+            try( Writer writer = new OutputStreamWriter( new FileOutputStream( tmp ), StandardCharsets.UTF_8 ) ) {
+                for( Map.Entry<String, Tested> entry : tested.entrySet() ) {
+                    writer.write( toLine( entry.getKey(), entry.getValue().getResult(), entry.getValue().getBuild() ) );
+                }
+            }
+            Files.move( tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+            LOGGER.fine( String.format( "Compacted %d lines to %d tested configurations", lines, tested.size() ) );
+            lines = tested.size();
+        } catch( IOException e ) {
+            LOGGER.log( Level.WARNING, "Unable to compact the tested configurations", e );
+        }
+    }
+
+    private static void apply( String line ) {
+        String[] parts = line.split( " ", 3 );
+        if( parts.length != 3 ) {
+            return;
+        }
+        try {
+            ResultType result = ResultType.valueOf( parts[1] );
+            if( result.equals( ResultType.COMPATIBLE ) || result.equals( ResultType.INCOMPATIBLE ) ) {
+                tested.put( parts[0], new Tested( result, parts[2] ) );
+            } else {
+                tested.remove( parts[0] );
+            }
+        } catch( IllegalArgumentException e ) {
+            LOGGER.fine( "Skipping unreadable fingerprint line" );
+        }
+    }
+
+    /**
+     * @param configuration the configuration
+     * @return how the configuration was tested, or null if it was not
+     */
+    public static Tested lookup( AbstractConfiguration<?> configuration ) {
+        if( DISABLED || configuration == null ) {
+            return null;
+        }
+        String fingerprint = configuration.getFingerprint();
+        synchronized( FingerprintIndex.class ) {
+            return getTested().get( fingerprint );
+        }
+    }
+
+    /**
+     * Record the result of a completed build, or remove its configuration if the build no longer has a determined result.
+     *
+     * @param build the build
+     */
+    public static void record( AbstractBuild<?, ?> build ) {
+        ConfigurationRotatorBuildAction action = build.getAction( ConfigurationRotatorBuildAction.class );
+        if( action == null || action.getConfigurationWithOutCast() == null ) {
+            return;
+        }
+
+        String fingerprint = action.getConfigurationWithOutCast().getFingerprint();
+        String name = build.getProject().getFullName() + "#" + build.getNumber();
+        synchronized( FingerprintIndex.class ) {
+            Map<String, Tested> map = getTested();
+            Tested current = map.get( fingerprint );
+            if( action.isDetermined() ) {
+                map.put( fingerprint, new Tested( action.getResult(), name ) );
+            } else if( current != null && current.getBuild().equals( name ) ) {
+                map.remove( fingerprint );
+            } else {
+                return;
+            }
+
+            File file = loadedFrom;
+            if( file == null ) {
+                return;
+            }
+            try( Writer writer = new OutputStreamWriter( new FileOutputStream( file, true ), StandardCharsets.UTF_8 ) ) {
+                writer.write( toLine( fingerprint, action.getResult(), name ) );
+                lines++;
+            } catch( IOException e ) {
+                LOGGER.log( Level.WARNING, "Unable to record the configuration of " + name, e );
+            }
+            compactIfNeeded();
+        }
+    }
+}
@@ -14,7 +14,10 @@ class GitJobDslContext implements Context {
         GitTargetJobDslContext context = new GitTargetJobDslContext();
         executeInContext(closure, context);
 
-        targets.add(new GitTarget(context.name, context.repository, context.branch, context.commit, context.fixed));
+        GitTarget target = new GitTarget(context.name, context.repository, context.branch, context.commit, context.fixed);
+        target.setDepth(context.depth);
+        target.setBlobless(context.blobless);
+        targets.add(target);
     }
 
 }
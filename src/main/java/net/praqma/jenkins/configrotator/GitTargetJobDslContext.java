@@ -38,4 +38,20 @@ class GitTargetJobDslContext implements Context {
         fixed = value;
     }
 
+    int depth = 0;
+
+    public void depth(int value) {
+        depth = value;
+    }
+
+    boolean blobless = false;
+
+    public void blobless() {
+        blobless = true;
+    }
+
+    public void blobless(boolean value) {
+        blobless = value;
+    }
+
 }
@@ -0,0 +1,121 @@
+package net.praqma.jenkins.configrotator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a batch of independent resolutions, typically one per configuration component,
+ * on a bounded pool of threads.
+ * <p>
+ * The outcomes are returned in the order the tasks were given, so callers selecting
+ * between the results behave exactly as if the tasks were run one at a time.
+ * This class only uses plain JDK types, so it can be used on agents as well.
+ * </p>
+ */
+public final class ParallelResolver {
+
+    /**
+     * The default number of concurrent resolutions, overridable with the system property
+     * <code>net.praqma.jenkins.configrotator.ParallelResolver.threads</code>.
+     */
+    public static final int DEFAULT_THREADS = Integer.getInteger( ParallelResolver.class.getName() + ".threads", 4 );
+
+    private static final AtomicInteger POOL_NUMBER = new AtomicInteger();
+
+    private ParallelResolver() { }
+
+    /**
+     * The result of a single task. Either a value, which may be null, or the failure of the task.
+     *
+     * @param <T> the type of the value
+     */
+    public static final class Outcome<T> {
+        private final T value;
+        private final Exception failure;
+
+        private Outcome( T value, Exception failure ) {
+            this.value = value;
+            this.failure = failure;
+        }
+
+        public T getValue() {
+            return value;
+        }
+
+        public Exception getFailure() {
+            return failure;
+        }
+
+        public boolean isFailed() {
+            return failure != null;
+        }
+    }
+
+    /**
+     * Run the tasks with at most <code>threads</code> running at the same time.
+     *
+     * @param tasks the tasks to run
+     * @param threads the maximum number of concurrent tasks. Values below one means {@link #DEFAULT_THREADS}
+     * @param <T> the type of the results
+     * @return the outcomes, in the same order as the tasks
+     * @throws InterruptedException when interrupted while waiting for the tasks
+     */
+    public static <T> List<Outcome<T>> resolve( List<? extends Callable<T>> tasks, int threads ) throws InterruptedException {
+        List<Outcome<T>> outcomes = new ArrayList<>( tasks.size() );
+        int poolSize = Math.min( threads < 1 ? DEFAULT_THREADS : threads, tasks.size() );
+
+        /* Nothing to gain from a pool */
+        if( poolSize <= 1 ) {
+            for( Callable<T> task : tasks ) {
+                try {
+                    outcomes.add( new Outcome<>( task.call(), null ) );
+                } catch( InterruptedException e ) {
+                    throw e;
+                } catch( Exception e ) {
+                    outcomes.add( new Outcome<T>( null, e ) );
+                }
+            }
+            return outcomes;
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool( poolSize, new ResolverThreadFactory() );
+        try {
+            List<Future<T>> futures = new ArrayList<>( tasks.size() );
+            for( Callable<T> task : tasks ) {
+                futures.add( pool.submit( task ) );
+            }
+
+            for( Future<T> future : futures ) {
+                try {
+                    outcomes.add( new Outcome<>( future.get(), null ) );
+                } catch( ExecutionException e ) {
+                    Throwable cause = e.getCause();
+                    outcomes.add( new Outcome<T>( null, cause instanceof Exception ? (Exception) cause : e ) );
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        return outcomes;
+    }
+
+    private static class ResolverThreadFactory implements ThreadFactory {
+        private final int pool = POOL_NUMBER.incrementAndGet();
+        private final AtomicInteger number = new AtomicInteger();
+
+        @Override
+        public Thread newThread( Runnable r ) {
+            Thread t = new Thread( r, "ConfigRotator resolver " + pool + "-" + number.incrementAndGet() );
+            t.setDaemon( true );
+            return t;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package net.praqma.jenkins.configrotator;
+
+import hudson.Extension;
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import hudson.model.Item;
+import hudson.model.listeners.ItemListener;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * The configurations reserved by the builds in flight of a job rotating concurrently, see
+ * {@link AbstractConfigurationRotatorSCM#isConcurrent(AbstractProject)}.
+ * <p>
+ * Every build reserves the configuration after the furthest one reserved, so builds running side by side never test
+ * the same configuration. A build completing without a determined result gives its configuration back, and the next
+ * build takes it before rotating further. A build completing while an earlier build is still running is held, and the
+ * completed builds are handed out in the order of their numbers, so their results are recorded in order.
+ * </p>
+ * <p>
+ * The reservations are kept in memory only, as builds in flight do not survive a restart. Only the numbers of the held
+ * builds are kept, and the reservations of a job are forgotten when it is deleted.
+ * </p>
+ */
+public class Reservations {
+
+    private static final Logger LOGGER = Logger.getLogger( Reservations.class.getName() );
+
+    private static final Map<String, Reservations> RESERVATIONS = new ConcurrentHashMap<>();
+
+    private final NavigableMap<Integer, AbstractConfiguration> reserved = new TreeMap<>();
+    private final NavigableSet<Integer> held = new TreeSet<>();
+    private final Deque<AbstractConfiguration> released = new ArrayDeque<>();
+
+    /**
+     * The furthest configuration reserved
+     */
+    private AbstractConfiguration front;
+
+    private Reservations() { }
+
+    public static Reservations get( AbstractProject<?, ?> project ) {
+        Reservations reservations = RESERVATIONS.get( project.getFullName() );
+        if( reservations == null ) {
+            reservations = new Reservations();
+            Reservations existing = RESERVATIONS.putIfAbsent( project.getFullName(), reservations );
+            if( existing != null ) {
+                reservations = existing;
+            }
+        }
+        return reservations;
+    }
+
+    /**
+     * @return true if a build is in flight or a configuration was given back
+     */
+    public synchronized boolean isActive() {
+        return !reserved.isEmpty() || !released.isEmpty();
+    }
+
+    /**
+     * @return true if a configuration was given back and must be built again
+     */
+    public synchronized boolean hasReleased() {
+        return !released.isEmpty();
+    }
+
+    /**
+     * @param last the configuration of the last result
+     * @return the configuration to rotate from, the furthest reserved while any is, otherwise the last result
+     */
+    public synchronized AbstractConfiguration getBase( AbstractConfiguration last ) {
+        return isActive() && front != null ? front : last;
+    }
+
+    /**
+     * @return the configuration given back first, or null if there is none
+     */
+    public synchronized AbstractConfiguration takeReleased() {
+        return released.pollFirst();
+    }
+
+    /**
+     * Reserve a configuration for a build.
+     *
+     * @param build the build
+     * @param configuration the configuration
+     * @param advance true if the configuration is further than the ones reserved, false if it was given back
+     */
+    public synchronized void reserve( AbstractBuild<?, ?> build, AbstractConfiguration configuration, boolean advance ) {
+        reserved.put( build.getNumber(), configuration );
+        if( advance ) {
+            front = configuration;
+        }
+        LOGGER.fine( String.format( "%s reserved %s", build.getFullDisplayName(), configuration ) );
+    }
+
+    /**
+     * Forget the configurations reserved, when the job is set to another configuration. The builds in flight are
+     * still handed out in order.
+     */
+    public synchronized void reset() {
+        released.clear();
+        front = null;
+    }
+
+    /**
+     * Forget the configurations reserved for a job, if it has reservations, see {@link #reset()}.
+     *
+     * @param project the project
+     */
+    public static void reset( AbstractProject<?, ?> project ) {
+        Reservations reservations = RESERVATIONS.get( project.getFullName() );
+        if( reservations != null ) {
+            reservations.reset();
+        }
+    }
+
+    /**
+     * Release the reservation of a completed build.
+     *
+     * @param build the build
+     * @return the completed builds whose results can be recorded, in order. Empty if an earlier build is still running
+     */
+    public static List<AbstractBuild<?, ?>> complete( AbstractBuild<?, ?> build ) {
+        Reservations reservations = RESERVATIONS.get( build.getProject().getFullName() );
+        if( reservations == null ) {
+            return Collections.<AbstractBuild<?, ?>>singletonList( build );
+        }
+        return reservations.release( build );
+    }
+
+    private List<AbstractBuild<?, ?>> release( AbstractBuild<?, ?> build ) {
+        AbstractProject<?, ?> project = build.getProject();
+        List<AbstractBuild<?, ?>> completed = new ArrayList<>();
+        for( int number : releaseNumbers( build ) ) {
+            AbstractBuild<?, ?> b = number == build.getNumber() ? build : project.getBuildByNumber( number );
+            if( b != null ) {
+                completed.add( b );
+            } else {
+                LOGGER.fine( String.format( "%s #%d is gone, not recording it", project.getFullName(), number ) );
+            }
+        }
+        return completed;
+    }
+
+    private synchronized List<Integer> releaseNumbers( AbstractBuild<?, ?> build ) {
+        AbstractConfiguration configuration = reserved.remove( build.getNumber() );
+        if( configuration != null ) {
+            ConfigurationRotatorBuildAction action = build.getAction( ConfigurationRotatorBuildAction.class );
+            if( action == null || !action.isDetermined() ) {
+                LOGGER.fine( String.format( "%s gave back %s", build.getFullDisplayName(), configuration ) );
+                released.addLast( configuration );
+            }
+        }
+        held.add( build.getNumber() );
+
+        List<Integer> completed = new ArrayList<>();
+        Integer running = reserved.isEmpty() ? null : reserved.firstKey();
+        while( !held.isEmpty() && ( running == null || held.first() < running ) ) {
+            completed.add( held.pollFirst() );
+        }
+        if( !isActive() ) {
+            front = null;
+        }
+        return completed;
+    }
+
+    /**
+     * Forgets the reservations of a job when it is deleted, and follows it when it is renamed.
+     */
+    @Extension
+    public static class ItemListenerImpl extends ItemListener {
+
+        @Override
+        public void onLocationChanged( Item item, String oldFullName, String newFullName ) {
+            Reservations reservations = RESERVATIONS.remove( oldFullName );
+            if( reservations != null ) {
+                RESERVATIONS.put( newFullName, reservations );
+            }
+        }
+
+        @Override
+        public void onDeleted( Item item ) {
+            RESERVATIONS.remove( item.getFullName() );
+        }
+    }
+}
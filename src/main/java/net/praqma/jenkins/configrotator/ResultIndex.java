@@ -0,0 +1,336 @@
+package net.praqma.jenkins.configrotator;
+
+import hudson.Extension;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import hudson.model.Item;
+import hudson.model.Run;
+import hudson.model.listeners.ItemListener;
+import jenkins.model.Jenkins;
+import jenkins.util.Timer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An index, per job, of the builds with a determined result and the class of the rotator SCM that made them.
+ * <p>
+ * The last and previous results are looked up in the index and only the builds found are loaded, instead of walking
+ * back through the build history. Deleted builds are removed, except the last result of each rotator SCM class, which
+ * is answered by a detached action from the {@link RotationHistory} of the job, the index is loaded from. The index and the history are kept up to date by a
+ * {@link ConfigurationRotatorRunListener}, and the index is loaded in the background when Jenkins starts. A job without a history has it
+ * rebuilt from its builds. Until a job is indexed, the lookups return null and the callers walk the build history.
+ * </p>
+ */
+public final class ResultIndex {
+
+    private static final Logger LOGGER = Logger.getLogger( ResultIndex.class.getName() );
+
+    private static final Map<String, JobResults> JOBS = new ConcurrentHashMap<>();
+    private static final Set<String> REBUILDING = ConcurrentHashMap.newKeySet();
+
+    private ResultIndex() { }
+
+    private static class JobResults {
+        private final NavigableMap<Integer, RotationHistory.Entry> results = new ConcurrentSkipListMap<>();
+        private volatile boolean complete = false;
+    }
+
+    private static JobResults getJobResults( String fullName ) {
+        JobResults results = JOBS.get( fullName );
+        if( results == null ) {
+            results = new JobResults();
+            JobResults existing = JOBS.putIfAbsent( fullName, results );
+            if( existing != null ) {
+                results = existing;
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Record the result of a completed build in the index and the history, or remove it if it is not determined.
+     *
+     * @param build the build
+     */
+    public static void record( AbstractBuild<?, ?> build ) {
+        ConfigurationRotatorBuildAction action = build.getAction( ConfigurationRotatorBuildAction.class );
+        JobResults results = getJobResults( build.getProject().getFullName() );
+        synchronized( results ) {
+            RotationHistory.Entry entry = null;
+            if( action != null && action.isDetermined() ) {
+                entry = RotationHistory.Entry.of( build, action );
+                results.results.put( build.getNumber(), entry );
+            } else if( action != null && results.results.remove( build.getNumber() ) != null ) {
+                /* No longer determined, this line replaces the earlier one */
+                entry = RotationHistory.Entry.of( build, action );
+            }
+
+            if( entry != null ) {
+                try {
+                    RotationHistory.append( build.getProject(), entry );
+                } catch( IOException e ) {
+                    LOGGER.log( Level.WARNING, "Unable to append to the rotation history of " + build.getProject().getFullName(), e );
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove a deleted build from the index and the history. The last result of each rotator SCM class is kept, as the
+     * rotation continues from it, also when its build is discarded by log rotation.
+     *
+     * @param run the deleted build
+     */
+    public static void deleted( Run<?, ?> run ) {
+        if( !( run.getParent() instanceof AbstractProject ) ) {
+            return;
+        }
+
+        AbstractProject<?, ?> project = (AbstractProject<?, ?>) run.getParent();
+        JobResults results = JOBS.get( project.getFullName() );
+        if( results == null ) {
+            return;
+        }
+
+        synchronized( results ) {
+            RotationHistory.Entry entry = results.results.get( run.getNumber() );
+            if( entry == null || isLast( results, entry ) ) {
+                return;
+            }
+
+            results.results.remove( run.getNumber() );
+            try {
+                RotationHistory.append( project, RotationHistory.Entry.deleted( run.getNumber() ) );
+            } catch( IOException e ) {
+                LOGGER.log( Level.WARNING, "Unable to append to the rotation history of " + project.getFullName(), e );
+            }
+        }
+    }
+
+    private static boolean isLast( JobResults results, RotationHistory.Entry entry ) {
+        for( RotationHistory.Entry later : results.results.tailMap( entry.getNumber(), false ).values() ) {
+            if( later.getClazz().equals( entry.getClazz() ) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Record a completed build, in the index and the {@link FingerprintIndex}. Called by the
+     * {@link ConfigurationRotatorRunListener}, in the order of the builds.
+     *
+     * @param build the build
+     */
+    public static void completed( AbstractBuild<?, ?> build ) {
+        ConfigurationRotatorBuildAction action = build.getAction( ConfigurationRotatorBuildAction.class );
+        if( action != null ) {
+            /* Builds before this one may have completed since it started */
+            action.resolvePreviousResult();
+        }
+        record( build );
+        FingerprintIndex.record( build );
+    }
+
+    /**
+     * The last determined result of a project.
+     *
+     * @param project the project
+     * @param clazz the rotator SCM class, or null for any
+     * @return the result, null if there is none. Also null if the project is not indexed yet, see {@link #isIndexed(AbstractProject)}
+     */
+    public static ConfigurationRotatorBuildAction getLastResult( AbstractProject<?, ?> project, Class<? extends AbstractConfigurationRotatorSCM> clazz ) {
+        List<ConfigurationRotatorBuildAction> actions = find( project, null, clazz, 1 );
+        return actions == null || actions.isEmpty() ? null : actions.get( 0 );
+    }
+
+    /**
+     * The determined result before a build.
+     *
+     * @param build the build
+     * @param clazz the rotator SCM class, or null for any
+     * @return the result, null if there is none. Also null if the project is not indexed yet, see {@link #isIndexed(AbstractProject)}
+     */
+    public static ConfigurationRotatorBuildAction getPreviousResult( AbstractBuild<?, ?> build, Class<? extends AbstractConfigurationRotatorSCM> clazz ) {
+        return getPreviousResult( build.getProject(), build.getNumber(), clazz );
+    }
+
+    /**
+     * The determined result before a build number, which may have been discarded.
+     *
+     * @param project the project
+     * @param number the build number
+     * @param clazz the rotator SCM class, or null for any
+     * @return the result, null if there is none. Also null if the project is not indexed yet, see {@link #isIndexed(AbstractProject)}
+     */
+    public static ConfigurationRotatorBuildAction getPreviousResult( AbstractProject<?, ?> project, int number, Class<? extends AbstractConfigurationRotatorSCM> clazz ) {
+        List<ConfigurationRotatorBuildAction> actions = find( project, number, clazz, 1 );
+        return actions == null || actions.isEmpty() ? null : actions.get( 0 );
+    }
+
+    /**
+     * The last determined results of a project, newest first.
+     *
+     * @param project the project
+     * @param clazz the rotator SCM class, or null for any
+     * @param limit the maximum number of results
+     * @return the results, or null if the project is not indexed yet
+     */
+    public static List<ConfigurationRotatorBuildAction> getLastResults( AbstractProject<?, ?> project, Class<? extends AbstractConfigurationRotatorSCM> clazz, int limit ) {
+        return find( project, null, clazz, limit );
+    }
+
+    /**
+     * @param project the project
+     * @return true if the lookups of the project are answered by the index. If not, the project is scheduled for indexing
+     */
+    public static boolean isIndexed( AbstractProject<?, ?> project ) {
+        JobResults results = JOBS.get( project.getFullName() );
+        if( results != null && results.complete ) {
+            return true;
+        }
+        scheduleRebuild( project );
+        return false;
+    }
+
+    private static List<ConfigurationRotatorBuildAction> find( AbstractProject<?, ?> project, Integer before, Class<?> clazz, int limit ) {
+        if( !isIndexed( project ) ) {
+            return null;
+        }
+
+        JobResults results = JOBS.get( project.getFullName() );
+        NavigableMap<Integer, RotationHistory.Entry> view = before == null ? results.results.descendingMap() : results.results.headMap( before, false ).descendingMap();
+        List<ConfigurationRotatorBuildAction> actions = new ArrayList<>();
+        for( RotationHistory.Entry entry : view.values() ) {
+            if( !entry.isClazz( clazz ) ) {
+                continue;
+            }
+
+            ConfigurationRotatorBuildAction action;
+            AbstractBuild<?, ?> build = project.getBuildByNumber( entry.getNumber() );
+            if( build != null ) {
+                action = build.getAction( ConfigurationRotatorBuildAction.class );
+                if( action == null || !action.isDetermined() ) {
+                    /* Changed behind our back */
+                    results.results.remove( entry.getNumber() );
+                    continue;
+                }
+            } else {
+                /* Discarded, but still part of the rotation */
+                action = entry.getDetachedAction( project );
+                if( action.getConfigurationWithOutCast() == null ) {
+                    continue;
+                }
+            }
+
+            actions.add( action );
+            if( actions.size() >= limit ) {
+                break;
+            }
+        }
+        return actions;
+    }
+
+    /**
+     * Index a project in the background, unless it is already being indexed.
+     *
+     * @param project the project
+     */
+    public static void scheduleRebuild( final AbstractProject<?, ?> project ) {
+        final String fullName = project.getFullName();
+        if( !REBUILDING.add( fullName ) ) {
+            return;
+        }
+
+        Timer.get().submit( new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    rebuild( project );
+                } catch( IOException | RuntimeException e ) {
+                    LOGGER.log( Level.WARNING, "Unable to index the results of " + fullName, e );
+                } finally {
+                    REBUILDING.remove( fullName );
+                }
+            }
+        } );
+    }
+
+    /**
+     * Index a project from its rotation history, which is rebuilt from the builds if there is none.
+     * Builds completing meanwhile are recorded by the listener.
+     *
+     * @param project the project
+     * @throws IOException if the history could not be read or written
+     */
+    public static void rebuild( AbstractProject<?, ?> project ) throws IOException {
+        LOGGER.fine( String.format( "Indexing the results of %s", project.getFullName() ) );
+        JobResults results = getJobResults( project.getFullName() );
+        List<RotationHistory.Entry> entries = RotationHistory.read( project );
+        boolean rebuilt = entries == null;
+        if( rebuilt ) {
+            entries = RotationHistory.fromBuilds( project );
+        }
+
+        synchronized( results ) {
+            /* Later lines replace earlier ones */
+            for( RotationHistory.Entry entry : entries ) {
+                if( entry.isDetermined() ) {
+                    if( !results.results.containsKey( entry.getNumber() ) || !rebuilt ) {
+                        results.results.put( entry.getNumber(), entry );
+                    }
+                } else {
+                    results.results.remove( entry.getNumber() );
+                }
+            }
+
+            /* Include anything recorded while the history was rebuilt */
+            if( rebuilt ) {
+                RotationHistory.write( project, results.results.values() );
+            }
+            results.complete = true;
+        }
+        LOGGER.fine( String.format( "Indexed %d results of %s", results.results.size(), project.getFullName() ) );
+    }
+
+    @Initializer( after = InitMilestone.JOB_LOADED )
+    public static void rebuildAll() {
+        Jenkins jenkins = Jenkins.getInstance();
+        if( jenkins == null ) {
+            return;
+        }
+        for( AbstractProject<?, ?> project : jenkins.getAllItems( AbstractProject.class ) ) {
+            if( project.getScm() instanceof ConfigurationRotator ) {
+                scheduleRebuild( project );
+            }
+        }
+    }
+
+    @Extension
+    public static class ItemListenerImpl extends ItemListener {
+
+        @Override
+        public void onLocationChanged( Item item, String oldFullName, String newFullName ) {
+            JobResults results = JOBS.remove( oldFullName );
+            if( results != null ) {
+                JOBS.put( newFullName, results );
+            }
+        }
+
+        @Override
+        public void onDeleted( Item item ) {
+            JOBS.remove( item.getFullName() );
+        }
+    }
+}
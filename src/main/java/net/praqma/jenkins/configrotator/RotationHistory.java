@@ -0,0 +1,290 @@
+package net.praqma.jenkins.configrotator;
+
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import net.praqma.jenkins.configrotator.ConfigurationRotator.ResultType;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * The rotation history of a job, an append-only log with a line per build with a result:
+ * the build number, the result, the rotator SCM class and the identities of the components of the configuration.
+ * <p>
+ * Only the identities are stored, so the history survives builds discarded by log rotation without holding their
+ * configurations. A discarded build is recreated from them when it is looked up, see
+ * {@link AbstractConfigurationRotatorSCM#recreateConfiguration(List)}.
+ * Lines that cannot be read are skipped, and a later line for the same build replaces an earlier one.
+ * </p>
+ */
+public final class RotationHistory {
+
+    private static final Logger LOGGER = Logger.getLogger( RotationHistory.class.getName() );
+
+    public static final String FILE_NAME = "config-rotator-history.log";
+
+    private RotationHistory() { }
+
+    /**
+     * A build in the history.
+     */
+    public static final class Entry {
+        private final int number;
+        private final ResultType result;
+        private final String clazz;
+        private final List<String> identities;
+
+        private ConfigurationRotatorBuildAction detached;
+
+        Entry( int number, ResultType result, String clazz, List<String> identities ) {
+            this.number = number;
+            this.result = result;
+            this.clazz = clazz;
+            this.identities = identities;
+        }
+
+        /**
+         * @param build the build
+         * @param action the action of the build
+         * @return the entry of the build
+         */
+        public static Entry of( AbstractBuild<?, ?> build, ConfigurationRotatorBuildAction action ) {
+            return of( build.getNumber(), action.getResult(), action.getClazz(), action.getConfigurationWithOutCast() );
+        }
+
+        static Entry of( int number, ResultType result, Class<?> clazz, AbstractConfiguration configuration ) {
+            return new Entry( number, result, clazz != null ? clazz.getName() : "-", identities( configuration ) );
+        }
+
+        /**
+         * @param number the build number
+         * @return an entry removing a deleted build from the history
+         */
+        static Entry deleted( int number ) {
+            return new Entry( number, ResultType.UNDETERMINED, "-", null );
+        }
+
+        public int getNumber() {
+            return number;
+        }
+
+        public ResultType getResult() {
+            return result;
+        }
+
+        public boolean isDetermined() {
+            return result.equals( ResultType.COMPATIBLE ) || result.equals( ResultType.INCOMPATIBLE );
+        }
+
+        public String getClazz() {
+            return clazz;
+        }
+
+        public boolean isClazz( Class<?> c ) {
+            return c == null || c.getName().equals( clazz );
+        }
+
+        /**
+         * @return the identities of the components of the configuration, or null if there is none
+         */
+        public List<String> getIdentities() {
+            return identities;
+        }
+
+        /**
+         * @param project the project
+         * @return an action, not attached to any build, for a build that has been discarded. Its configuration is null
+         * if it cannot be recreated by the rotator of the project
+         */
+        public synchronized ConfigurationRotatorBuildAction getDetachedAction( AbstractProject<?, ?> project ) {
+            if( detached != null ) {
+                return detached;
+            }
+
+            AbstractConfigurationRotatorSCM acrs = project.getScm() instanceof ConfigurationRotator ? ( (ConfigurationRotator) project.getScm() ).getAcrs() : null;
+            if( acrs == null || identities == null || !acrs.getClass().getName().equals( clazz ) ) {
+                return ConfigurationRotatorBuildAction.detached( project, number, null, null, result );
+            }
+
+            AbstractConfiguration configuration = acrs.recreateConfiguration( identities );
+            ConfigurationRotatorBuildAction action = ConfigurationRotatorBuildAction.detached( project, number, acrs.getClass(), configuration, result );
+            if( configuration != null ) {
+                detached = action;
+            }
+            return action;
+        }
+
+        String toLine() {
+            return number + " " + result + " " + clazz + " " + join( identities );
+        }
+
+        static Entry parse( String line ) {
+            String[] parts = line.split( " " );
+            if( parts.length != 4 ) {
+                return null;
+            }
+            try {
+                return new Entry( Integer.parseInt( parts[0] ), ResultType.valueOf( parts[1] ), parts[2], split( parts[3] ) );
+            } catch( IllegalArgumentException e ) {
+                return null;
+            }
+        }
+    }
+
+    public static File getFile( AbstractProject<?, ?> project ) {
+        return new File( project.getRootDir(), FILE_NAME );
+    }
+
+    /**
+     * Append an entry to the history of a job.
+     *
+     * @param project the project
+     * @param entry the entry
+     * @throws IOException if the history could not be written
+     */
+    public static synchronized void append( AbstractProject<?, ?> project, Entry entry ) throws IOException {
+        try( Writer writer = new OutputStreamWriter( new FileOutputStream( getFile( project ), true ), StandardCharsets.US_ASCII ) ) {
+            writer.write( entry.toLine() );
+            writer.write( '\n' );
+        }
+    }
+
+    /**
+     * Read the history of a job, oldest first.
+     *
+     * @param project the project
+     * @return the entries, or null if the job has no history
+     * @throws IOException if the history could not be read
+     */
+    public static List<Entry> read( AbstractProject<?, ?> project ) throws IOException {
+        File file = getFile( project );
+        if( !file.exists() ) {
+            return null;
+        }
+
+        List<Entry> entries = new ArrayList<>();
+        try( BufferedReader reader = new BufferedReader( new InputStreamReader( new FileInputStream( file ), StandardCharsets.US_ASCII ) ) ) {
+            String line;
+            while( ( line = reader.readLine() ) != null ) {
+                Entry entry = Entry.parse( line );
+                if( entry != null ) {
+                    entries.add( entry );
+                } else if( !line.isEmpty() ) {
+                    LOGGER.fine( String.format( "Skipping unreadable history line of %s", project.getFullName() ) );
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Rebuild the history of a job from its builds.
+     *
+     * @param project the project
+     * @return the entries, oldest first
+     * @throws IOException if the history could not be written
+     */
+    public static List<Entry> rebuild( AbstractProject<?, ?> project ) throws IOException {
+        List<Entry> entries = fromBuilds( project );
+        write( project, entries );
+        return entries;
+    }
+
+    /**
+     * @param project the project
+     * @return the entries of the builds of a job, oldest first
+     */
+    public static List<Entry> fromBuilds( AbstractProject<?, ?> project ) {
+        List<Entry> entries = new ArrayList<>();
+        for( AbstractBuild<?, ?> b = project.getLastCompletedBuild(); b != null; b = b.getPreviousBuild() ) {
+            ConfigurationRotatorBuildAction action = b.getAction( ConfigurationRotatorBuildAction.class );
+            if( action != null && action.isDetermined() ) {
+                entries.add( Entry.of( b, action ) );
+            }
+        }
+        Collections.reverse( entries );
+        return entries;
+    }
+
+    /**
+     * Replace the history of a job.
+     *
+     * @param project the project
+     * @param entries the entries, oldest first
+     * @throws IOException if the history could not be written
+     */
+    public static synchronized void write( AbstractProject<?, ?> project, Collection<Entry> entries ) throws IOException {
+        File file = getFile( project );
+        File tmp = new File( file.getParentFile(), FILE_NAME + ".tmp" );
+        try( Writer writer = new OutputStreamWriter( new FileOutputStream( tmp ), StandardCharsets.US_ASCII ) ) {
+            for( Entry entry : entries ) {
+                writer.write( entry.toLine() );
+                writer.write( '\n' );
+            }
+        }
+        Files.move( tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+    }
+
+    static List<String> identities( AbstractConfiguration<?> configuration ) {
+        if( configuration == null ) {
+            return null;
+        }
+        List<String> identities = new ArrayList<>();
+        for( AbstractConfigurationComponent component : configuration.getList() ) {
+            identities.add( component.getIdentity() );
+        }
+        return identities;
+    }
+
+    static String join( List<String> identities ) {
+        if( identities == null || identities.isEmpty() ) {
+            return "-";
+        }
+        StringBuilder sb = new StringBuilder();
+        try {
+            for( String identity : identities ) {
+                if( sb.length() > 0 ) {
+                    sb.append( ',' );
+                }
+                sb.append( URLEncoder.encode( identity, "UTF-8" ) );
+            }
+        } catch( UnsupportedEncodingException e ) {
+            /* UTF-8 is always supported */
+            throw new IllegalStateException( e );
+        }
+        return sb.toString();
+    }
+
+    static List<String> split( String joined ) {
+        if( joined.equals( "-" ) ) {
+            return null;
+        }
+        List<String> identities = new ArrayList<>();
+        try {
+            for( String identity : joined.split( ",", -1 ) ) {
+                identities.add( URLDecoder.decode( identity, "UTF-8" ) );
+            }
+        } catch( UnsupportedEncodingException e ) {
+            /* UTF-8 is always supported */
+            throw new IllegalStateException( e );
+        }
+        return identities;
+    }
+}
@@ -0,0 +1,183 @@
+package net.praqma.jenkins.configrotator;
+
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.model.AbstractProject;
+import hudson.model.Item;
+import hudson.model.Items;
+import hudson.model.listeners.ItemListener;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The upcoming configurations of a job, precomputed from the pending versions of its components, see {@link Timeline}.
+ * <p>
+ * The queue follows a configuration, the one it was computed from or the last one taken from it, and is only used
+ * when the job is still at that configuration and rotates with the same settings. It is refilled when it runs empty,
+ * picking up the versions that arrived meanwhile, and dropped when a poll finds the versions it was resolved from have
+ * moved, as they do when a branch is rewritten. The queue is kept in memory and written to the job directory.
+ * </p>
+ */
+public class RotationQueue {
+
+    private static final Logger LOGGER = Logger.getLogger( RotationQueue.class.getName() );
+
+    public static final String FILE_NAME = "config-rotator-queue.xml";
+
+    private static final Map<String, RotationQueue> QUEUES = new ConcurrentHashMap<>();
+
+    /**
+     * The fingerprint of the configuration the queue follows
+     */
+    private String base;
+
+    /**
+     * The settings of the rotation, see {@link AbstractConfigurationRotatorSCM#getRotationSettings()}
+     */
+    private String settings;
+
+    /**
+     * What the configurations were resolved from, such as the remote tips, once a poll has seen it
+     */
+    private String source;
+    private List<AbstractConfiguration> configurations = new ArrayList<>();
+
+    private RotationQueue() { }
+
+    private static XmlFile getFile( AbstractProject<?, ?> project ) {
+        return new XmlFile( Items.XSTREAM2, new File( project.getRootDir(), FILE_NAME ) );
+    }
+
+    public static synchronized RotationQueue get( AbstractProject<?, ?> project ) {
+        RotationQueue queue = QUEUES.get( project.getFullName() );
+        if( queue == null ) {
+            queue = new RotationQueue();
+            XmlFile file = getFile( project );
+            if( file.exists() ) {
+                try {
+                    file.unmarshal( queue );
+                } catch( IOException | RuntimeException e ) {
+                    LOGGER.log( Level.WARNING, "Unable to read the rotation queue of " + project.getFullName(), e );
+                    queue = new RotationQueue();
+                }
+            }
+            QUEUES.put( project.getFullName(), queue );
+        }
+        return queue;
+    }
+
+    private boolean follows( AbstractConfiguration<?> current, String settings ) {
+        return base != null && current != null && base.equals( current.getFingerprint() ) && settings != null && settings.equals( this.settings );
+    }
+
+    /**
+     * @return the number of configurations queued
+     */
+    public synchronized int size() {
+        return configurations.size();
+    }
+
+    /**
+     * @param current the current configuration of the job
+     * @param settings the settings of the rotation
+     * @return the next configuration, or null if there is none queued after the current configuration with these settings
+     */
+    public synchronized AbstractConfiguration peek( AbstractConfiguration<?> current, String settings ) {
+        return follows( current, settings ) && !configurations.isEmpty() ? configurations.get( 0 ) : null;
+    }
+
+    /**
+     * Check that the configurations were resolved from the same source, the first source seen is remembered.
+     *
+     * @param project the project
+     * @param source what the configurations would be resolved from now, or null if it is not known
+     * @return true if the queue may be used, false if it is dropped
+     */
+    public synchronized boolean isFrom( AbstractProject<?, ?> project, String source ) {
+        if( source == null || source.equals( this.source ) ) {
+            return true;
+        }
+        if( this.source == null ) {
+            this.source = source;
+            save( project );
+            return true;
+        }
+
+        LOGGER.fine( String.format( "The queue of %s was resolved from another source, dropping it", project.getFullName() ) );
+        base = null;
+        this.source = null;
+        configurations = new ArrayList<>();
+        save( project );
+        return false;
+    }
+
+    /**
+     * Take the next configuration, the queue then follows it.
+     *
+     * @param project the project
+     * @param current the current configuration of the job
+     * @param settings the settings of the rotation
+     * @return the next configuration, or null if there is none queued after the current configuration with these settings
+     */
+    public synchronized AbstractConfiguration pop( AbstractProject<?, ?> project, AbstractConfiguration<?> current, String settings ) {
+        AbstractConfiguration next = peek( current, settings );
+        if( next != null ) {
+            configurations.remove( 0 );
+            base = next.getFingerprint();
+            save( project );
+        }
+        return next;
+    }
+
+    /**
+     * Replace the queue.
+     *
+     * @param project the project
+     * @param current the configuration the upcoming configurations follow
+     * @param settings the settings of the rotation
+     * @param upcoming the upcoming configurations, in order
+     */
+    public synchronized void fill( AbstractProject<?, ?> project, AbstractConfiguration<?> current, String settings, List<AbstractConfiguration> upcoming ) {
+        base = current.getFingerprint();
+        this.settings = settings;
+        source = null;
+        configurations = new ArrayList<>( upcoming );
+        LOGGER.fine( String.format( "Queued %d configurations for %s", configurations.size(), project.getFullName() ) );
+        save( project );
+    }
+
+    private void save( AbstractProject<?, ?> project ) {
+        try {
+            getFile( project ).write( this );
+        } catch( IOException e ) {
+            LOGGER.log( Level.WARNING, "Unable to write the rotation queue of " + project.getFullName(), e );
+        }
+    }
+
+    /**
+     * Forgets the queue of a job when it is deleted, and follows it when it is renamed.
+     */
+    @Extension
+    public static class ItemListenerImpl extends ItemListener {
+
+        @Override
+        public void onLocationChanged( Item item, String oldFullName, String newFullName ) {
+            RotationQueue queue = QUEUES.remove( oldFullName );
+            if( queue != null ) {
+                QUEUES.put( newFullName, queue );
+            }
+        }
+
+        @Override
+        public void onDeleted( Item item ) {
+            QUEUES.remove( item.getFullName() );
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package net.praqma.jenkins.configrotator;
+
+import hudson.XmlFile;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.model.AbstractProject;
+import hudson.model.Items;
+import jenkins.model.Jenkins;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The mutable rotation state of a job: whether it was reconfigured and the current configuration.
+ * <p>
+ * The state changes with every rotation, so it is kept in a small file in the job directory instead of the job
+ * configuration, which is then only written when the job is configured. The file is written atomically.
+ * </p>
+ */
+public class RotationState {
+
+    private static final Logger LOGGER = Logger.getLogger( RotationState.class.getName() );
+
+    public static final String FILE_NAME = "config-rotator-state.xml";
+
+    private boolean reconfigure;
+    private boolean justConfigured;
+    private AbstractConfiguration configuration;
+
+    public RotationState( boolean reconfigure, boolean justConfigured, AbstractConfiguration configuration ) {
+        this.reconfigure = reconfigure;
+        this.justConfigured = justConfigured;
+        this.configuration = configuration;
+    }
+
+    public boolean isReconfigure() {
+        return reconfigure;
+    }
+
+    public boolean isJustConfigured() {
+        return justConfigured;
+    }
+
+    public AbstractConfiguration getConfiguration() {
+        return configuration;
+    }
+
+    /**
+     * Keep the state out of the job configuration. Fields persisted there by earlier versions are ignored when read,
+     * except the configuration, which is migrated.
+     */
+    @Initializer( before = InitMilestone.PLUGINS_STARTED )
+    public static void omitState() {
+        Items.XSTREAM2.omitField( ConfigurationRotator.class, "reconfigure" );
+        Items.XSTREAM2.omitField( ConfigurationRotator.class, "justConfigured" );
+        Items.XSTREAM2.omitField( AbstractConfigurationRotatorSCM.class, "currentConfiguration" );
+    }
+
+    /**
+     * Load the state of every rotator job, so their current configuration is shown before they poll.
+     */
+    @Initializer( after = InitMilestone.JOB_LOADED )
+    public static void loadAll() {
+        Jenkins jenkins = Jenkins.getInstance();
+        if( jenkins == null ) {
+            return;
+        }
+        for( AbstractProject<?, ?> project : jenkins.getAllItems( AbstractProject.class ) ) {
+            if( project.getScm() instanceof ConfigurationRotator ) {
+                ( (ConfigurationRotator) project.getScm() ).loadState( project );
+            }
+        }
+    }
+
+    public static XmlFile getFile( AbstractProject<?, ?> project ) {
+        return new XmlFile( Items.XSTREAM2, new File( project.getRootDir(), FILE_NAME ) );
+    }
+
+    /**
+     * @param project the project
+     * @return the state of the project, or null if it has none or it could not be read
+     */
+    public static RotationState load( AbstractProject<?, ?> project ) {
+        XmlFile file = getFile( project );
+        if( !file.exists() ) {
+            return null;
+        }
+
+        try {
+            return (RotationState) file.read();
+        } catch( IOException | RuntimeException e ) {
+            LOGGER.log( Level.WARNING, "Unable to read the rotation state of " + project.getFullName(), e );
+            return null;
+        }
+    }
+
+    /**
+     * Write the state of a project, replacing the file atomically.
+     *
+     * @param project the project
+     * @throws IOException if the state could not be written
+     */
+    public void save( AbstractProject<?, ?> project ) throws IOException {
+        getFile( project ).write( this );
+    }
+}
@@ -0,0 +1,176 @@
+package net.praqma.jenkins.configrotator;
+
+import hudson.DescriptorExtensionList;
+import hudson.ExtensionPoint;
+import hudson.model.AbstractDescribableImpl;
+import hudson.model.Descriptor;
+import jenkins.model.Jenkins;
+import net.praqma.jenkins.configrotator.strategy.OldestFirstStrategy;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Chooses which component of a configuration advances next, given the next pending version of every component that
+ * has one and the recent rotations of the job.
+ * <p>
+ * The rotators resolve the pending versions of their components and merge them with a {@link Timeline}, which asks the
+ * strategy at every step. The default advances the component with the oldest version, see {@link OldestFirstStrategy}.
+ * </p>
+ */
+public abstract class RotationStrategy extends AbstractDescribableImpl<RotationStrategy> implements ExtensionPoint, Serializable {
+
+    /**
+     * The next pending version of a component.
+     */
+    public static class Candidate {
+        private final int component;
+        private final long time;
+        private final int pending;
+
+        public Candidate( int component, long time, int pending ) {
+            this.component = component;
+            this.time = time;
+            this.pending = pending;
+        }
+
+        /**
+         * @return the index of the component in the configuration
+         */
+        public int getComponent() {
+            return component;
+        }
+
+        /**
+         * @return the time of the version
+         */
+        public long getTime() {
+            return time;
+        }
+
+        /**
+         * @return the number of versions of the component known to be pending, this one included
+         */
+        public int getPending() {
+            return pending;
+        }
+    }
+
+    /**
+     * The recent rotations of a job, per component, updated as the components advance.
+     */
+    public static class History {
+        private final int[] since;
+        private final int[] count;
+        private int last = -1;
+
+        /**
+         * An empty history.
+         *
+         * @param size the number of components
+         */
+        public History( int size ) {
+            since = new int[size];
+            count = new int[size];
+            Arrays.fill( since, Integer.MAX_VALUE );
+        }
+
+        /**
+         * The history of a sequence of configurations.
+         *
+         * @param size the number of components
+         * @param configurations the configurations, newest first
+         * @return the history
+         */
+        public static History of( int size, List<? extends AbstractConfiguration> configurations ) {
+            History history = new History( size );
+            for( int i = configurations.size() - 1; i >= 0; i-- ) {
+                List<Integer> changed = configurations.get( i ).getChangedComponentIndecies();
+                for( int c : changed ) {
+                    history.advanced( c );
+                }
+            }
+            return history;
+        }
+
+        /**
+         * @return the component advanced last, -1 if none has
+         */
+        public int getLast() {
+            return last;
+        }
+
+        /**
+         * @param component the index of the component
+         * @return the number of steps since the component advanced, {@link Integer#MAX_VALUE} if it has not
+         */
+        public int getSince( int component ) {
+            return component < since.length ? since[component] : Integer.MAX_VALUE;
+        }
+
+        /**
+         * @param component the index of the component
+         * @return the number of times the component has advanced
+         */
+        public int getCount( int component ) {
+            return component < count.length ? count[component] : 0;
+        }
+
+        /**
+         * Record that a component advanced.
+         *
+         * @param component the index of the component
+         */
+        public void advanced( int component ) {
+            if( component < 0 || component >= since.length ) {
+                return;
+            }
+            for( int i = 0; i < since.length; i++ ) {
+                if( since[i] != Integer.MAX_VALUE ) {
+                    since[i]++;
+                }
+            }
+            since[component] = 0;
+            count[component]++;
+            last = component;
+        }
+    }
+
+    /**
+     * @param candidates the next pending version of every component that has one, in component order. Never empty
+     * @param history the recent rotations
+     * @return the candidate to advance
+     */
+    public abstract Candidate choose( List<Candidate> candidates, History history );
+
+    /**
+     * @param candidates the candidates
+     * @return the candidate with the oldest version, the first one if several are as old
+     */
+    protected static Candidate oldest( List<Candidate> candidates ) {
+        Candidate oldest = null;
+        for( Candidate candidate : candidates ) {
+            if( oldest == null || candidate.getTime() < oldest.getTime() ) {
+                oldest = candidate;
+            }
+        }
+        return oldest;
+    }
+
+    /**
+     * @return the strategy of rotators without one
+     */
+    public static RotationStrategy getDefault() {
+        return new OldestFirstStrategy();
+    }
+
+    /**
+     * All registered {@link RotationStrategy}s.
+     *
+     * @return the descriptors of the strategies
+     */
+    public static DescriptorExtensionList<RotationStrategy, Descriptor<RotationStrategy>> all() {
+        return Jenkins.getInstance().<RotationStrategy, Descriptor<RotationStrategy>>getDescriptorList( RotationStrategy.class );
+    }
+}
@@ -0,0 +1,101 @@
+package net.praqma.jenkins.configrotator;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Merges the pending versions of the components of a configuration, each in the order they follow each other,
+ * into the order the rotation advances them. A {@link RotationStrategy} chooses the component at every step, by
+ * default the one with the oldest next version, and the first component when two are equally old.
+ *
+ * @param <V> the version, a commit or a baseline
+ */
+public class Timeline<V> {
+
+    /**
+     * A component advanced to a version.
+     *
+     * @param <V> the version
+     */
+    public static class Step<V> {
+        private final int component;
+        private final V version;
+
+        Step( int component, V version ) {
+            this.component = component;
+            this.version = version;
+        }
+
+        /**
+         * @return the index of the component in the configuration
+         */
+        public int getComponent() {
+            return component;
+        }
+
+        public V getVersion() {
+            return version;
+        }
+    }
+
+    private static class Pending<V> {
+        private final V version;
+        private final long time;
+
+        Pending( V version, long time ) {
+            this.version = version;
+            this.time = time;
+        }
+    }
+
+    private final List<Deque<Pending<V>>> components = new ArrayList<>();
+
+    /**
+     * @param size the number of components in the configuration
+     */
+    public Timeline( int size ) {
+        for( int i = 0; i < size; ++i ) {
+            components.add( new ArrayDeque<Pending<V>>() );
+        }
+    }
+
+    /**
+     * Add the next pending version of a component.
+     *
+     * @param component the index of the component
+     * @param version the version
+     * @param time the time of the version
+     */
+    public void add( int component, V version, long time ) {
+        components.get( component ).addLast( new Pending<>( version, time ) );
+    }
+
+    /**
+     * @param limit the maximum number of steps
+     * @param strategy the strategy choosing the component to advance at every step
+     * @param history the recent rotations, updated with the steps
+     * @return the steps, in the order of the rotation
+     */
+    public List<Step<V>> merge( int limit, RotationStrategy strategy, RotationStrategy.History history ) {
+        List<Step<V>> steps = new ArrayList<>();
+        while( steps.size() < limit ) {
+            List<RotationStrategy.Candidate> candidates = new ArrayList<>();
+            for( int i = 0; i < components.size(); ++i ) {
+                Pending<V> head = components.get( i ).peekFirst();
+                if( head != null ) {
+                    candidates.add( new RotationStrategy.Candidate( i, head.time, components.get( i ).size() ) );
+                }
+            }
+
+            if( candidates.isEmpty() ) {
+                break;
+            }
+            int chosen = strategy.choose( candidates, history ).getComponent();
+            steps.add( new Step<>( chosen, components.get( chosen ).removeFirst().version ) );
+            history.advanced( chosen );
+        }
+        return steps;
+    }
+}
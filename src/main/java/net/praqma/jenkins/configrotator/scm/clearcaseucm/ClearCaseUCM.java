@@ -4,9 +4,13 @@ import hudson.AbortException;
 import hudson.Extension;
 import hudson.FilePath;
 import hudson.Launcher;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
 import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
 import hudson.model.BuildListener;
+import hudson.model.Items;
+import hudson.model.Run;
 import hudson.model.TaskListener;
 import java.io.*;
 import java.util.ArrayList;
@@ -15,12 +19,12 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import net.praqma.clearcase.PVob;
 import net.praqma.clearcase.exceptions.UCMEntityNotInitializedException;
 import net.praqma.clearcase.ucm.entities.Baseline;
-import net.praqma.clearcase.ucm.entities.Component;
 import net.praqma.clearcase.ucm.entities.Project;
 import net.praqma.clearcase.ucm.view.SnapshotView;
 import net.praqma.jenkins.configrotator.*;
@@ -57,6 +61,17 @@ public class ClearCaseUCM extends AbstractConfigurationRotatorSCM implements Ser
         this.targets = targets;
     }
 
+    /**
+     * Persist only the names of the baselines of a configuration, not the entities.
+     */
+    @Initializer( before = InitMilestone.PLUGINS_STARTED )
+    public static void omitBaselineEntities() {
+        Run.XSTREAM2.omitField( ClearCaseUCMConfigurationComponent.class, "entity" );
+        Run.XSTREAM2.omitField( ClearCaseUCMConfigurationComponent.class, "rehydrated" );
+        Items.XSTREAM2.omitField( ClearCaseUCMConfigurationComponent.class, "entity" );
+        Items.XSTREAM2.omitField( ClearCaseUCMConfigurationComponent.class, "rehydrated" );
+    }
+
     public String getPvobName() {
         return pvob.toString();
     }
@@ -155,7 +170,7 @@ public class ClearCaseUCM extends AbstractConfigurationRotatorSCM implements Ser
         @Override
         public ClearCaseUCMConfiguration getNextConfiguration( ConfigurationRotatorBuildAction action ) throws ConfigurationRotatorException {
             ClearCaseUCMConfiguration oldconfiguration = action.getConfiguration();
-            return (ClearCaseUCMConfiguration) nextConfiguration( listener, oldconfiguration, workspace );
+            return (ClearCaseUCMConfiguration) takeConfiguration( build.getProject(), listener, oldconfiguration, workspace );
         }
 
         @Override
@@ -199,7 +214,7 @@ public class ClearCaseUCM extends AbstractConfigurationRotatorSCM implements Ser
                 throw new AbortException(String.format("Reconfigure failed.%n%s", ConfigurationRotator.LOGGERNAME + "Unable to parse configuration: " + e.getMessage() ));
             }
         }
-        projectConfiguration = inputconfiguration;
+        setConfiguration( inputconfiguration );
     }
 
     @Override
@@ -209,8 +224,8 @@ public class ClearCaseUCM extends AbstractConfigurationRotatorSCM implements Ser
         if( cfg instanceof ClearCaseUCMConfiguration ) {
             ClearCaseUCMConfiguration config = (ClearCaseUCMConfiguration) cfg;
             for( ClearCaseUCMConfigurationComponent c : config.getList() ) {
-                out.println( " * " + c.getBaseline().getComponent() + ", " + c.getBaseline().getStream() + ", " + c.getBaseline().getNormalizedName() );
-                LOGGER.fine( " * " + c.getBaseline().getComponent() + ", " + c.getBaseline().getStream() + ", " + c.getBaseline().getNormalizedName() );
+                out.println( " * " + c.getComponentFullyQualifiedName() + ", " + c.getStreamFullyQualifiedName() + ", " + c.getBaselineName() );
+                LOGGER.fine( " * " + c.getComponentFullyQualifiedName() + ", " + c.getStreamFullyQualifiedName() + ", " + c.getBaselineName() );
             }
             out.println( "" );
             LOGGER.fine( "" );
@@ -220,7 +235,7 @@ public class ClearCaseUCM extends AbstractConfigurationRotatorSCM implements Ser
     public static void simpleCheckOfConfiguration( AbstractConfiguration cfg ) throws ConfigurationRotatorException {
         if( cfg instanceof ClearCaseUCMConfiguration ) {
             ClearCaseUCMConfiguration config = (ClearCaseUCMConfiguration) cfg;
-            Set<Component> ccucmcfgset = new HashSet<Component>();
+            Set<String> ccucmcfgset = new HashSet<String>();
 
             // loops iterates over clear case component which must have unique
             // hash representation
@@ -231,12 +246,12 @@ public class ClearCaseUCM extends AbstractConfigurationRotatorSCM implements Ser
                 // check 1) is a component more than once in the configuration?
                 // as baselines are part of component, this also ensure no two baseline
                 // for the same component are used.
-                Component currentClearCaseComponent = c.getBaseline().getComponent();
+                String currentClearCaseComponent = c.getComponentFullyQualifiedName();
                 if( !ccucmcfgset.contains( currentClearCaseComponent ) ) {
                     ccucmcfgset.add( currentClearCaseComponent );
                 } else {
                     String errorMessage = ConfigurationRotator.LOGGERNAME + "Simple check of configuration failed because component used more than once in configuration. Component is: \n";
-                    errorMessage += " * " + c.getBaseline().getComponent() + ", " + c.getBaseline().getStream() + ", " + c.getBaseline().getNormalizedName();
+                    errorMessage += " * " + c.getComponentFullyQualifiedName() + ", " + c.getStreamFullyQualifiedName() + ", " + c.getBaselineName();
                     throw new ConfigurationRotatorException( errorMessage );
                 }
             }
@@ -247,6 +262,11 @@ public class ClearCaseUCM extends AbstractConfigurationRotatorSCM implements Ser
 
     @Override
     public AbstractConfiguration nextConfiguration( TaskListener listener, AbstractConfiguration configuration, FilePath workspace ) throws ConfigurationRotatorException {
+        return nextConfiguration( listener, configuration, workspace, new RotationStrategy.History( configuration.getList().size() ) );
+    }
+
+    @Override
+    public AbstractConfiguration nextConfiguration( TaskListener listener, AbstractConfiguration configuration, FilePath workspace, RotationStrategy.History history ) throws ConfigurationRotatorException {
 
         Baseline oldest = null, current;
         ClearCaseUCMConfigurationComponent chosen = null;
@@ -264,32 +284,64 @@ public class ClearCaseUCM extends AbstractConfigurationRotatorSCM implements Ser
         List<Baseline> changes = new ArrayList<>();
 
         if(nconfig != null) {
-            for( ClearCaseUCMConfigurationComponent config : nconfig.getList() ) {
+            /* Query the next baseline of all the components not fixed concurrently, each query is a cleartool call */
+            final FilePath ws = workspace;
+            final boolean useNewest = isUseNewest();
+            List<ClearCaseUCMConfigurationComponent> candidates = new ArrayList<>();
+            List<Integer> indexes = new ArrayList<>();
+            List<Callable<Baseline>> tasks = new ArrayList<>();
+            for( int i = 0; i < nconfig.getList().size(); ++i ) {
+                final ClearCaseUCMConfigurationComponent config = nconfig.getList().get( i );
                 /* This configuration is not fixed */
                 if( !config.isFixed() ) {
-                    try {
-                        Baseline previous = config.getBaseline();
-                        current = workspace.act( new NextBaseline(
-                                config.getBaseline().getStream(),
-                                config.getBaseline().getComponent(),
-                                config.getPlevel(), config.getBaseline(), isUseNewest() ) );
-
-                        if(isUseNewest()) {
-                            config.setChangedLast(true);
-                            config.setBaseline(current);
-                            changes.add(current);
-                            listener.getLogger().printf("%sBaseline switched from %s to %s%n", ConfigurationRotator.LOGGERNAME, previous, current);
-                        } else {
-                            if(oldest == null || current.getDate().before(oldest.getDate())) {
-                                oldest = current;
-                                chosen = config;
-                                config.setChangedLast(false);
-                            }
+                    candidates.add( config );
+                    indexes.add( i );
+                    tasks.add( new Callable<Baseline>() {
+                        @Override
+                        public Baseline call() throws Exception {
+                            Baseline offset = config.loadBaseline( ws );
+                            return ws.act( new NextBaseline( offset.getStream(), offset.getComponent(), config.getPlevel(), offset, useNewest ) );
                         }
-                    } catch( Exception e ) {
-                        /* No baselines found .get(0) above throws exception if no new baselines*/
-                        LOGGER.log(Level.FINE, ConfigurationRotator.LOGGERNAME + "No baselines found. Exception message follows", e );
-                    }
+                    } );
+                }
+            }
+
+            List<ParallelResolver.Outcome<Baseline>> outcomes;
+            try {
+                outcomes = ParallelResolver.resolve( tasks, getResolveThreads() );
+            } catch( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                throw new ConfigurationRotatorException( "Interrupted while resolving next baselines", e );
+            }
+
+            /* Let the strategy choose among the next baselines, in component order */
+            Timeline<Baseline> timeline = new Timeline<>( nconfig.getList().size() );
+            for( int i = 0; i < candidates.size(); ++i ) {
+                ClearCaseUCMConfigurationComponent config = candidates.get( i );
+                ParallelResolver.Outcome<Baseline> outcome = outcomes.get( i );
+                current = outcome.getValue();
+                if( outcome.isFailed() || current == null ) {
+                    /* No baselines found .get(0) in NextBaseline throws exception if no new baselines*/
+                    LOGGER.log(Level.FINE, ConfigurationRotator.LOGGERNAME + "No baselines found. Exception message follows", outcome.getFailure() );
+                    continue;
+                }
+
+                Baseline previous = config.getBaseline();
+                if(useNewest) {
+                    config.setChangedLast(true);
+                    config.setBaseline(current);
+                    changes.add(current);
+                    listener.getLogger().printf("%sBaseline switched from %s to %s%n", ConfigurationRotator.LOGGERNAME, previous, current);
+                } else {
+                    timeline.add( indexes.get( i ), current, current.getDate().getTime() );
+                    config.setChangedLast(false);
+                }
+            }
+
+            if( !useNewest ) {
+                for( Timeline.Step<Baseline> step : timeline.merge( 1, getStrategy(), history ) ) {
+                    oldest = step.getVersion();
+                    chosen = nconfig.getList().get( step.getComponent() );
                 }
             }
         }
@@ -310,6 +362,72 @@ public class ClearCaseUCM extends AbstractConfigurationRotatorSCM implements Ser
         }
     }
 
+    /**
+     * Lists the pending baselines of the components not fixed concurrently and merges them with the strategy.
+     */
+    @Override
+    public List<AbstractConfiguration> upcomingConfigurations( TaskListener listener, AbstractConfiguration configuration, FilePath workspace, final int limit, RotationStrategy.History history ) throws ConfigurationRotatorException {
+        ClearCaseUCMConfiguration current = (ClearCaseUCMConfiguration) configuration;
+        final FilePath ws = workspace;
+        List<Integer> indexes = new ArrayList<>();
+        List<Callable<List<Baseline>>> tasks = new ArrayList<>();
+        for( int i = 0; i < current.getList().size(); ++i ) {
+            final ClearCaseUCMConfigurationComponent config = current.getList().get( i );
+            if( !config.isFixed() ) {
+                indexes.add( i );
+                tasks.add( new Callable<List<Baseline>>() {
+                    @Override
+                    public List<Baseline> call() throws Exception {
+                        Baseline offset = config.loadBaseline( ws );
+                        return ws.act( new PendingBaselines( offset.getStream(), offset.getComponent(), config.getPlevel(), offset, limit ) );
+                    }
+                } );
+            }
+        }
+
+        List<ParallelResolver.Outcome<List<Baseline>>> outcomes;
+        try {
+            outcomes = ParallelResolver.resolve( tasks, getResolveThreads() );
+        } catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new ConfigurationRotatorException( "Interrupted while listing pending baselines", e );
+        }
+
+        Timeline<Baseline> timeline = new Timeline<>( current.getList().size() );
+        for( int i = 0; i < outcomes.size(); ++i ) {
+            ParallelResolver.Outcome<List<Baseline>> outcome = outcomes.get( i );
+            if( outcome.isFailed() || outcome.getValue() == null ) {
+                LOGGER.log( Level.FINE, ConfigurationRotator.LOGGERNAME + "No baselines found", outcome.getFailure() );
+                continue;
+            }
+            for( Baseline b : outcome.getValue() ) {
+                timeline.add( indexes.get( i ), b, b.getDate().getTime() );
+            }
+        }
+
+        List<AbstractConfiguration> upcoming = new ArrayList<>();
+        ClearCaseUCMConfiguration previous = current;
+        for( Timeline.Step<Baseline> step : timeline.merge( limit, getStrategy(), history ) ) {
+            ClearCaseUCMConfiguration next;
+            try {
+                next = previous.clone();
+            } catch( CloneNotSupportedException ex ) {
+                throw new ConfigurationRotatorException( String.format( "Unable to clone configuration %s", previous ) );
+            }
+            for( ClearCaseUCMConfigurationComponent c : next.getList() ) {
+                c.setChangedLast( false );
+            }
+            ClearCaseUCMConfigurationComponent chosen = next.getList().get( step.getComponent() );
+            chosen.setBaseline( step.getVersion() );
+            chosen.setChangedLast( true );
+            upcoming.add( next );
+            previous = next;
+        }
+
+        listener.getLogger().println( ConfigurationRotator.LOGGERNAME + upcoming.size() + " upcoming configurations" );
+        return upcoming;
+    }
+
     public SnapshotView createView( TaskListener listener, AbstractBuild<?, ?> build, ClearCaseUCMConfiguration configuration, FilePath workspace, PVob pvob ) throws IOException, InterruptedException {
         LOGGER.fine( "Getting project" );
         Project project = workspace.act( new DetermineProject( Arrays.asList( new String[]{ "jenkins", "Jenkins", "hudson", "Hudson" } ), pvob ) );
@@ -319,7 +437,7 @@ public class ClearCaseUCM extends AbstractConfigurationRotatorSCM implements Ser
         LOGGER.fine( "Selected baselines:" );
         for( ClearCaseUCMConfigurationComponent config : configuration.getList() ) {
             LOGGER.fine( String.format( "Component: %s", config ) );
-            selectedBaselines.add( config.getBaseline() );
+            selectedBaselines.add( config.loadBaseline( workspace ) );
         }
 
         /* Create a config rotator project name. Later machine name is appended in the resulting viewtag*/
@@ -340,8 +458,8 @@ public class ClearCaseUCM extends AbstractConfigurationRotatorSCM implements Ser
      */
     @Override
     public final List<ClearCaseUCMTarget> getTargets() {
-        if( projectConfiguration != null ) {
-            return getConfigurationAsTargets( (ClearCaseUCMConfiguration) projectConfiguration );
+        if( getConfiguration() != null ) {
+            return getConfigurationAsTargets( (ClearCaseUCMConfiguration) getConfiguration() );
         } else {
             return targets;
         }
@@ -352,7 +470,7 @@ public class ClearCaseUCM extends AbstractConfigurationRotatorSCM implements Ser
         if( config.getList() != null && config.getList().size() > 0 ) {
             for( ClearCaseUCMConfigurationComponent c : config.getList() ) {
                 if( c != null ) {
-                    list.add( new ClearCaseUCMTarget( c.getBaseline().getNormalizedName(), c.getPlevel(), c.isFixed() ) );
+                    list.add( new ClearCaseUCMTarget( c.getBaselineName(), c.getPlevel(), c.isFixed() ) );
                 } else {
                     /* A null!? The list is corrupted, return targets */
                     return targets;
@@ -372,12 +490,29 @@ public class ClearCaseUCM extends AbstractConfigurationRotatorSCM implements Ser
             throw new AbortException( ConfigurationRotator.LOGGERNAME + "Not a valid configuration" );
         } else {
             LOGGER.fine(String.format("Configuration set to: %s", c));
-            this.projectConfiguration = c;
-            project.save();
+            setConfiguration( c );
             return c;
         }
     }
 
+    /**
+     * The identity of a ClearCase UCM component is its baseline, the component, stream, promotion level and fixed flag
+     * are those of the current configuration. The baselines are not loaded.
+     */
+    @Override
+    public AbstractConfiguration recreateConfiguration( List<String> identities ) {
+        ClearCaseUCMConfiguration current = (ClearCaseUCMConfiguration) getConfiguration();
+        if( current == null || current.getList().size() != identities.size() ) {
+            return null;
+        }
+
+        List<ClearCaseUCMConfigurationComponent> components = new ArrayList<>();
+        for( int i = 0; i < identities.size(); ++i ) {
+            components.add( current.getList().get( i ).withBaseline( identities.get( i ) ) );
+        }
+        return new ClearCaseUCMConfiguration( components );
+    }
+
     @Override
     public ChangeLogWriter getChangeLogWriter( File changeLogFile, BuildListener listener, AbstractBuild<?, ?> build ) {
         return new UCMChangeLogWriter( changeLogFile, listener, build );
@@ -47,7 +47,7 @@ public class ClearCaseUCMConfiguration extends AbstractConfiguration<ClearCaseUC
     public List<ClearCaseUCMTarget> targetify() {
         List<ClearCaseUCMTarget> targets = new ArrayList<>();
         for(ClearCaseUCMConfigurationComponent c :  this.getList()) {
-            targets.add(new ClearCaseUCMTarget( c.getBaseline().getNormalizedName(), c.getPlevel(), c.isFixed() ));
+            targets.add(new ClearCaseUCMTarget( c.getBaselineName(), c.getPlevel(), c.isFixed() ));
         }
         return targets;
     }
@@ -161,8 +161,8 @@ public class ClearCaseUCMConfiguration extends AbstractConfiguration<ClearCaseUC
         } else {
             List<String> stringChanges = new ArrayList<String>();
             for(Integer i : changedIndexes) {
-                String currentBaseline = ((ClearCaseUCMConfigurationComponent)changedComponents.get(i)).getBaseline().getNormalizedName();
-                String previousBaseline = ((ClearCaseUCMConfigurationComponent)previousComponents.get(i)).getBaseline().getNormalizedName();
+                String currentBaseline = ((ClearCaseUCMConfigurationComponent)changedComponents.get(i)).getBaselineName();
+                String previousBaseline = ((ClearCaseUCMConfigurationComponent)previousComponents.get(i)).getBaselineName();
                 stringChanges.add(String.format("Baseline changed from %s to %s", previousBaseline, currentBaseline));
             }
             return StringUtils.join(stringChanges, "<br/>");
@@ -170,11 +170,9 @@ public class ClearCaseUCMConfiguration extends AbstractConfiguration<ClearCaseUC
     }
 
     public static String itemizeForHtml(ConfigurationRotatorBuildAction action ) {
-        ConfigurationRotator rotator = (ConfigurationRotator)action.getBuild().getProject().getScm();
-
         //Arg1 previous configuration:
         List<? extends AbstractConfigurationComponent> listArg1 = new ArrayList<AbstractConfigurationComponent>();
-        ConfigurationRotatorBuildAction crba = rotator.getAcrs().getPreviousResult(action.getBuild(), null);
+        ConfigurationRotatorBuildAction crba = action.getPreviousResult();
         if(crba!=null) {
             listArg1 = crba.getConfiguration().getList();
         }
@@ -197,12 +195,15 @@ public class ClearCaseUCMConfiguration extends AbstractConfiguration<ClearCaseUC
         return description;
     }
 
+    /**
+     * The activities between two baselines. Runs where ClearCase is, and loads the baselines if they were rehydrated.
+     */
     @Override
     public List<ConfigRotatorChangeLogEntry> difference( ClearCaseUCMConfigurationComponent component, ClearCaseUCMConfigurationComponent other ) throws ConfigurationRotatorException {
         List<ConfigRotatorChangeLogEntry> entries = new LinkedList<ConfigRotatorChangeLogEntry>();
 
         try {
-            List<Activity> activities = Version.getBaselineDiff( component.getBaseline(), ( other != null ? other.getBaseline() : null ), false, new File( getView().getPath() ) );
+            List<Activity> activities = Version.getBaselineDiff( component.loadBaseline(), ( other != null ? other.loadBaseline() : null ), false, new File( getView().getPath() ) );
             for( Activity a : activities ) {
                 ConfigRotatorChangeLogEntry entry = new ConfigRotatorChangeLogEntry( a.getHeadline(), a.getUser(), new ArrayList<ConfigRotatorVersion>() );
                 for( Version v : a.changeset.versions ) {
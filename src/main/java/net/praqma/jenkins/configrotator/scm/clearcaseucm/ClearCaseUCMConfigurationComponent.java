@@ -1,43 +1,194 @@
 package net.praqma.jenkins.configrotator.scm.clearcaseucm;
 
+import hudson.FilePath;
+import java.io.IOException;
 import net.praqma.clearcase.exceptions.ClearCaseException;
 import net.praqma.clearcase.ucm.entities.Baseline;
 import net.praqma.clearcase.ucm.entities.Project;
 import net.praqma.clearcase.ucm.entities.Project.PromotionLevel;
 import net.praqma.jenkins.configrotator.*;
 
+/**
+ * A ClearCase UCM component of a configuration.
+ * <p>
+ * Only the names of the baseline, its component and its stream are persisted, the baseline entity is omitted from
+ * the XML, see {@link ClearCaseUCM#omitBaselineEntities()}. A configuration read from disk rehydrates the baseline from
+ * its name when it is needed, and loads it when it is used. Configurations persisted with the full baseline are
+ * migrated when they are read, and their builds are saved again when they are loaded, see
+ * {@link ConfigurationRotatorBuildAction#onLoad(hudson.model.Run)}.
+ * </p>
+ */
 public class ClearCaseUCMConfigurationComponent extends AbstractConfigurationComponent implements Cloneable {
 
-    private Baseline baseline;
+    private static final long serialVersionUID = 1L;
+
+    private String baselineName;
+    private String componentName;
+    private String streamName;
     private PromotionLevel plevel;
 
+    /**
+     * The baseline, as persisted before only the names were
+     */
+    @Deprecated
+    private Baseline baseline;
+
+    /**
+     * The baseline entity and whether it is rehydrated and not loaded yet, sent to slaves but not persisted
+     */
+    private Baseline entity;
+    private boolean rehydrated;
+
+    /**
+     * Read with the full baseline, see {@link #isMigrated()}
+     */
+    private transient boolean migrated;
+
     public ClearCaseUCMConfigurationComponent( Baseline baseline, PromotionLevel plevel, boolean fixed ) {
         super( fixed );
-        this.baseline = baseline;
+        setBaseline( baseline );
         this.plevel = plevel;
     }
 
     public ClearCaseUCMConfigurationComponent( String baseline, String plevel, boolean fixed ) throws ClearCaseException {
         super( fixed );
-        this.baseline = Baseline.get( baseline ).load();
+        setBaseline( Baseline.get( baseline ).load() );
         this.plevel = Project.PromotionLevel.valueOf( plevel );
     }
 
+    /**
+     * Migrate a component persisted with the full baseline.
+     */
+    protected Object readResolve() {
+        if( baseline != null ) {
+            setBaseline( baseline );
+            baseline = null;
+            migrated = true;
+        }
+        return this;
+    }
+
+    @Override
+    public boolean isMigrated() {
+        return migrated;
+    }
+
     @Override
     public ClearCaseUCMConfigurationComponent clone() throws CloneNotSupportedException {
         ClearCaseUCMConfigurationComponent cc = (ClearCaseUCMConfigurationComponent)super.clone();
-        cc.baseline = this.baseline;
+        cc.baselineName = this.baselineName;
+        cc.componentName = this.componentName;
+        cc.streamName = this.streamName;
+        cc.entity = this.entity;
+        cc.rehydrated = this.rehydrated;
         cc.plevel = this.plevel;
         cc.fixed = this.fixed;
         return cc;
     }
 
-    public void setBaseline( Baseline baseline ) {
-        this.baseline = baseline;
+    /**
+     * @param baselineName the fully qualified name of another baseline of the component
+     * @return a copy of this component with the other baseline, rehydrated from its name when it is needed
+     */
+    synchronized ClearCaseUCMConfigurationComponent withBaseline( String baselineName ) {
+        try {
+            ClearCaseUCMConfigurationComponent cc = clone();
+            cc.baselineName = baselineName;
+            cc.entity = null;
+            cc.rehydrated = false;
+            cc.changedLast = false;
+            return cc;
+        } catch( CloneNotSupportedException e ) {
+            throw new IllegalStateException( e );
+        }
+    }
+
+    public final synchronized void setBaseline( Baseline baseline ) {
+        this.entity = baseline;
+        this.rehydrated = false;
+        this.baselineName = baseline.getFullyQualifiedName();
+        this.componentName = baseline.getComponent().getFullyQualifiedName();
+        this.streamName = baseline.getStream().getFullyQualifiedName();
     }
 
-    public Baseline getBaseline() {
-        return baseline;
+    /**
+     * @return the baseline. If it was read from disk, it is rehydrated from its name and not loaded yet
+     */
+    public synchronized Baseline getBaseline() {
+        if( entity == null ) {
+            try {
+                entity = Baseline.get( baselineName );
+                rehydrated = true;
+            } catch( ClearCaseException e ) {
+                throw new IllegalStateException( "Unable to rehydrate " + baselineName, e );
+            }
+        }
+        return entity;
+    }
+
+    /**
+     * Load the baseline, if it was rehydrated, and remember it.
+     *
+     * @param workspace the workspace to load it in
+     * @return the loaded baseline
+     * @throws IOException if the baseline could not be loaded
+     * @throws InterruptedException if interrupted
+     */
+    public synchronized Baseline loadBaseline( FilePath workspace ) throws IOException, InterruptedException {
+        Baseline b = getBaseline();
+        if( rehydrated ) {
+            entity = (Baseline) RemoteUtil.loadEntity( workspace, b, true );
+            rehydrated = false;
+        }
+        return entity;
+    }
+
+    /**
+     * Load the baseline on this node, if it was rehydrated, for code running where ClearCase is.
+     *
+     * @return the loaded baseline
+     * @throws ClearCaseException if the baseline could not be loaded
+     */
+    synchronized Baseline loadBaseline() throws ClearCaseException {
+        Baseline b = getBaseline();
+        if( rehydrated ) {
+            entity = b.load();
+            rehydrated = false;
+        }
+        return entity;
+    }
+
+    public String getBaselineFullyQualifiedName() {
+        return baselineName;
+    }
+
+    public String getComponentFullyQualifiedName() {
+        return componentName;
+    }
+
+    public String getStreamFullyQualifiedName() {
+        return streamName;
+    }
+
+    public String getBaselineName() {
+        return normalize( baselineName );
+    }
+
+    public String getStreamName() {
+        return normalize( streamName );
+    }
+
+    /**
+     * @return the normalized name of an entity, its fully qualified name without the type
+     */
+    static String normalize( String fullyQualifiedName ) {
+        int i = fullyQualifiedName.indexOf( ':' );
+        return i < 0 ? fullyQualifiedName : fullyQualifiedName.substring( i + 1 );
+    }
+
+    @Override
+    public String getIdentity() {
+        return baselineName;
     }
 
     public PromotionLevel getPlevel() {
@@ -46,19 +197,19 @@ public class ClearCaseUCMConfigurationComponent extends AbstractConfigurationCom
 
     @Override
     public String toString() {
-        return baseline.getNormalizedName() + "@" + plevel + "(" + fixed + "/" + changedLast + ")";
+        return getBaselineName() + "@" + plevel + "(" + fixed + "/" + changedLast + ")";
     }
 
     @Override
     public String prettyPrint() {
-        return baseline.getNormalizedName() + "@" + plevel;
+        return getBaselineName() + "@" + plevel;
     }
 
     @Override
     public int hashCode() {
         final int prime = 31;
         int result = 1;
-        int bHash = baseline == null ? 0 : baseline.hashCode();
+        int bHash = baselineName == null ? 0 : baselineName.hashCode();
         int pHash = plevel == null ? 0 : plevel.hashCode();
         result = prime * result + bHash;
         result = prime * result + pHash;
@@ -76,7 +227,7 @@ public class ClearCaseUCMConfigurationComponent extends AbstractConfigurationCom
         if( other instanceof ClearCaseUCMConfigurationComponent ) {
             ClearCaseUCMConfigurationComponent o = (ClearCaseUCMConfigurationComponent) other;
 
-            return ( o.baseline.equals( baseline ) && ( o.plevel.equals( plevel ) ) && ( o.isFixed() == fixed ) );
+            return ( o.baselineName.equals( baselineName ) && ( o.plevel.equals( plevel ) ) && ( o.isFixed() == fixed ) );
         } else {
             return false;
         }
@@ -84,17 +235,17 @@ public class ClearCaseUCMConfigurationComponent extends AbstractConfigurationCom
 
     @Override
     public String getComponentName() {
-        return baseline.getComponent().getNormalizedName();
+        return normalize( componentName );
     }
 
     @Override
     public String getFeedName() {
-        return baseline.getComponent().getNormalizedName();
+        return normalize( componentName );
     }
 
     @Override
     public String getFeedId() {
-        return baseline.getComponent().getNormalizedName();
+        return normalize( componentName );
     }
 
     /**
@@ -105,12 +256,12 @@ public class ClearCaseUCMConfigurationComponent extends AbstractConfigurationCom
     public String toHtml() {
         StringBuilder builder = new StringBuilder();
         builder.append( "<tr>" );
-        builder.append( "<td style=\"padding:5px 10px;\">" ).append( baseline.getComponent().getNormalizedName() ).append( "</td>" );
-        builder.append( "<td style=\"padding:5px 10px;\">" ).append( baseline.getStream().getNormalizedName() ).append( "</td>" );
+        builder.append( "<td style=\"padding:5px 10px;\">" ).append( getComponentName() ).append( "</td>" );
+        builder.append( "<td style=\"padding:5px 10px;\">" ).append( getStreamName() ).append( "</td>" );
         if( isChangedLast() ) {
-            builder.append( "<td style=\"font-weight:bold;color:#FF6633;padding:5px 10px;\">" ).append( baseline.getNormalizedName() ).append( "</td>" );
+            builder.append( "<td style=\"font-weight:bold;color:#FF6633;padding:5px 10px;\">" ).append( getBaselineName() ).append( "</td>" );
         } else {
-            builder.append( "<td style=\"padding:5px 10px;\">" ).append( baseline.getNormalizedName() ).append( "</td>" );
+            builder.append( "<td style=\"padding:5px 10px;\">" ).append( getBaselineName() ).append( "</td>" );
         }
         builder.append( "<td style=\"padding:5px 10px;\">" ).append( plevel.toString() ).append( "</td>" );
         builder.append( "<td style=\"padding:5px 10px;\">" ).append( fixed ).append( "</td>" ).append( "</tr>" );
@@ -0,0 +1,66 @@
+package net.praqma.jenkins.configrotator.scm.clearcaseucm;
+
+import hudson.FilePath;
+import hudson.remoting.VirtualChannel;
+import net.praqma.clearcase.ucm.entities.Baseline;
+import net.praqma.clearcase.ucm.entities.Component;
+import net.praqma.clearcase.ucm.entities.Project;
+import net.praqma.clearcase.ucm.entities.Stream;
+import net.praqma.clearcase.ucm.utils.BaselineList;
+import net.praqma.clearcase.ucm.utils.filters.AfterBaseline;
+import net.praqma.clearcase.ucm.utils.filters.NoDeliver;
+import net.praqma.clearcase.ucm.utils.filters.NoLabels;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.jenkinsci.remoting.RoleChecker;
+
+/**
+ * Lists the baselines following a baseline, oldest first, with the same filters as {@link NextBaseline}.
+ */
+public class PendingBaselines implements FilePath.FileCallable<List<Baseline>> {
+
+    private Stream stream;
+    private Component component;
+    private Project.PromotionLevel level;
+    private Baseline offset;
+    private int limit;
+
+    public PendingBaselines( Stream stream, Component component, Project.PromotionLevel level, Baseline offset, int limit ) {
+        this.stream = stream;
+        this.component = component;
+        this.level = level;
+        this.offset = offset;
+        this.limit = limit;
+    }
+
+    @Override
+    public List<Baseline> invoke( File f, VirtualChannel channel ) throws IOException, InterruptedException {
+
+        BaselineList list = new BaselineList( stream, component, level ).
+            addFilter( new AfterBaseline( offset ) ).
+            addFilter( new NoDeliver() ).
+            addFilter( new NoLabels() ).
+            setSorting( new BaselineList.AscendingDateSort() ).
+            setLimit( limit );
+
+        try {
+            list.apply();
+        } catch( Exception e ) {
+            throw new IOException( e );
+        }
+
+        List<Baseline> baselines = new ArrayList<>();
+        for( int i = 0; i < list.size(); ++i ) {
+            baselines.add( list.get( i ) );
+        }
+        return baselines;
+    }
+
+    @Override
+    public void checkRoles(RoleChecker rc) throws SecurityException {
+        //NO-OP
+    }
+}
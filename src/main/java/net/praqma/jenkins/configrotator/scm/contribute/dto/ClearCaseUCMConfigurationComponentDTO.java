@@ -34,10 +34,10 @@ public class ClearCaseUCMConfigurationComponentDTO implements Serializable {
     
     public static ClearCaseUCMConfigurationComponentDTO fromComponent(ClearCaseUCMConfigurationComponent comp) {
         ClearCaseUCMConfigurationComponentDTO dto =  new ClearCaseUCMConfigurationComponentDTO();
-        dto.setBaseline(comp.getBaseline().getFullyQualifiedName());
+        dto.setBaseline(comp.getBaselineFullyQualifiedName());
         dto.setPlevel(comp.getPlevel().name());
-        dto.setComponent(comp.getBaseline().getComponent().getFullyQualifiedName());
-        dto.setStream(comp.getBaseline().getStream().getFullyQualifiedName());
+        dto.setComponent(comp.getComponentFullyQualifiedName());
+        dto.setStream(comp.getStreamFullyQualifiedName());
         return dto;
     }
     
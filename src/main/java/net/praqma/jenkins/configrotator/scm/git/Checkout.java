@@ -3,18 +3,39 @@ package net.praqma.jenkins.configrotator.scm.git;
 import hudson.FilePath;
 import hudson.remoting.VirtualChannel;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.dircache.DirCacheCheckout;
+import org.eclipse.jgit.errors.CheckoutConflictException;
+import org.eclipse.jgit.lib.IndexDiff;
+import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Repository;
-import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.FileTreeIterator;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import org.jenkinsci.remoting.RoleChecker;
 
 /**
+ * Checks out a commit of a component.
+ * <p>
+ * The commit last checked out is remembered in the git directory. If the working tree is still clean at that commit,
+ * nothing is done when it is the same commit, and only the paths that differ are updated when it is not.
+ * Otherwise all paths are checked out.
+ * </p>
+ *
  * @author cwolfgang
  */
 public class Checkout implements FilePath.FileCallable<Boolean> {
 
+    private static final Logger LOGGER = Logger.getLogger( Checkout.class.getName() );
+
+    public static final String MARKER = "configrotator-checkout";
+
     private String commitId;
     private String name;
     private String branch;
@@ -30,22 +51,75 @@ public class Checkout implements FilePath.FileCallable<Boolean> {
 
         File local = new File( workspace, name );
 
-        FileRepositoryBuilder builder = new FileRepositoryBuilder();
-        Repository repo = builder.setGitDir( new File( local, ".git" ) ).readEnvironment().findGitDir().build();
+        /* JGit cannot fetch the missing blobs of a blobless clone */
+        if( CliGit.isBlobless( new File( local, ".git" ) ) ) {
+            CliGit.checkout( local, branch, commitId );
+            return true;
+        }
+
+        Repository repo = RepositoryPool.acquire( new File( local, ".git" ) );
         org.eclipse.jgit.api.Git git = new org.eclipse.jgit.api.Git( repo );
+        File marker = new File( repo.getDirectory(), MARKER );
 
         try {
-            git.checkout().setName( branch ).setAllPaths( true ).setForce( true ).setStartPoint( commitId ).call();
+            if( !incremental( repo, marker ) ) {
+                LOGGER.fine( String.format( "Checking out all paths of %s at %s", name, commitId ) );
+                git.checkout().setName( branch ).setAllPaths( true ).setForce( true ).setStartPoint( commitId ).call();
+            }
+            Files.write( marker.toPath(), commitId.getBytes( StandardCharsets.US_ASCII ) );
         } catch( GitAPIException e ) {
             throw new IOException( e );
         } finally {
-            repo.close();
             git.close();
+            RepositoryPool.release( repo );
         }
 
         return true;
     }
 
+    /**
+     * Update the working tree from the commit last checked out, if it is still clean at that commit.
+     *
+     * @return false if all paths must be checked out
+     */
+    private boolean incremental( Repository repo, File marker ) throws IOException {
+        if( !marker.exists() ) {
+            return false;
+        }
+
+        String previous = new String( Files.readAllBytes( marker.toPath() ), StandardCharsets.US_ASCII ).trim();
+        try( RevWalk w = new RevWalk( repo ) ) {
+            ObjectId oprevious = repo.resolve( previous );
+            ObjectId otarget = repo.resolve( commitId );
+            if( oprevious == null || otarget == null ) {
+                return false;
+            }
+            RevCommit from = w.parseCommit( oprevious );
+            RevCommit to = w.parseCommit( otarget );
+
+            IndexDiff diff = new IndexDiff( repo, from.getTree(), new FileTreeIterator( repo ) );
+            diff.diff();
+            if( !( diff.getAdded().isEmpty() && diff.getChanged().isEmpty() && diff.getRemoved().isEmpty()
+                    && diff.getMissing().isEmpty() && diff.getModified().isEmpty() && diff.getConflicting().isEmpty() ) ) {
+                LOGGER.fine( String.format( "The working tree of %s has changed since %s", name, previous ) );
+                return false;
+            }
+
+            if( from.equals( to ) ) {
+                LOGGER.fine( String.format( "%s is already at %s", name, commitId ) );
+                return true;
+            }
+
+            LOGGER.fine( String.format( "Updating %s from %s to %s", name, previous, commitId ) );
+            DirCacheCheckout dco = new DirCacheCheckout( repo, from.getTree(), repo.lockDirCache(), to.getTree() );
+            dco.setFailOnConflict( true );
+            return dco.checkout();
+        } catch( CheckoutConflictException e ) {
+            LOGGER.log( Level.FINE, String.format( "Unable to update %s incrementally", name ), e );
+            return false;
+        }
+    }
+
     @Override
     public void checkRoles(RoleChecker rc) throws SecurityException {
         //NO-OP
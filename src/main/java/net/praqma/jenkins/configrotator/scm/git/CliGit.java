@@ -0,0 +1,156 @@
+package net.praqma.jenkins.configrotator.scm.git;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.logging.Logger;
+
+/**
+ * Runs the command line git on the agent, for the shallow and blobless clones that JGit cannot make or maintain.
+ * <p>
+ * Shallow clones need git 2.11 and blobless clones git 2.19, and a server supporting partial clone.
+ * The executable is <code>git</code> on the path, or the system property
+ * <code>net.praqma.jenkins.configrotator.scm.git.CliGit.executable</code>.
+ * </p>
+ */
+final class CliGit {
+
+    private static final Logger LOGGER = Logger.getLogger( CliGit.class.getName() );
+
+    private static final String EXECUTABLE = System.getProperty( CliGit.class.getName() + ".executable", "git" );
+
+    /**
+     * The initial number of commits to deepen by when looking for a commit beyond the shallow boundary. Doubled on each attempt.
+     */
+    private static final int DEEPEN_STEP = 50;
+
+    private CliGit() { }
+
+    /**
+     * @param gitDir the git directory
+     * @return true if the clone has a shallow boundary
+     */
+    static boolean isShallow( File gitDir ) {
+        return new File( gitDir, "shallow" ).exists();
+    }
+
+    /**
+     * @param gitDir the git directory
+     * @return true if the clone fetches blobs lazily from a promisor remote
+     */
+    static boolean isBlobless( File gitDir ) throws IOException {
+        String config = new String( Files.readAllBytes( new File( gitDir, "config" ).toPath() ), StandardCharsets.UTF_8 );
+        return config.toLowerCase( Locale.ENGLISH ).contains( "partialclonefilter" );
+    }
+
+    /**
+     * Clone a repository with all branches.
+     *
+     * @param repository the repository URL
+     * @param branch the branch to check out
+     * @param local the work tree of the clone
+     * @param depth the number of commits to fetch per branch, or 0 for the full history
+     * @param blobless true to fetch blobs lazily
+     */
+    static void clone( String repository, String branch, File local, int depth, boolean blobless ) throws IOException, InterruptedException {
+        List<String> args = new ArrayList<>( Arrays.asList( "clone", "--no-single-branch", "--branch", branch ) );
+        if( depth > 0 ) {
+            args.add( "--depth" );
+            args.add( Integer.toString( depth ) );
+        }
+        if( blobless ) {
+            args.add( "--filter=blob:none" );
+        }
+        args.add( repository );
+        args.add( local.getAbsolutePath() );
+        run( local.getAbsoluteFile().getParentFile(), args );
+    }
+
+    /**
+     * Fetch the remote branches. A shallow clone stays shallow, only the new commits are fetched.
+     */
+    static void fetch( File local ) throws IOException, InterruptedException {
+        run( local, Arrays.asList( "fetch", "--prune", "origin" ) );
+    }
+
+    /**
+     * Pull the current branch from its upstream.
+     */
+    static void pull( File local ) throws IOException, InterruptedException {
+        run( local, Arrays.asList( "pull" ) );
+    }
+
+    /**
+     * Deepen the history of a shallow clone until it has a commit, or until the full history is fetched.
+     *
+     * @param local the work tree of the clone
+     * @param commitId the commit
+     * @return true if the commit is in the clone
+     */
+    static boolean deepenUntil( File local, String commitId ) throws IOException, InterruptedException {
+        File gitDir = new File( local, ".git" );
+        int step = DEEPEN_STEP;
+        while( !hasCommit( local, commitId ) ) {
+            if( !isShallow( gitDir ) ) {
+                return false;
+            }
+            LOGGER.fine( String.format( "Deepening %s by %d to reach %s", local, step, commitId ) );
+            run( local, Arrays.asList( "fetch", "--deepen=" + step, "origin" ) );
+            step *= 2;
+        }
+        return true;
+    }
+
+    /**
+     * Deepen the history of a shallow clone by a number of commits.
+     */
+    static void deepen( File local, int commits ) throws IOException, InterruptedException {
+        LOGGER.fine( String.format( "Deepening %s by %d", local, commits ) );
+        run( local, Arrays.asList( "fetch", "--deepen=" + commits, "origin" ) );
+    }
+
+    /**
+     * Force a checkout of a commit, on a branch reset to it. Missing blobs are fetched by git.
+     */
+    static void checkout( File local, String branch, String commitId ) throws IOException, InterruptedException {
+        run( local, Arrays.asList( "checkout", "--force", "-B", branch, commitId ) );
+    }
+
+    private static boolean hasCommit( File local, String commitId ) throws IOException, InterruptedException {
+        try {
+            run( local, Arrays.asList( "cat-file", "-e", commitId + "^{commit}" ) );
+            return true;
+        } catch( IOException e ) {
+            return false;
+        }
+    }
+
+    private static String run( File directory, List<String> args ) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>( args.size() + 1 );
+        command.add( EXECUTABLE );
+        command.addAll( args );
+        LOGGER.fine( String.format( "Running %s in %s", command, directory ) );
+
+        ProcessBuilder pb = new ProcessBuilder( command ).directory( directory ).redirectErrorStream( true );
+        pb.environment().put( "GIT_TERMINAL_PROMPT", "0" );
+        Process process = pb.start();
+        String output;
+        try( InputStream in = process.getInputStream() ) {
+            output = IOUtils.toString( in, StandardCharsets.UTF_8 );
+        }
+
+        int exit = process.waitFor();
+        if( exit != 0 ) {
+            throw new IOException( String.format( "%s failed with exit code %d: %s", command, exit, output.trim() ) );
+        }
+        return output;
+    }
+}
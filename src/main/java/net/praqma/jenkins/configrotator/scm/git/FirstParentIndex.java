@@ -0,0 +1,348 @@
+package net.praqma.jenkins.configrotator.scm.git;
+
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.model.AbstractProject;
+import hudson.model.Item;
+import hudson.model.Node;
+import hudson.model.Slave;
+import hudson.model.TopLevelItem;
+import hudson.model.listeners.ItemListener;
+import hudson.remoting.VirtualChannel;
+import jenkins.model.Jenkins;
+import jenkins.security.MasterToSlaveCallable;
+import net.praqma.jenkins.configrotator.ConfigurationRotator;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An index of the first-parent chain of a branch in a clone, from the oldest commit to the tip.
+ * With it, the commit following a given commit is a lookup instead of a walk from the tip.
+ * <p>
+ * The index is updated with the new commits only. If the new tip does not descend from the indexed tip,
+ * e.g. after a force push, the chain is cut where the histories meet, or rebuilt if they never do.
+ * The index is kept in memory and in a file in the git directory, one commit id per line, followed by
+ * <code> merge</code> for merge commits. Merge commits are skipped by {@link #next(AnyObjectId)}, as they are by the
+ * walk it replaces.
+ * </p>
+ * <p>
+ * The indexes in memory are kept per job workspace, and forgotten when the job is deleted or renamed, see
+ * {@link ItemListenerImpl}.
+ * </p>
+ */
+public class FirstParentIndex {
+
+    private static final Logger LOGGER = Logger.getLogger( FirstParentIndex.class.getName() );
+
+    public static final String FILE_NAME = "configrotator-first-parent";
+
+    private static final String MERGE = " merge";
+
+    /**
+     * The indexes by job workspace, and by file
+     */
+    private static final Map<String, Map<String, FirstParentIndex>> INDEXES = new ConcurrentHashMap<>();
+
+    private final File file;
+    private final List<ObjectId> chain = new ArrayList<>();
+    private final Map<ObjectId, Integer> positions = new HashMap<>();
+    private final Set<ObjectId> merges = new HashSet<>();
+
+    /**
+     * The length of the file as last read or written, used to notice a deleted or replaced clone
+     */
+    private long length = -1;
+
+    private FirstParentIndex( File file ) {
+        this.file = file;
+    }
+
+    /**
+     * Get the index of a repository, one per git directory and branch.
+     *
+     * @param workspace the workspace of the job the repository is in
+     * @param gitDir the git directory
+     * @param branch the branch
+     * @return the index
+     * @throws IOException if the index file could not be read
+     */
+    public static FirstParentIndex get( File workspace, File gitDir, String branch ) throws IOException {
+        Map<String, FirstParentIndex> indexes = INDEXES.get( workspace.getAbsolutePath() );
+        if( indexes == null ) {
+            indexes = new ConcurrentHashMap<>();
+            Map<String, FirstParentIndex> existing = INDEXES.putIfAbsent( workspace.getAbsolutePath(), indexes );
+            if( existing != null ) {
+                indexes = existing;
+            }
+        }
+
+        File file = new File( gitDir, FILE_NAME + "-" + branch.replaceAll( "[^a-zA-Z0-9._-]", "_" ) );
+        FirstParentIndex index = indexes.get( file.getAbsolutePath() );
+        if( index == null ) {
+            index = new FirstParentIndex( file );
+            FirstParentIndex existing = indexes.putIfAbsent( file.getAbsolutePath(), index );
+            if( existing != null ) {
+                index = existing;
+            }
+        }
+        index.load();
+        return index;
+    }
+
+    /**
+     * Forget the indexes of a job workspace, and of the workspaces side by side with it, <code>workspace@2</code> etc.
+     * Indexes of workspaces that no longer exist are forgotten too.
+     *
+     * @param workspace the workspace
+     * @return the number of workspaces forgotten
+     */
+    public static int forget( String workspace ) {
+        int forgotten = 0;
+        for( Iterator<String> it = INDEXES.keySet().iterator(); it.hasNext(); ) {
+            String key = it.next();
+            if( key.equals( workspace ) || key.startsWith( workspace + "@" ) || !new File( key ).exists() ) {
+                it.remove();
+                forgotten++;
+            }
+        }
+        return forgotten;
+    }
+
+    private synchronized void load() throws IOException {
+        long current = file.exists() ? file.length() : -1;
+        if( current == length ) {
+            return;
+        }
+
+        clear();
+        if( current > 0 ) {
+            try( BufferedReader reader = new BufferedReader( new InputStreamReader( new FileInputStream( file ), StandardCharsets.US_ASCII ) ) ) {
+                String line;
+                while( ( line = reader.readLine() ) != null ) {
+                    boolean merge = line.endsWith( MERGE );
+                    String id = merge ? line.substring( 0, line.length() - MERGE.length() ) : line;
+                    if( ObjectId.isId( id ) ) {
+                        add( ObjectId.fromString( id ), merge );
+                    }
+                }
+            }
+            LOGGER.fine( String.format( "Loaded %d commits from %s", chain.size(), file ) );
+        }
+        length = current;
+    }
+
+    private void clear() {
+        chain.clear();
+        positions.clear();
+        merges.clear();
+    }
+
+    private void add( ObjectId id, boolean merge ) {
+        positions.put( id, chain.size() );
+        chain.add( id );
+        if( merge ) {
+            merges.add( id );
+        }
+    }
+
+    /**
+     * @return the indexed tip, or null if the index is empty
+     */
+    public synchronized ObjectId getTip() {
+        return chain.isEmpty() ? null : chain.get( chain.size() - 1 );
+    }
+
+    public synchronized boolean contains( AnyObjectId id ) {
+        return positions.containsKey( id.copy() );
+    }
+
+    /**
+     * @param id a commit in the index
+     * @return the commit following the given commit on the first-parent chain, merge commits skipped, or null if
+     * there is none or the commit is not indexed
+     */
+    public synchronized ObjectId next( AnyObjectId id ) {
+        Integer position = positions.get( id.copy() );
+        if( position == null ) {
+            return null;
+        }
+        for( int i = position + 1; i < chain.size(); i++ ) {
+            if( !merges.contains( chain.get( i ) ) ) {
+                return chain.get( i );
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Bring the index up to date with a new tip, walking only the commits that are not indexed yet.
+     *
+     * @param repo the repository
+     * @param tip the new tip
+     * @throws IOException if the commits could not be read or the index could not be written
+     */
+    public synchronized void update( Repository repo, AnyObjectId tip ) throws IOException {
+        if( tip.equals( getTip() ) ) {
+            return;
+        }
+
+        /* Walk the first parents back from the new tip until we meet the indexed history */
+        List<ObjectId> segment = new ArrayList<>();
+        Set<ObjectId> merged = new HashSet<>();
+        Integer meet = null;
+        try( RevWalk w = new RevWalk( repo ) ) {
+            RevCommit c = w.parseCommit( tip );
+            while( c != null ) {
+                meet = positions.get( c.copy() );
+                if( meet != null ) {
+                    break;
+                }
+                segment.add( c.copy() );
+                if( c.getParentCount() > 1 ) {
+                    merged.add( c.copy() );
+                }
+                c = c.getParentCount() > 0 ? w.parseCommit( c.getParent( 0 ) ) : null;
+            }
+        }
+        Collections.reverse( segment );
+
+        if( meet != null && meet == chain.size() - 1 ) {
+            /* Fast forward, just append the new commits */
+            for( ObjectId id : segment ) {
+                add( id, merged.contains( id ) );
+            }
+            append( segment );
+        } else {
+            /* History was rewritten. Cut where the histories meet, or start over */
+            LOGGER.fine( String.format( "Rewritten history in %s, %s", file, meet == null ? "rebuilding" : "cutting at " + meet ) );
+            List<ObjectId> kept = meet == null ? Collections.<ObjectId>emptyList() : new ArrayList<>( chain.subList( 0, meet + 1 ) );
+            merged.addAll( merges );
+            clear();
+            for( ObjectId id : kept ) {
+                add( id, merged.contains( id ) );
+            }
+            for( ObjectId id : segment ) {
+                add( id, merged.contains( id ) );
+            }
+            rewrite();
+        }
+    }
+
+    private void append( List<ObjectId> ids ) throws IOException {
+        try( Writer writer = new OutputStreamWriter( new FileOutputStream( file, true ), StandardCharsets.US_ASCII ) ) {
+            for( ObjectId id : ids ) {
+                write( writer, id );
+            }
+        }
+        length = file.length();
+    }
+
+    private void write( Writer writer, ObjectId id ) throws IOException {
+        writer.write( id.getName() );
+        if( merges.contains( id ) ) {
+            writer.write( MERGE );
+        }
+        writer.write( '\n' );
+    }
+
+    private void rewrite() throws IOException {
+        File tmp = new File( file.getParentFile(), file.getName() + ".tmp" );
+        try( Writer writer = new OutputStreamWriter( new FileOutputStream( tmp ), StandardCharsets.US_ASCII ) ) {
+            for( ObjectId id : chain ) {
+                write( writer, id );
+            }
+        }
+        Files.move( tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+        length = file.length();
+    }
+
+    /**
+     * Forgets the indexes of the workspaces of a rotator job, on every node online, when the job is deleted or
+     * renamed.
+     */
+    @Extension
+    public static class ItemListenerImpl extends ItemListener {
+
+        @Override
+        public void onLocationChanged( Item item, String oldFullName, String newFullName ) {
+            forgetAll( item, oldFullName );
+        }
+
+        @Override
+        public void onDeleted( Item item ) {
+            forgetAll( item, item.getFullName() );
+        }
+
+        private void forgetAll( Item item, String fullName ) {
+            Jenkins jenkins = Jenkins.getInstance();
+            if( jenkins == null || !( item instanceof TopLevelItem ) || !( item instanceof AbstractProject ) || !( ( (AbstractProject<?, ?>) item ).getScm() instanceof ConfigurationRotator ) ) {
+                return;
+            }
+
+            for( Node node : jenkins.getNodes() ) {
+                FilePath root = node instanceof Slave ? ( (Slave) node ).getWorkspaceRoot() : null;
+                if( root != null ) {
+                    forget( node, root.child( fullName ).getRemote() );
+                }
+            }
+            /* The workspace on the master moves with the job, what is left behind is forgotten as missing */
+            FilePath workspace = jenkins.getWorkspaceFor( (TopLevelItem) item );
+            if( workspace != null ) {
+                forget( jenkins, workspace.getRemote() );
+            }
+        }
+
+        private void forget( Node node, String workspace ) {
+            VirtualChannel channel = node.getChannel();
+            if( channel == null ) {
+                return;
+            }
+            try {
+                channel.call( new Forget( workspace ) );
+            } catch( IOException | RuntimeException e ) {
+                LOGGER.log( Level.FINE, "Unable to forget the first-parent indexes of " + workspace + " on " + node.getDisplayName(), e );
+            } catch( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static class Forget extends MasterToSlaveCallable<Integer, RuntimeException> {
+        private final String workspace;
+
+        private Forget( String workspace ) {
+            this.workspace = workspace;
+        }
+
+        @Override
+        public Integer call() {
+            return forget( workspace );
+        }
+    }
+}
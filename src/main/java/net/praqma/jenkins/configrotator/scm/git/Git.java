@@ -11,7 +11,6 @@ import hudson.util.FormValidation;
 import net.praqma.jenkins.configrotator.*;
 import net.praqma.jenkins.configrotator.scm.ConfigRotatorChangeLogEntry;
 import net.praqma.jenkins.configrotator.scm.ConfigRotatorChangeLogParser;
-import org.eclipse.jgit.revwalk.RevCommit;
 import org.kohsuke.stapler.DataBoundConstructor;
 
 import javax.servlet.ServletException;
@@ -19,6 +18,8 @@ import java.io.*;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import net.praqma.jenkins.configrotator.scm.contribute.ConfigRotatorCompatabilityConverter;
@@ -41,7 +42,56 @@ public class Git extends AbstractConfigurationRotatorSCM implements Serializable
 
     @Override
     public Poller getPoller( AbstractProject<?, ?> project, FilePath workspace, TaskListener listener ) {
-        return new Poller(project, workspace, listener );
+        return new GitPoller(project, workspace, listener );
+    }
+
+    /**
+     * Skips resolving the next commits when no remote tip has moved since the last poll that found nothing. The queued
+     * commits are dropped when a remote tip has moved since they were resolved.
+     */
+    public class GitPoller extends Poller<GitConfiguration> {
+
+        private Map<String, String> tips;
+        private boolean listed = false;
+
+        public GitPoller( AbstractProject<?, ?> project, FilePath workspace, TaskListener listener ) {
+            super( project, workspace, listener );
+        }
+
+        /**
+         * List the remote tips once per poll.
+         */
+        private Map<String, String> listTips( GitConfiguration configuration ) {
+            if( !listed ) {
+                listed = true;
+                try {
+                    tips = workspace.act( new ListRemoteTips( configuration.getList(), getResolveThreads() ) );
+                } catch( Exception e ) {
+                    LOGGER.log( Level.FINE, "Unable to list remote tips", e );
+                    tips = null;
+                }
+            }
+            return tips;
+        }
+
+        @Override
+        protected String getSource( GitConfiguration configuration ) {
+            Map<String, String> current = listTips( configuration );
+            return current != null && !current.isEmpty() ? new TreeMap<>( current ).toString() : null;
+        }
+
+        @Override
+        protected boolean isUnchanged( GitConfiguration configuration ) {
+            Map<String, String> current = listTips( configuration );
+            return current != null && RemoteTipCache.get( project ).isUnchanged( configuration, current );
+        }
+
+        @Override
+        protected void recordUnchanged( GitConfiguration configuration ) {
+            if( tips != null ) {
+                RemoteTipCache.get( project ).record( project, configuration, tips );
+            }
+        }
     }
 
     @Override
@@ -62,13 +112,13 @@ public class Git extends AbstractConfigurationRotatorSCM implements Serializable
 
         @Override
         public GitConfiguration getInitialConfiguration() throws ConfigurationRotatorException {
-            return new GitConfiguration( getTargets(), workspace, listener );
+            return new GitConfiguration( getTargets(), workspace, listener, getResolveThreads() );
         }
 
         @Override
         public GitConfiguration getNextConfiguration( ConfigurationRotatorBuildAction action ) throws ConfigurationRotatorException {
             GitConfiguration oldconfiguration = action.getConfiguration();
-            return (GitConfiguration) nextConfiguration(listener, oldconfiguration, workspace );
+            return (GitConfiguration) takeConfiguration( build.getProject(), listener, oldconfiguration, workspace );
         }
 
         @Override
@@ -94,12 +144,34 @@ public class Git extends AbstractConfigurationRotatorSCM implements Serializable
         if( c == null ) {
             throw new AbortException( ConfigurationRotator.LOGGERNAME + "Not a valid configuration" );
         } else {
-            this.projectConfiguration = c;
-            project.save();
+            setConfiguration( c );
             return c;
         }
     }
 
+    /**
+     * The identity of a Git component is its repository and commit, the name, branch and fixed flag are those of the
+     * current configuration.
+     */
+    @Override
+    public AbstractConfiguration recreateConfiguration( List<String> identities ) {
+        GitConfiguration current = (GitConfiguration) getConfiguration();
+        if( current == null || current.getList().size() != identities.size() ) {
+            return null;
+        }
+
+        List<GitConfigurationComponent> components = new ArrayList<>();
+        for( int i = 0; i < identities.size(); ++i ) {
+            GitConfigurationComponent c = current.getList().get( i );
+            String prefix = c.getRepository() + "@";
+            if( !identities.get( i ).startsWith( prefix ) ) {
+                return null;
+            }
+            components.add( new GitConfigurationComponent( c.getName(), c.getRepository(), c.getBranch(), identities.get( i ).substring( prefix.length() ), c.isFixed() ) );
+        }
+        return new GitConfiguration( components );
+    }
+
     @Override
     public boolean wasReconfigured( AbstractProject<?, ?> project, TaskListener listener ) {
         ConfigurationRotatorBuildAction action = getLastResult( project, Git.class );
@@ -173,9 +245,14 @@ public class Git extends AbstractConfigurationRotatorSCM implements Serializable
 
     @Override
     public AbstractConfiguration nextConfiguration( TaskListener listener, AbstractConfiguration configuration, FilePath workspace ) throws ConfigurationRotatorException {
+        return nextConfiguration( listener, configuration, workspace, new RotationStrategy.History( configuration.getList().size() ) );
+    }
+
+    @Override
+    public AbstractConfiguration nextConfiguration( TaskListener listener, AbstractConfiguration configuration, FilePath workspace, RotationStrategy.History history ) throws ConfigurationRotatorException {
         LOGGER.fine( "Getting next Git configuration: " + configuration);
 
-        RevCommit oldest = null;
+        ResolvedCommit oldest = null;
         GitConfigurationComponent chosen = null;
         GitConfiguration nconfig = null;
         try {
@@ -184,40 +261,59 @@ public class Git extends AbstractConfigurationRotatorSCM implements Serializable
             throw new ConfigurationRotatorException(String.format("Unable to clone configuration: %s", configuration) );
         }
 
-        /* Find oldest commit, newer than current */
-        for( GitConfigurationComponent config : nconfig.getList() ) {
+        /* Resolve the next commit of every component in a single call to the agent */
+        List<GitConfigurationComponent> candidates = new ArrayList<>();
+        List<Integer> indexes = new ArrayList<>();
+        for( int i = 0; i < nconfig.getList().size(); ++i ) {
+            GitConfigurationComponent config = nconfig.getList().get( i );
             if( !config.isFixed() ) {
-                try {
-                    LOGGER.fine("Config: " + config);
-                    RevCommit commit = workspace.act( new ResolveNextCommit( config.getName(), config.getCommitId() ) );
-                    if( commit != null ) {
-                        LOGGER.fine( "Current commit: " + commit.getName() );
-                        LOGGER.fine( "Current commit: " + commit.getCommitTime() );
-                        if( oldest != null ) {
-                            LOGGER.fine( "Oldest  commit: " + oldest.getName() );
-                            LOGGER.fine( "Oldest  commit: " + oldest.getCommitTime() );
-                        }
-                        if( oldest == null || commit.getCommitTime() < oldest.getCommitTime() ) {
-                            oldest = commit;
-                            chosen = config;
-                        }
+                LOGGER.fine("Config: " + config);
+                candidates.add( config );
+                indexes.add( i );
+            }
+        }
 
-                        config.setChangedLast( false );
-                    }
+        List<ResolvedCommit> commits = Collections.emptyList();
+        if( !candidates.isEmpty() ) {
+            try {
+                commits = workspace.act( ResolveCommits.next( candidates, getResolveThreads() ) );
+            } catch( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                throw new ConfigurationRotatorException( "Interrupted while resolving next commits", e );
+            } catch( IOException e ) {
+                throw new ConfigurationRotatorException( "Unable to resolve next commits", e );
+            }
+        }
 
-                } catch( Exception e ) {
-                    LOGGER.log( Level.FINE, "No commit found", e );
-                }
+        /* Let the strategy choose among the next commits, in component order */
+        Timeline<ResolvedCommit> timeline = new Timeline<>( nconfig.getList().size() );
+        for( int i = 0; i < candidates.size(); ++i ) {
+            GitConfigurationComponent config = candidates.get( i );
+            ResolvedCommit commit = commits.get( i );
+            if( commit.isFailed() ) {
+                LOGGER.log( Level.FINE, "No commit found", commit.getFailure() );
+                continue;
+            }
 
+            if( commit.isFound() ) {
+                LOGGER.fine( "Current commit: " + commit.getCommitId() );
+                LOGGER.fine( "Current commit: " + commit.getCommitTime() );
+                timeline.add( indexes.get( i ), commit, commit.getCommitTime() );
+                config.setChangedLast( false );
             }
         }
 
+        for( Timeline.Step<ResolvedCommit> step : timeline.merge( 1, getStrategy(), history ) ) {
+            oldest = step.getVersion();
+            chosen = nconfig.getList().get( step.getComponent() );
+        }
+
         LOGGER.fine( "Configuration component: " + chosen );
         LOGGER.fine( "Oldest valid commit: " + oldest );
         if( chosen != null && oldest != null ) {
             LOGGER.fine( "There was a new commit: " + oldest );
             listener.getLogger().println( ConfigurationRotator.LOGGERNAME + "Next commit: " + chosen );
-            chosen.setCommitId( oldest.getName() );
+            chosen.setCommitId( oldest.getCommitId() );
             chosen.setChangedLast( true );
         } else {
             listener.getLogger().println( ConfigurationRotator.LOGGERNAME + "No new commits" );
@@ -229,12 +325,86 @@ public class Git extends AbstractConfigurationRotatorSCM implements Serializable
     }
 
 
+    /**
+     * Resolves the pending commits of every component in a single call to the agent and merges them with the strategy.
+     */
+    @Override
+    public List<AbstractConfiguration> upcomingConfigurations( TaskListener listener, AbstractConfiguration configuration, FilePath workspace, int limit, RotationStrategy.History history ) throws ConfigurationRotatorException {
+        GitConfiguration current = (GitConfiguration) configuration;
+        List<GitConfigurationComponent> candidates = new ArrayList<>();
+        List<Integer> indexes = new ArrayList<>();
+        for( int i = 0; i < current.getList().size(); ++i ) {
+            if( !current.getList().get( i ).isFixed() ) {
+                candidates.add( current.getList().get( i ) );
+                indexes.add( i );
+            }
+        }
+
+        List<AbstractConfiguration> upcoming = new ArrayList<>();
+        if( candidates.isEmpty() ) {
+            return upcoming;
+        }
+
+        List<ResolvedCommit> commits;
+        try {
+            commits = workspace.act( ResolveCommits.pending( candidates, limit, getResolveThreads() ) );
+        } catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new ConfigurationRotatorException( "Interrupted while resolving pending commits", e );
+        } catch( IOException e ) {
+            throw new ConfigurationRotatorException( "Unable to resolve pending commits", e );
+        }
+
+        Timeline<String> timeline = new Timeline<>( current.getList().size() );
+        for( int i = 0; i < candidates.size(); ++i ) {
+            ResolvedCommit commit = commits.get( i );
+            if( commit.isFailed() ) {
+                LOGGER.log( Level.FINE, "No commit found", commit.getFailure() );
+                continue;
+            }
+            for( ResolvedCommit c : commit.getPending() ) {
+                timeline.add( indexes.get( i ), c.getCommitId(), c.getCommitTime() );
+            }
+        }
+
+        GitConfiguration previous = current;
+        for( Timeline.Step<String> step : timeline.merge( limit, getStrategy(), history ) ) {
+            GitConfiguration next;
+            try {
+                next = previous.clone();
+            } catch( CloneNotSupportedException ex ) {
+                throw new ConfigurationRotatorException( String.format( "Unable to clone configuration: %s", previous ) );
+            }
+            for( GitConfigurationComponent c : next.getList() ) {
+                c.setChangedLast( false );
+            }
+            GitConfigurationComponent chosen = next.getList().get( step.getComponent() );
+            chosen.setCommitId( step.getVersion() );
+            chosen.setChangedLast( true );
+            upcoming.add( next );
+            previous = next;
+        }
+
+        listener.getLogger().println( ConfigurationRotator.LOGGERNAME + upcoming.size() + " upcoming configurations" );
+        return upcoming;
+    }
+
     private List<GitTarget> getConfigurationAsTargets( GitConfiguration config ) {
         List<GitTarget> list = new ArrayList<GitTarget>();
         if( config.getList() != null && config.getList().size() > 0 ) {
             for( GitConfigurationComponent c : config.getList() ) {
                 if( c != null ) {
-                    list.add( new GitTarget( c.getName(), c.getRepository(), c.getBranch(), c.getCommitId(), c.isFixed() ) );
+                    GitTarget target = new GitTarget( c.getName(), c.getRepository(), c.getBranch(), c.getCommitId(), c.isFixed() );
+
+                    /* The clone options are not part of the configuration, keep them from the configured target */
+                    for( GitTarget t : targets ) {
+                        if( t.getRepository() != null && t.getRepository().equals( c.getRepository() ) ) {
+                            target.setDepth( t.getDepth() );
+                            target.setBlobless( t.isBlobless() );
+                            break;
+                        }
+                    }
+                    list.add( target );
                 } else {
                     /* A null!? The list is corrupted, return targets */
                     return targets;
@@ -254,8 +424,8 @@ public class Git extends AbstractConfigurationRotatorSCM implements Serializable
 
     @Override
     public List<GitTarget> getTargets() {
-        if( projectConfiguration != null ) {
-            return getConfigurationAsTargets( (GitConfiguration) projectConfiguration );
+        if( getConfiguration() != null ) {
+            return getConfigurationAsTargets( (GitConfiguration) getConfiguration() );
         } else {
             return targets;
         }
@@ -17,20 +17,35 @@ public class GitConfiguration extends AbstractConfiguration<GitConfigurationComp
 
     private GitConfiguration() { super(); }
 
+    public GitConfiguration( List<GitConfigurationComponent> components ) {
+        super( components );
+    }
+
     public GitConfiguration( List<GitTarget> targets, FilePath workspace, TaskListener listener ) throws ConfigurationRotatorException {
-        for( AbstractTarget t : targets ) {
-            GitTarget target = (GitTarget)t;
-
-            LOGGER.fine( String.format( "Getting component for %s", target ) );
-            GitConfigurationComponent c = null;
-            try {
-                c = workspace.act( new ResolveConfigurationComponent( listener, target.getName(), target.getRepository(), target.getBranch(), target.getCommitId(), target.getFixed() ) );
-                target.setCommitId(c.getCommitId());
-            } catch( Exception e ) {
-                LOGGER.log( Level.WARNING, "Whoops", e );
-                throw new ConfigurationRotatorException( "Unable to get component for " + target, e );
+        this( targets, workspace, listener, ParallelResolver.DEFAULT_THREADS );
+    }
+
+    public GitConfiguration( List<GitTarget> targets, FilePath workspace, TaskListener listener, int threads ) throws ConfigurationRotatorException {
+        LOGGER.fine( String.format( "Getting components for %s", targets ) );
+        List<ResolvedCommit> resolved;
+        try {
+            resolved = workspace.act( ResolveCommits.initial( listener, targets, threads ) );
+        } catch( Exception e ) {
+            LOGGER.log( Level.WARNING, "Whoops", e );
+            throw new ConfigurationRotatorException( "Unable to get components for " + targets, e );
+        }
+
+        for( int i = 0; i < targets.size(); ++i ) {
+            GitTarget target = targets.get( i );
+            ResolvedCommit commit = resolved.get( i );
+            if( commit.isFailed() ) {
+                LOGGER.log( Level.WARNING, "Whoops", commit.getFailure() );
+                throw new ConfigurationRotatorException( "Unable to get component for " + target, commit.getFailure() );
             }
 
+            GitConfigurationComponent c = new GitConfigurationComponent( commit.getName(), target.getRepository(), ResolveConfigurationComponent.branchOrDefault( target.getBranch() ), commit.getCommitId(), target.getFixed() );
+            target.setCommitId( c.getCommitId() );
+
             LOGGER.fine( String.format( "Adding %s", c ) );
             list.add( c );
         }
@@ -85,7 +100,11 @@ public class GitConfiguration extends AbstractConfiguration<GitConfigurationComp
     @Override
     public GitConfiguration clone() throws CloneNotSupportedException {
         GitConfiguration n = (GitConfiguration)super.clone();
-        n.list = new ArrayList<>(this.list);
+        List<GitConfigurationComponent> tmp = new ArrayList<>(this.list);
+        n.list = new ArrayList<>();
+        for (GitConfigurationComponent cmp : tmp) {
+            n.list.add((GitConfigurationComponent)cmp.clone());
+        }
         return n;
     }
 
@@ -16,7 +16,7 @@ public class GitConfigurationComponent extends AbstractConfigurationComponent im
     private String branch;
     private String repository;
 
-    private GitConfigurationComponent( String name, String repository, String branch, String commitId, boolean fixed ) {
+    GitConfigurationComponent( String name, String repository, String branch, String commitId, boolean fixed ) {
         super( fixed );
         this.name = name;
         this.repository = repository;
@@ -63,6 +63,11 @@ public class GitConfigurationComponent extends AbstractConfigurationComponent im
         return repository;
     }
 
+    @Override
+    public String getIdentity() {
+        return repository + "@" + commitId;
+    }
+
     @Override
     protected Object clone() throws CloneNotSupportedException {
         GitConfigurationComponent gcc = (GitConfigurationComponent)super.clone();
@@ -4,6 +4,7 @@ import hudson.Extension;
 import hudson.model.Descriptor;
 import net.praqma.jenkins.configrotator.AbstractTarget;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 
 import java.io.Serializable;
 import java.util.Objects;
@@ -16,6 +17,8 @@ public class GitTarget extends AbstractTarget<GitTarget> implements Serializable
     private String branch;
     private String commitId;
     private boolean fixed;
+    private int depth = 0;
+    private boolean blobless = false;
 
     public GitTarget() { }
 
@@ -68,6 +71,27 @@ public class GitTarget extends AbstractTarget<GitTarget> implements Serializable
         return fixed;
     }
 
+    /**
+     * @return the number of commits to clone, or 0 for the full history
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    @DataBoundSetter
+    public void setDepth(int depth) {
+        this.depth = Math.max(0, depth);
+    }
+
+    public boolean isBlobless() {
+        return blobless;
+    }
+
+    @DataBoundSetter
+    public void setBlobless(boolean blobless) {
+        this.blobless = blobless;
+    }
+
     @Override
     public String toString() {
         return String.format("%s, %s", repository, branch);
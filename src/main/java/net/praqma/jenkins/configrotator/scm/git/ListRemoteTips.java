@@ -0,0 +1,95 @@
+package net.praqma.jenkins.configrotator.scm.git;
+
+import hudson.FilePath;
+import hudson.remoting.VirtualChannel;
+import net.praqma.jenkins.configrotator.ParallelResolver;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.Ref;
+import org.jenkinsci.remoting.RoleChecker;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.logging.Logger;
+
+/**
+ * Lists the remote tip of the branch of each component, like <code>git ls-remote --heads</code>.
+ * Only the ref advertisement is read, nothing is fetched and the local clones are not opened.
+ */
+public class ListRemoteTips implements FilePath.FileCallable<Map<String, String>> {
+
+    private static final Logger LOGGER = Logger.getLogger( ListRemoteTips.class.getName() );
+
+    private final List<String> repositories = new ArrayList<>();
+    private final List<String> branches = new ArrayList<>();
+    private final int threads;
+
+    public ListRemoteTips( List<GitConfigurationComponent> components, int threads ) {
+        for( GitConfigurationComponent c : components ) {
+            if( !c.isFixed() ) {
+                repositories.add( c.getRepository() );
+                branches.add( ResolveConfigurationComponent.branchOrDefault( c.getBranch() ) );
+            }
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * @param repository the repository
+     * @param branch the branch
+     * @return the key used for the tip of the branch in the repository
+     */
+    public static String key( String repository, String branch ) {
+        return repository + "#" + ResolveConfigurationComponent.branchOrDefault( branch );
+    }
+
+    @Override
+    public Map<String, String> invoke( File workspace, VirtualChannel channel ) throws IOException, InterruptedException {
+        List<Callable<String>> tasks = new ArrayList<>();
+        for( int i = 0; i < repositories.size(); ++i ) {
+            final String repository = repositories.get( i );
+            final String branch = branches.get( i );
+            tasks.add( new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    return tip( repository, branch );
+                }
+            } );
+        }
+
+        Map<String, String> tips = new HashMap<>();
+        List<ParallelResolver.Outcome<String>> outcomes = ParallelResolver.resolve( tasks, threads );
+        for( int i = 0; i < outcomes.size(); ++i ) {
+            ParallelResolver.Outcome<String> outcome = outcomes.get( i );
+            if( outcome.isFailed() ) {
+                throw new IOException( "Unable to list remote " + repositories.get( i ), outcome.getFailure() );
+            }
+            tips.put( key( repositories.get( i ), branches.get( i ) ), outcome.getValue() );
+        }
+
+        LOGGER.fine( "Remote tips: " + tips );
+        return tips;
+    }
+
+    private static String tip( String repository, String branch ) throws GitAPIException {
+        Collection<Ref> refs = org.eclipse.jgit.api.Git.lsRemoteRepository().setRemote( repository ).setHeads( true ).call();
+        String name = Constants.R_HEADS + branch;
+        for( Ref ref : refs ) {
+            if( ref.getName().equals( name ) && ref.getObjectId() != null ) {
+                return ref.getObjectId().getName();
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void checkRoles( RoleChecker rc ) throws SecurityException {
+        //NO-OP
+    }
+}
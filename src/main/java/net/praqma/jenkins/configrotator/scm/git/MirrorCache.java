@@ -0,0 +1,177 @@
+package net.praqma.jenkins.configrotator.scm.git;
+
+import org.eclipse.jgit.api.CreateBranchCommand;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.StoredConfig;
+import org.eclipse.jgit.transport.RefSpec;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * Bare mirrors of remote repositories on an agent, one per repository URL, shared by all the jobs on the agent.
+ * <p>
+ * A workspace clone borrows the objects of the mirror through <code>objects/info/alternates</code>, so the first clone
+ * of a configuration is a local operation and the objects are only stored once per agent. The origin of the workspace
+ * clone is still the real repository.
+ * </p>
+ * <p>
+ * The mirrors are kept in <code>~/.config-rotator/git-mirrors</code>, or the directory given by the system property
+ * <code>net.praqma.jenkins.configrotator.scm.git.MirrorCache.root</code>. They are never pruned or garbage collected
+ * by the plugin, since the workspace clones depend on their objects. The cache can be turned off by setting
+ * <code>net.praqma.jenkins.configrotator.scm.git.MirrorCache.disabled</code> to true.
+ * </p>
+ */
+public final class MirrorCache {
+
+    private static final Logger LOGGER = Logger.getLogger( MirrorCache.class.getName() );
+
+    public static final boolean DISABLED = Boolean.getBoolean( MirrorCache.class.getName() + ".disabled" );
+
+    private static final RefSpec BRANCHES = new RefSpec( "+" + Constants.R_HEADS + "*:" + Constants.R_REMOTES + Constants.DEFAULT_REMOTE_NAME + "/*" );
+
+    private static final Map<String, Object> LOCKS = new ConcurrentHashMap<>();
+
+    private MirrorCache() { }
+
+    public static File getRoot() {
+        String root = System.getProperty( MirrorCache.class.getName() + ".root" );
+        if( root != null ) {
+            return new File( root );
+        }
+        return new File( new File( System.getProperty( "user.home" ), ".config-rotator" ), "git-mirrors" );
+    }
+
+    /**
+     * Create or update the mirror of a repository.
+     *
+     * @param url the repository URL
+     * @return the git directory of the mirror
+     * @throws IOException if the mirror could not be cloned or fetched
+     */
+    public static File update( String url ) throws IOException {
+        String key = key( url );
+        File root = getRoot();
+        File mirror = new File( root, key + ".git" );
+        if( !root.isDirectory() && !root.mkdirs() ) {
+            throw new IOException( "Unable to create mirror directory " + root );
+        }
+
+        Object lock = LOCKS.get( key );
+        if( lock == null ) {
+            lock = new Object();
+            Object existing = LOCKS.putIfAbsent( key, lock );
+            if( existing != null ) {
+                lock = existing;
+            }
+        }
+
+        /* Guard against other threads on this agent, and other agents sharing the directory */
+        synchronized( lock ) {
+            try( RandomAccessFile file = new RandomAccessFile( new File( root, key + ".lock" ), "rw" );
+                 FileChannel channel = file.getChannel();
+                 FileLock ignored = channel.lock() ) {
+
+                if( !new File( mirror, "objects" ).isDirectory() ) {
+                    LOGGER.fine( String.format( "Creating mirror of %s in %s", url, mirror ) );
+                    org.eclipse.jgit.api.Git g = org.eclipse.jgit.api.Git.cloneRepository().setURI( url ).setDirectory( mirror ).setBare( true ).setCloneAllBranches( true ).call();
+                    g.getRepository().close();
+                    g.close();
+                } else {
+                    LOGGER.fine( String.format( "Updating mirror of %s in %s", url, mirror ) );
+                    Repository repo = RepositoryPool.acquire( mirror );
+                    org.eclipse.jgit.api.Git git = new org.eclipse.jgit.api.Git( repo );
+                    try {
+                        git.fetch().setRemote( Constants.DEFAULT_REMOTE_NAME ).call();
+                    } finally {
+                        git.close();
+                        RepositoryPool.release( repo );
+                    }
+                }
+            } catch( GitAPIException e ) {
+                throw new IOException( String.format( "Unable to mirror %s", url ), e );
+            }
+        }
+
+        return mirror;
+    }
+
+    /**
+     * Clone a repository into a workspace, borrowing the objects of its mirror.
+     * The default branch of the mirror is checked out, as a regular clone would.
+     *
+     * @param url the repository URL, which becomes the origin of the clone
+     * @param mirror the git directory of the mirror
+     * @param local the work tree of the clone
+     * @throws IOException if the clone failed
+     */
+    public static void cloneFrom( String url, File mirror, File local ) throws IOException {
+        org.eclipse.jgit.api.Git git = null;
+        try {
+            git = org.eclipse.jgit.api.Git.init().setDirectory( local ).call();
+            Repository repo = git.getRepository();
+
+            File info = new File( new File( repo.getDirectory(), "objects" ), "info" );
+            if( !info.isDirectory() && !info.mkdirs() ) {
+                throw new IOException( "Unable to create " + info );
+            }
+            Files.write( new File( info, "alternates" ).toPath(), ( new File( mirror, "objects" ).getAbsolutePath() + "\n" ).getBytes( StandardCharsets.UTF_8 ) );
+
+            StoredConfig config = repo.getConfig();
+            config.setString( "remote", Constants.DEFAULT_REMOTE_NAME, "url", url );
+            config.setString( "remote", Constants.DEFAULT_REMOTE_NAME, "fetch", BRANCHES.toString() );
+            config.save();
+
+            /* All objects are already reachable through the alternates, this only copies the refs */
+            git.fetch().setRemote( mirror.getAbsolutePath() ).setRefSpecs( BRANCHES ).call();
+
+            String head = defaultBranch( mirror );
+            LOGGER.fine( String.format( "Checking out %s from the mirror %s", head, mirror ) );
+            git.checkout().setCreateBranch( true ).setName( head ).setUpstreamMode( CreateBranchCommand.SetupUpstreamMode.TRACK )
+                    .setStartPoint( Constants.DEFAULT_REMOTE_NAME + "/" + head ).call();
+        } catch( GitAPIException e ) {
+            throw new IOException( String.format( "Unable to clone %s from the mirror %s", url, mirror ), e );
+        } finally {
+            if( git != null ) {
+                git.getRepository().close();
+                git.close();
+            }
+        }
+    }
+
+    private static String defaultBranch( File mirror ) throws IOException {
+        Repository repo = RepositoryPool.acquire( mirror );
+        try {
+            String head = repo.getBranch();
+            return head != null ? head : "master";
+        } finally {
+            RepositoryPool.release( repo );
+        }
+    }
+
+    private static String key( String url ) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance( "SHA-1" );
+            byte[] hash = digest.digest( url.trim().getBytes( StandardCharsets.UTF_8 ) );
+            StringBuilder sb = new StringBuilder();
+            for( byte b : hash ) {
+                sb.append( String.format( "%02x", b ) );
+            }
+            return sb.toString();
+        } catch( NoSuchAlgorithmException e ) {
+            throw new IllegalStateException( e );
+        }
+    }
+}
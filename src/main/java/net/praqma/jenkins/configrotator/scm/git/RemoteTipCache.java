@@ -0,0 +1,122 @@
+package net.praqma.jenkins.configrotator.scm.git;
+
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.model.AbstractProject;
+import hudson.model.Item;
+import hudson.model.listeners.ItemListener;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Remembers the remote tips seen by the last poll of a job that found no new commits.
+ * If none of the tips has moved since, and the job is still at the same configuration, there is nothing new to find.
+ * <p>
+ * The tips are kept in memory and written to the job directory, so a restart does not cause a full poll of every job.
+ * The cache is per job, as the tips are only unchanged relative to the configuration the job is at, and a job deleted
+ * or renamed is forgotten, see {@link ItemListenerImpl}.
+ * </p>
+ */
+public class RemoteTipCache {
+
+    private static final Logger LOGGER = Logger.getLogger( RemoteTipCache.class.getName() );
+
+    public static final String FILE_NAME = "config-rotator-remote-tips.xml";
+
+    private static final Map<String, RemoteTipCache> CACHE = new ConcurrentHashMap<>();
+
+    /**
+     * The commits of the configuration the tips were seen with
+     */
+    private String configuration;
+    private Map<String, String> tips = new HashMap<>();
+
+    private RemoteTipCache() { }
+
+    private static XmlFile getFile( AbstractProject<?, ?> project ) {
+        return new XmlFile( new File( project.getRootDir(), FILE_NAME ) );
+    }
+
+    public static synchronized RemoteTipCache get( AbstractProject<?, ?> project ) {
+        RemoteTipCache cache = CACHE.get( project.getFullName() );
+        if( cache == null ) {
+            cache = new RemoteTipCache();
+            XmlFile file = getFile( project );
+            if( file.exists() ) {
+                try {
+                    file.unmarshal( cache );
+                } catch( IOException e ) {
+                    LOGGER.log( Level.WARNING, "Unable to read remote tips of " + project.getFullName(), e );
+                    cache = new RemoteTipCache();
+                }
+            }
+            CACHE.put( project.getFullName(), cache );
+        }
+        return cache;
+    }
+
+    private static String identify( GitConfiguration configuration ) {
+        StringBuilder sb = new StringBuilder();
+        for( GitConfigurationComponent c : configuration.getList() ) {
+            sb.append( c.getRepository() ).append( '#' ).append( c.getCommitId() ).append( ';' );
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @param configuration the current configuration
+     * @param current the current remote tips
+     * @return true if the tips were seen with the configuration before, and none of them has moved
+     */
+    public synchronized boolean isUnchanged( GitConfiguration configuration, Map<String, String> current ) {
+        return current != null && !current.isEmpty() && identify( configuration ).equals( this.configuration ) && current.equals( tips );
+    }
+
+    /**
+     * Record that no new commits could be found from the configuration with the given tips.
+     *
+     * @param project the project
+     * @param configuration the configuration
+     * @param current the remote tips, as they were before the poll
+     */
+    public synchronized void record( AbstractProject<?, ?> project, GitConfiguration configuration, Map<String, String> current ) {
+        String identity = identify( configuration );
+        if( identity.equals( this.configuration ) && current.equals( tips ) ) {
+            return;
+        }
+
+        this.configuration = identity;
+        this.tips = new HashMap<>( current );
+        try {
+            getFile( project ).write( this );
+        } catch( IOException e ) {
+            LOGGER.log( Level.WARNING, "Unable to write remote tips of " + project.getFullName(), e );
+        }
+    }
+
+    /**
+     * Forgets the tips of a job when it is deleted, and follows it when it is renamed.
+     */
+    @Extension
+    public static class ItemListenerImpl extends ItemListener {
+
+        @Override
+        public void onLocationChanged( Item item, String oldFullName, String newFullName ) {
+            RemoteTipCache cache = CACHE.remove( oldFullName );
+            if( cache != null ) {
+                CACHE.put( newFullName, cache );
+            }
+        }
+
+        @Override
+        public void onDeleted( Item item ) {
+            CACHE.remove( item.getFullName() );
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package net.praqma.jenkins.configrotator.scm.git;
+
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A pool of open repositories on an agent, keyed by git directory.
+ * Keeping the repositories open keeps the pack indexes, object caches and ref database between the calls to the agent.
+ * <p>
+ * Every {@link #acquire(File)} must be matched by a {@link #release(Repository)}; pooled repositories must never be closed
+ * by the caller. Repositories that are not in use are closed when they have been idle for a while, when the pool is full,
+ * and when their git directory has been deleted or replaced, e.g. by a workspace wipe out.
+ * </p>
+ */
+public final class RepositoryPool {
+
+    private static final Logger LOGGER = Logger.getLogger( RepositoryPool.class.getName() );
+
+    public static final int MAX_OPEN = Integer.getInteger( RepositoryPool.class.getName() + ".maxOpen", 32 );
+    public static final long IDLE_MILLIS = Long.getLong( RepositoryPool.class.getName() + ".idleMillis", TimeUnit.MINUTES.toMillis( 5 ) );
+
+    /**
+     * In least recently used order
+     */
+    private static final LinkedHashMap<String, Handle> HANDLES = new LinkedHashMap<>( 16, 0.75f, true );
+    private static final Map<Repository, Handle> ACQUIRED = new IdentityHashMap<>();
+
+    private static ScheduledExecutorService sweeper;
+
+    private RepositoryPool() { }
+
+    private static class Handle {
+        private final String key;
+        private final Repository repository;
+        private final Object identity;
+        private int references = 0;
+        private long lastUsed = System.currentTimeMillis();
+        private boolean stale = false;
+
+        Handle( String key, Repository repository, Object identity ) {
+            this.key = key;
+            this.repository = repository;
+            this.identity = identity;
+        }
+    }
+
+    /**
+     * Get an open repository for a git directory, opening it if it is not in the pool.
+     *
+     * @param gitDir the git directory
+     * @return the repository
+     * @throws IOException if the repository could not be opened
+     */
+    public static Repository acquire( File gitDir ) throws IOException {
+        String key = gitDir.getAbsolutePath();
+        Object identity = identify( gitDir );
+        synchronized( RepositoryPool.class ) {
+            Handle handle = HANDLES.get( key );
+            if( handle != null && ( identity == null || !identity.equals( handle.identity ) ) ) {
+                LOGGER.fine( String.format( "%s was deleted or replaced", key ) );
+                discard( handle );
+                handle = null;
+            }
+
+            if( handle == null ) {
+                Repository repository = new FileRepositoryBuilder().setGitDir( gitDir ).readEnvironment().setMustExist( true ).build();
+                handle = new Handle( key, repository, identity );
+                HANDLES.put( key, handle );
+                startSweeper();
+            }
+
+            handle.references++;
+            handle.lastUsed = System.currentTimeMillis();
+            ACQUIRED.put( handle.repository, handle );
+            evict( MAX_OPEN, Long.MAX_VALUE );
+            return handle.repository;
+        }
+    }
+
+    /**
+     * Give back a repository from {@link #acquire(File)}.
+     *
+     * @param repository the repository, may be null
+     */
+    public static void release( Repository repository ) {
+        if( repository == null ) {
+            return;
+        }
+
+        synchronized( RepositoryPool.class ) {
+            Handle handle = ACQUIRED.get( repository );
+            if( handle == null ) {
+                /* Not from the pool */
+                repository.close();
+                return;
+            }
+
+            handle.references--;
+            handle.lastUsed = System.currentTimeMillis();
+            if( handle.references <= 0 ) {
+                ACQUIRED.remove( repository );
+                if( handle.stale ) {
+                    repository.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Close all repositories not in use.
+     */
+    public static void clear() {
+        synchronized( RepositoryPool.class ) {
+            evict( 0, 0 );
+        }
+    }
+
+    /**
+     * Identifies the git directory on disk, so a deleted and recreated clone at the same path is noticed.
+     */
+    private static Object identify( File gitDir ) {
+        File objects = new File( gitDir, "objects" );
+        if( !objects.isDirectory() ) {
+            return null;
+        }
+        try {
+            BasicFileAttributes attributes = Files.readAttributes( objects.toPath(), BasicFileAttributes.class );
+            return attributes.fileKey() != null ? attributes.fileKey() : attributes.creationTime();
+        } catch( IOException e ) {
+            return null;
+        }
+    }
+
+    /**
+     * Take a handle out of the pool. It is closed now if it is not in use, otherwise when it is released.
+     */
+    private static void discard( Handle handle ) {
+        HANDLES.remove( handle.key );
+        if( handle.references <= 0 ) {
+            handle.repository.close();
+        } else {
+            handle.stale = true;
+        }
+    }
+
+    /**
+     * Close unused repositories, least recently used first, while there are more than max open or they have been idle too long.
+     */
+    private static void evict( int max, long idle ) {
+        long now = System.currentTimeMillis();
+        List<Handle> evicted = new ArrayList<>();
+        int open = HANDLES.size();
+        for( Iterator<Handle> it = HANDLES.values().iterator(); it.hasNext(); ) {
+            Handle handle = it.next();
+            if( handle.references <= 0 && ( open > max || now - handle.lastUsed > idle ) ) {
+                it.remove();
+                evicted.add( handle );
+                open--;
+            }
+        }
+
+        for( Handle handle : evicted ) {
+            LOGGER.fine( String.format( "Closing %s", handle.key ) );
+            handle.repository.close();
+        }
+    }
+
+    private static void startSweeper() {
+        if( sweeper == null ) {
+            sweeper = Executors.newSingleThreadScheduledExecutor( new ThreadFactory() {
+                @Override
+                public Thread newThread( Runnable r ) {
+                    Thread t = new Thread( r, "ConfigRotator repository pool sweeper" );
+                    t.setDaemon( true );
+                    return t;
+                }
+            } );
+            long period = Math.max( IDLE_MILLIS / 2, 1000 );
+            sweeper.scheduleWithFixedDelay( new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        synchronized( RepositoryPool.class ) {
+                            evict( MAX_OPEN, IDLE_MILLIS );
+                        }
+                    } catch( RuntimeException e ) {
+                        LOGGER.log( Level.WARNING, "Unable to sweep repository pool", e );
+                    }
+                }
+            }, period, period, TimeUnit.MILLISECONDS );
+        }
+    }
+}
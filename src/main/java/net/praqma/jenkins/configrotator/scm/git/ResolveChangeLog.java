@@ -11,7 +11,6 @@ import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevWalk;
-import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
 import org.eclipse.jgit.util.io.DisabledOutputStream;
 
 import java.io.File;
@@ -36,10 +35,9 @@ public class ResolveChangeLog implements FilePath.FileCallable<ConfigRotatorChan
     public ConfigRotatorChangeLogEntry invoke( File workspace, VirtualChannel virtualChannel ) throws IOException, InterruptedException {
 
         File local = new File( workspace, name );
-        FileRepositoryBuilder builder = new FileRepositoryBuilder();
         List<DiffEntry> diffs = null;
 
-        //Resources that NEEDS to be closed
+        //Resources that NEEDS to be closed or released
         Repository repo = null;
         RevWalk w = null;
 
@@ -48,29 +46,34 @@ public class ResolveChangeLog implements FilePath.FileCallable<ConfigRotatorChan
         RevCommit parent = null;
 
         try {
-            repo = builder.setGitDir( new File( local, ".git" ) ).readEnvironment().findGitDir().build();
+            repo = RepositoryPool.acquire( new File( local, ".git" ) );
             w = new RevWalk( repo );
             ObjectId o = repo.resolve( commitId );
             commit = w.parseCommit( o );
+
+            /* The parent is beyond the shallow boundary, deepen the history by one */
+            if( commit.getParentCount() == 0 && CliGit.isShallow( repo.getDirectory() ) ) {
+                CliGit.deepen( local, 1 );
+                w.close();
+                w = new RevWalk( repo );
+                commit = w.parseCommit( o );
+            }
+
             parent = w.parseCommit( commit.getParent( 0 ).getId() );
             LOGGER.fine(String.format("Diffing %s -> %s", commit.getName(), parent.getName() ) );
             DiffFormatter df = new DiffFormatter( DisabledOutputStream.INSTANCE );
             df.setRepository( repo );
             df.setDiffComparator( RawTextComparator.DEFAULT );
-            df.setDetectRenames( true );
+            /* Rename detection reads the blobs, which a blobless clone does not have */
+            df.setDetectRenames( !CliGit.isBlobless( repo.getDirectory() ) );
             diffs = df.scan( parent.getTree(), commit.getTree() );
         } catch (IOException io) {
             throw io;
         } finally {
-            if(repo != null) {
-                repo.close();
-            }
             if(w != null) {
                 w.close();
             }
-            if(repo != null) {
-                repo.close();
-            }
+            RepositoryPool.release( repo );
         }
 
         ConfigRotatorChangeLogEntry entry = new ConfigRotatorChangeLogEntry( commit.getFullMessage(), commit.getAuthorIdent().getName(), new ArrayList<ConfigRotatorVersion>());
@@ -0,0 +1,126 @@
+package net.praqma.jenkins.configrotator.scm.git;
+
+import hudson.FilePath;
+import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
+import net.praqma.jenkins.configrotator.ParallelResolver;
+import org.jenkinsci.remoting.RoleChecker;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.logging.Logger;
+
+/**
+ * Resolves the commits of all the components of a configuration in a single call to the agent.
+ * The components are resolved concurrently on the agent and only a {@link ResolvedCommit} per component
+ * is sent back, in the same order as the components were given.
+ */
+public class ResolveCommits implements FilePath.FileCallable<List<ResolvedCommit>> {
+
+    private static final Logger LOGGER = Logger.getLogger( ResolveCommits.class.getName() );
+
+    /**
+     * A single component resolution, run on the agent.
+     */
+    interface Resolver extends Serializable {
+        String getName();
+
+        ResolvedCommit resolve( File workspace ) throws IOException, InterruptedException;
+    }
+
+    private final List<Resolver> resolvers;
+    private final int threads;
+
+    private ResolveCommits( List<Resolver> resolvers, int threads ) {
+        this.resolvers = resolvers;
+        this.threads = threads;
+    }
+
+    /**
+     * Resolve the next commit, newer than the current, for each of the components.
+     *
+     * @param components the components
+     * @param threads the maximum number of concurrent resolutions
+     * @return the callable
+     */
+    public static ResolveCommits next( List<GitConfigurationComponent> components, int threads ) {
+        List<Resolver> resolvers = new ArrayList<>();
+        for( GitConfigurationComponent c : components ) {
+            resolvers.add( new ResolveNextCommit( c.getName(), c.getBranch(), c.getCommitId() ) );
+        }
+        return new ResolveCommits( resolvers, threads );
+    }
+
+    /**
+     * Resolve the pending commits, newer than the current, for each of the components.
+     *
+     * @param components the components
+     * @param limit the maximum number of commits per component
+     * @param threads the maximum number of concurrent resolutions
+     * @return the callable
+     */
+    public static ResolveCommits pending( List<GitConfigurationComponent> components, int limit, int threads ) {
+        List<Resolver> resolvers = new ArrayList<>();
+        for( GitConfigurationComponent c : components ) {
+            ResolveNextCommit r = new ResolveNextCommit( c.getName(), c.getBranch(), c.getCommitId() );
+            r.setLimit( limit );
+            resolvers.add( r );
+        }
+        return new ResolveCommits( resolvers, threads );
+    }
+
+    /**
+     * Clone, if needed, and resolve the configured commit for each of the targets.
+     *
+     * @param listener the listener
+     * @param targets the targets
+     * @param threads the maximum number of concurrent resolutions
+     * @return the callable
+     */
+    public static ResolveCommits initial( TaskListener listener, List<GitTarget> targets, int threads ) {
+        List<Resolver> resolvers = new ArrayList<>();
+        for( GitTarget t : targets ) {
+            ResolveConfigurationComponent r = new ResolveConfigurationComponent( listener, t.getName(), t.getRepository(), t.getBranch(), t.getCommitId(), t.getFixed() );
+            r.setDepth( t.getDepth() );
+            r.setBlobless( t.isBlobless() );
+            resolvers.add( r );
+        }
+        return new ResolveCommits( resolvers, threads );
+    }
+
+    @Override
+    public List<ResolvedCommit> invoke( final File workspace, VirtualChannel channel ) throws IOException, InterruptedException {
+        List<Callable<ResolvedCommit>> tasks = new ArrayList<>();
+        for( final Resolver r : resolvers ) {
+            tasks.add( new Callable<ResolvedCommit>() {
+                @Override
+                public ResolvedCommit call() throws Exception {
+                    return r.resolve( workspace );
+                }
+            } );
+        }
+
+        List<ParallelResolver.Outcome<ResolvedCommit>> outcomes = ParallelResolver.resolve( tasks, threads );
+        List<ResolvedCommit> result = new ArrayList<>( outcomes.size() );
+        for( int i = 0; i < outcomes.size(); ++i ) {
+            ParallelResolver.Outcome<ResolvedCommit> outcome = outcomes.get( i );
+            if( outcome.isFailed() ) {
+                result.add( ResolvedCommit.failed( resolvers.get( i ).getName(), outcome.getFailure() ) );
+            } else {
+                result.add( outcome.getValue() );
+            }
+        }
+
+        LOGGER.fine( "Resolved " + result );
+        return result;
+    }
+
+    @Override
+    public void checkRoles( RoleChecker rc ) throws SecurityException {
+        //NO-OP
+    }
+}
@@ -1,6 +1,7 @@
 package net.praqma.jenkins.configrotator.scm.git;
 
 import hudson.FilePath;
+import hudson.Util;
 import hudson.model.TaskListener;
 import hudson.remoting.VirtualChannel;
 import net.praqma.jenkins.configrotator.ConfigurationRotator;
@@ -11,7 +12,6 @@ import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevWalk;
-import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
 
 import java.io.File;
 import java.io.IOException;
@@ -25,13 +25,15 @@ import org.jenkinsci.remoting.RoleChecker;
 /**
  * This involves cloning the repository
  */
-public class ResolveConfigurationComponent implements FilePath.FileCallable<GitConfigurationComponent> {
+public class ResolveConfigurationComponent implements FilePath.FileCallable<GitConfigurationComponent>, ResolveCommits.Resolver {
 
     private String name;
     private String repository;
     private String branch;
     private String commitId;
     private boolean fixed;
+    private int depth = 0;
+    private boolean blobless = false;
     private static final Logger LOGGER = Logger.getLogger( ResolveConfigurationComponent.class.getName() );
 
     private TaskListener listener;
@@ -46,6 +48,20 @@ public class ResolveConfigurationComponent implements FilePath.FileCallable<GitC
         this.listener = listener;
     }
 
+    /**
+     * @param depth the number of commits to clone, anchored at the commit id, or 0 for the full history
+     */
+    public void setDepth( int depth ) {
+        this.depth = depth;
+    }
+
+    /**
+     * @param blobless true to clone without blobs, they are fetched when checked out
+     */
+    public void setBlobless( boolean blobless ) {
+        this.blobless = blobless;
+    }
+
     private void fixName() {
         /* fixing name */
         if( StringUtils.isBlank(name) ) {
@@ -61,8 +77,34 @@ public class ResolveConfigurationComponent implements FilePath.FileCallable<GitC
         }
     }
 
-    private File safeClone(File workspace) throws IOException {
+    private File safeClone(File workspace) throws IOException, InterruptedException {
         File local = new File( workspace, name );
+        String[] existing = local.list();
+
+        /* JGit can neither make nor maintain shallow and blobless clones */
+        if( depth > 0 || blobless ) {
+            if( existing == null || existing.length == 0 ) {
+                LOGGER.fine( String.format("Cloning repo from %s, depth %d, blobless %s", repository, depth, blobless) );
+                CliGit.clone( repository, branch, local, depth, blobless );
+            } else {
+                LOGGER.info("Ignoring this error...repo already exists");
+            }
+            return local;
+        }
+
+        /* Borrow the objects from the agent's mirror of the repository if this is the first clone */
+        if( !MirrorCache.DISABLED && ( existing == null || existing.length == 0 ) ) {
+            try {
+                File mirror = MirrorCache.update( repository );
+                LOGGER.fine( String.format("Cloning repo from %s through the mirror %s", repository, mirror) );
+                MirrorCache.cloneFrom( repository, mirror, local );
+                return local;
+            } catch( IOException e ) {
+                LOGGER.log( Level.WARNING, String.format( "Unable to clone %s through the mirror cache, cloning directly", repository ), e );
+                Util.deleteRecursive( local );
+            }
+        }
+
         LOGGER.fine( String.format("Cloning repo from %s", repository) );
         org.eclipse.jgit.api.Git g = null;
         try {
@@ -89,15 +131,14 @@ public class ResolveConfigurationComponent implements FilePath.FileCallable<GitC
         return local;
     }
 
-    private RevCommit createBranchAndPull(File localClone) throws IOException {
+    private RevCommit createBranchAndPull(File localClone) throws IOException, InterruptedException {
         //Init repository
         RevCommit commit;
         Repository repo = null;
         org.eclipse.jgit.api.Git git = null;
         RevWalk w = null;
-        FileRepositoryBuilder builder = new FileRepositoryBuilder();
         try {
-            repo = builder.setGitDir( new File( localClone, ".git" ) ).readEnvironment().findGitDir().build();
+            repo = RepositoryPool.acquire( new File( localClone, ".git" ) );
             git = new org.eclipse.jgit.api.Git( repo );
             try {
                 LOGGER.fine( String.format( "Creating branch %s",  branch ) );
@@ -106,7 +147,17 @@ public class ResolveConfigurationComponent implements FilePath.FileCallable<GitC
                 //This needs to be ignored.
             }
 
-            git.pull().call();
+            File gitDir = repo.getDirectory();
+            if( CliGit.isShallow( gitDir ) || CliGit.isBlobless( gitDir ) ) {
+                CliGit.pull( localClone );
+
+                /* Anchor the shallow history at the configured commit */
+                if( !StringUtils.isBlank( commitId ) && !CliGit.deepenUntil( localClone, commitId ) ) {
+                    throw new IOException( String.format( "The commit %s is not in %s", commitId, repository ) );
+                }
+            } else {
+                git.pull().call();
+            }
 
             w = new RevWalk( repo );
 
@@ -127,9 +178,6 @@ public class ResolveConfigurationComponent implements FilePath.FileCallable<GitC
         } catch (GitAPIException ex) {
             throw new IOException(ex);
         } finally {
-            if(repo != null) {
-                repo.close();
-            }
             if(w != null) {
                 w.close();
                 w.dispose();
@@ -137,26 +185,42 @@ public class ResolveConfigurationComponent implements FilePath.FileCallable<GitC
             if(git != null) {
                 git.close();
             }
+            RepositoryPool.release( repo );
         }
         return commit;
     }
 
+    /**
+     * @param branch the configured branch
+     * @return the branch, or master if not configured
+     */
+    public static String branchOrDefault( String branch ) {
+        return StringUtils.isBlank( branch ) ? "master" : branch;
+    }
+
     @Override
-    public GitConfigurationComponent invoke( File workspace, VirtualChannel channel ) throws IOException, InterruptedException {
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public ResolvedCommit resolve( File workspace ) throws IOException, InterruptedException {
         fixName();
         LOGGER.fine(String.format("Name: %s", name));
 
         /* Fixing branch */
-        if( StringUtils.isBlank(branch) ) {
-            branch = "master";
-        }
+        branch = branchOrDefault( branch );
 
         File local = safeClone(workspace);
         RevCommit commit = createBranchAndPull(local);
 
+        return new ResolvedCommit( name, commit );
+    }
 
-        return new GitConfigurationComponent( name, repository, branch, commit, fixed );
-
+    @Override
+    public GitConfigurationComponent invoke( File workspace, VirtualChannel channel ) throws IOException, InterruptedException {
+        ResolvedCommit commit = resolve( workspace );
+        return new GitConfigurationComponent( name, repository, branch, commit.getCommitId(), fixed );
     }
 
     private void listPath( PrintStream logger, File path ) {
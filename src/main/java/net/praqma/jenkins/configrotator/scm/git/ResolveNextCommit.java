@@ -3,57 +3,119 @@ package net.praqma.jenkins.configrotator.scm.git;
 import hudson.FilePath;
 import hudson.remoting.VirtualChannel;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevWalk;
-import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.logging.Logger;
 import org.jenkinsci.remoting.RoleChecker;
 
-public class ResolveNextCommit implements FilePath.FileCallable<RevCommit> {
+public class ResolveNextCommit implements FilePath.FileCallable<RevCommit>, ResolveCommits.Resolver {
 
     private String commitId;
     private String name;
-    private String branch = "git";
+    private String branch;
+    private int limit = 1;
     private static final Logger LOGGER = Logger.getLogger( ResolveNextCommit.class.getName() );
     public ResolveNextCommit( String name, String commitId ) {
+        this( name, null, commitId );
+    }
+
+    public ResolveNextCommit( String name, String branch, String commitId ) {
         this.commitId = commitId;
         this.name = name;
+        this.branch = branch;
+    }
+
+    /**
+     * @param limit the maximum number of commits to resolve, following the current one
+     */
+    public void setLimit( int limit ) {
+        this.limit = Math.max( 1, limit );
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public ResolvedCommit resolve( File workspace ) throws IOException, InterruptedException {
+        return new ResolvedCommit( name, resolveNext( workspace ) );
     }
 
     @Override
     public RevCommit invoke( File workspace, VirtualChannel virtualChannel ) throws IOException, InterruptedException {
+        List<RevCommit> commits = resolveNext( workspace );
+        return commits.isEmpty() ? null : commits.get( 0 );
+    }
+
+    /**
+     * @return the commits following the current one, oldest first and at most as many as the limit
+     */
+    private List<RevCommit> resolveNext( File workspace ) throws IOException, InterruptedException {
 
         //Resources
         Repository repo = null;
         org.eclipse.jgit.api.Git git = null;
         RevWalk w = null;
-        RevCommit next = null;
+        LinkedList<RevCommit> next = new LinkedList<>();
 
         try {
             File local = new File( workspace, name );
-            FileRepositoryBuilder builder = new FileRepositoryBuilder();
             LOGGER.fine( "Initializing repo" );
-            repo = builder.setGitDir( new File( local, ".git" ) ).readEnvironment().findGitDir().build();
+            repo = RepositoryPool.acquire( new File( local, ".git" ) );
             git = new org.eclipse.jgit.api.Git( repo );
 
-            LOGGER.fine( String.format( "Updating to %s", branch ) );
-            LOGGER.fine( "Pulling" );
-            git.pull().call();
+            /* Only update the remote tracking branches, the working tree is left untouched until checkout */
+            LOGGER.fine( "Fetching" );
+            boolean shallow = CliGit.isShallow( repo.getDirectory() );
+            if( shallow || CliGit.isBlobless( repo.getDirectory() ) ) {
+                CliGit.fetch( local );
+            } else {
+                git.fetch().setRemote( Constants.DEFAULT_REMOTE_NAME ).call();
+            }
+
+            /* The walk must reach the current commit, deepen the history if it is beyond the shallow boundary */
+            if( shallow && !CliGit.deepenUntil( local, commitId ) ) {
+                throw new IOException( String.format( "The commit %s is not in %s", commitId, local ) );
+            }
 
             w = new RevWalk( repo );
 
-            ObjectId ohead = repo.resolve( "HEAD" );
+            ObjectId ohead = branch != null ? repo.resolve( Constants.R_REMOTES + Constants.DEFAULT_REMOTE_NAME + "/" + branch ) : null;
+            if( ohead == null ) {
+                LOGGER.fine( String.format( "No remote tracking branch for %s, using HEAD", branch ) );
+                ohead = repo.resolve( Constants.HEAD );
+            }
+            LOGGER.fine( String.format( "Walking from %s", ohead ) );
             ObjectId ostart = repo.resolve( commitId );
             RevCommit commithead = w.parseCommit( ohead );
             RevCommit commit = w.parseCommit( ostart );
 
             LOGGER.fine( String.format ("Commit start: %s", commitId ) );
 
+            /* Look the next commit up in the first-parent index, if the current commit is on the chain */
+            if( branch != null ) {
+                FirstParentIndex index = FirstParentIndex.get( workspace, repo.getDirectory(), branch );
+                index.update( repo, commithead );
+                if( index.contains( commit ) ) {
+                    ObjectId onext = index.next( commit );
+                    while( onext != null && next.size() < limit ) {
+                        next.add( w.parseCommit( onext ) );
+                        onext = index.next( onext );
+                    }
+                    LOGGER.fine( "Next from index is " + ( next.isEmpty() ? "N/A" : next.getFirst().getName() ) );
+                    return next;
+                }
+            }
+
             w.markStart( commithead );
 
 
@@ -70,17 +132,18 @@ public class ResolveNextCommit implements FilePath.FileCallable<RevCommit> {
                     continue;
                 }
 
-                next = c;
+                /* Newest first, keep the oldest */
+                next.addFirst( c );
+                if( next.size() > limit ) {
+                    next.removeLast();
+                }
             }
-            LOGGER.fine( "Next is " + ( next == null ? "N/A" : next.getName() ) );
+            LOGGER.fine( "Next is " + ( next.isEmpty() ? "N/A" : next.getFirst().getName() ) );
         } catch (GitAPIException ex) {
             throw new IOException(ex);
         } catch (IOException iox) {
             throw iox;
         } finally {
-            if(repo != null) {
-                repo.close();
-            }
             if(w != null) {
                 w.close();
                 w.dispose();
@@ -89,6 +152,7 @@ public class ResolveNextCommit implements FilePath.FileCallable<RevCommit> {
             if(git != null) {
                 git.close();
             }
+            RepositoryPool.release( repo );
         }
 
 
@@ -0,0 +1,102 @@
+package net.praqma.jenkins.configrotator.scm.git;
+
+import org.eclipse.jgit.revwalk.RevCommit;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The compact result of resolving a commit for a single component on the agent.
+ * Only the name, the commit id and the commit time is sent back to the master.
+ */
+public class ResolvedCommit implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String name;
+    private final String commitId;
+    private final int commitTime;
+    private final IOException failure;
+
+    /**
+     * The commits following this one, when more than the next commit was resolved
+     */
+    private final List<ResolvedCommit> later = new ArrayList<>();
+
+    private ResolvedCommit( String name, String commitId, int commitTime, IOException failure ) {
+        this.name = name;
+        this.commitId = commitId;
+        this.commitTime = commitTime;
+        this.failure = failure;
+    }
+
+    public ResolvedCommit( String name, RevCommit commit ) {
+        this( name, commit != null ? commit.getName() : null, commit != null ? commit.getCommitTime() : 0, null );
+    }
+
+    /**
+     * @param name the name of the component
+     * @param commits the commits, oldest first
+     */
+    public ResolvedCommit( String name, List<RevCommit> commits ) {
+        this( name, commits.isEmpty() ? null : commits.get( 0 ) );
+        for( int i = 1; i < commits.size(); ++i ) {
+            later.add( new ResolvedCommit( name, commits.get( i ) ) );
+        }
+    }
+
+    public static ResolvedCommit failed( String name, Exception e ) {
+        return new ResolvedCommit( name, null, 0, e instanceof IOException ? (IOException) e : new IOException( e ) );
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the commit id, or null if no commit was found
+     */
+    public String getCommitId() {
+        return commitId;
+    }
+
+    /**
+     * @return the commit time in seconds since the epoch
+     */
+    public int getCommitTime() {
+        return commitTime;
+    }
+
+    public boolean isFound() {
+        return commitId != null;
+    }
+
+    /**
+     * @return this commit and the commits following it, oldest first. Empty if no commit was found
+     */
+    public List<ResolvedCommit> getPending() {
+        if( !isFound() ) {
+            return Collections.emptyList();
+        }
+        List<ResolvedCommit> pending = new ArrayList<>( later.size() + 1 );
+        pending.add( this );
+        pending.addAll( later );
+        return pending;
+    }
+
+    public boolean isFailed() {
+        return failure != null;
+    }
+
+    public IOException getFailure() {
+        return failure;
+    }
+
+    @Override
+    public String toString() {
+        return isFailed() ? name + ": failed" : name + ": " + ( commitId == null ? "N/A" : commitId + "@" + commitTime );
+    }
+}
@@ -0,0 +1,44 @@
+package net.praqma.jenkins.configrotator.strategy;
+
+import hudson.Extension;
+import hudson.model.Descriptor;
+import net.praqma.jenkins.configrotator.RotationStrategy;
+import org.kohsuke.stapler.DataBoundConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Advances the component that advanced longest ago, the one with the oldest version if several did as long ago.
+ */
+public class LeastRecentlyRotatedStrategy extends RotationStrategy {
+
+    @DataBoundConstructor
+    public LeastRecentlyRotatedStrategy() { }
+
+    @Override
+    public Candidate choose( List<Candidate> candidates, History history ) {
+        List<Candidate> least = new ArrayList<>();
+        int since = -1;
+        for( Candidate candidate : candidates ) {
+            int s = history.getSince( candidate.getComponent() );
+            if( s > since ) {
+                since = s;
+                least.clear();
+            }
+            if( s == since ) {
+                least.add( candidate );
+            }
+        }
+        return oldest( least );
+    }
+
+    @Extension
+    public static final class DescriptorImpl extends Descriptor<RotationStrategy> {
+
+        @Override
+        public String getDisplayName() {
+            return "Least recently rotated";
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package net.praqma.jenkins.configrotator.strategy;
+
+import hudson.Extension;
+import hudson.model.Descriptor;
+import net.praqma.jenkins.configrotator.RotationStrategy;
+import org.kohsuke.stapler.DataBoundConstructor;
+
+import java.util.List;
+
+/**
+ * Advances the component with the oldest pending version, the first component if several are as old.
+ */
+public class OldestFirstStrategy extends RotationStrategy {
+
+    @DataBoundConstructor
+    public OldestFirstStrategy() { }
+
+    @Override
+    public Candidate choose( List<Candidate> candidates, History history ) {
+        return oldest( candidates );
+    }
+
+    @Extension
+    public static final class DescriptorImpl extends Descriptor<RotationStrategy> {
+
+        @Override
+        public String getDisplayName() {
+            return "Oldest version first";
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package net.praqma.jenkins.configrotator.strategy;
+
+import hudson.Extension;
+import hudson.model.Descriptor;
+import net.praqma.jenkins.configrotator.RotationStrategy;
+import org.kohsuke.stapler.DataBoundConstructor;
+
+import java.util.List;
+
+/**
+ * Advances the components in turn, the first one with a pending version after the component advanced last.
+ */
+public class RoundRobinStrategy extends RotationStrategy {
+
+    @DataBoundConstructor
+    public RoundRobinStrategy() { }
+
+    @Override
+    public Candidate choose( List<Candidate> candidates, History history ) {
+        for( Candidate candidate : candidates ) {
+            if( candidate.getComponent() > history.getLast() ) {
+                return candidate;
+            }
+        }
+        /* Start over from the first component */
+        return candidates.get( 0 );
+    }
+
+    @Extension
+    public static final class DescriptorImpl extends Descriptor<RotationStrategy> {
+
+        @Override
+        public String getDisplayName() {
+            return "Round-robin";
+        }
+    }
+}
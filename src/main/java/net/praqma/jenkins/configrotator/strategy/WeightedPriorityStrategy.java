@@ -0,0 +1,95 @@
+package net.praqma.jenkins.configrotator.strategy;
+
+import hudson.Extension;
+import hudson.model.Descriptor;
+import hudson.util.FormValidation;
+import net.praqma.jenkins.configrotator.RotationStrategy;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.QueryParameter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Advances the components in proportion to their weights, one weight per target. The component that advanced least
+ * for its weight goes first, the one with the oldest version if several did as little.
+ * <p>
+ * The weights are positive numbers separated by commas, in the order of the targets. Targets without a weight have
+ * the weight 1.
+ * </p>
+ */
+public class WeightedPriorityStrategy extends RotationStrategy {
+
+    private final String weights;
+
+    @DataBoundConstructor
+    public WeightedPriorityStrategy( String weights ) {
+        this.weights = weights;
+    }
+
+    public String getWeights() {
+        return weights;
+    }
+
+    /**
+     * @param component the index of the component
+     * @return the weight of the component
+     */
+    public double getWeight( int component ) {
+        if( weights == null ) {
+            return 1;
+        }
+        String[] parts = weights.split( "," );
+        if( component >= parts.length ) {
+            return 1;
+        }
+        try {
+            double weight = Double.parseDouble( parts[component].trim() );
+            return weight > 0 ? weight : 1;
+        } catch( NumberFormatException e ) {
+            return 1;
+        }
+    }
+
+    @Override
+    public Candidate choose( List<Candidate> candidates, History history ) {
+        List<Candidate> least = new ArrayList<>();
+        double share = Double.MAX_VALUE;
+        for( Candidate candidate : candidates ) {
+            double s = ( history.getCount( candidate.getComponent() ) + 1 ) / getWeight( candidate.getComponent() );
+            if( s < share ) {
+                share = s;
+                least.clear();
+            }
+            if( s == share ) {
+                least.add( candidate );
+            }
+        }
+        return oldest( least );
+    }
+
+    @Extension
+    public static final class DescriptorImpl extends Descriptor<RotationStrategy> {
+
+        @Override
+        public String getDisplayName() {
+            return "Weighted priority";
+        }
+
+        public FormValidation doCheckWeights( @QueryParameter String value ) {
+            if( value == null || value.trim().isEmpty() ) {
+                return FormValidation.ok();
+            }
+            for( String part : value.split( "," ) ) {
+                try {
+                    if( Double.parseDouble( part.trim() ) <= 0 ) {
+                        return FormValidation.error( "The weights must be positive" );
+                    }
+                } catch( NumberFormatException e ) {
+                    return FormValidation.error( "Not a number: " + part.trim() );
+                }
+            }
+            return FormValidation.ok();
+        }
+    }
+}
@@ -7,6 +7,19 @@ import net.praqma.jenkins.configrotator.scm.ConfigRotatorChangeLogEntry;
 import java.util.List;
 
 public class FakeConfiguration extends AbstractConfiguration<FakeConfigurationComponent> {
+
+    /**
+     * @param names the names of the components, in order
+     * @return a configuration of components that are not fixed
+     */
+    public static FakeConfiguration of( String... names ) {
+        FakeConfiguration configuration = new FakeConfiguration();
+        for( String name : names ) {
+            configuration.getList().add( new FakeConfigurationComponent( false, name ) );
+        }
+        return configuration;
+    }
+
     @Override
     public List<ConfigRotatorChangeLogEntry> difference( FakeConfigurationComponent component, FakeConfigurationComponent other ) throws ConfigurationRotatorException {
         return null;  //To change body of implemented methods use File | Settings | File Templates.
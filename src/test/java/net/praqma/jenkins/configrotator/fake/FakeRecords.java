@@ -0,0 +1,21 @@
+package net.praqma.jenkins.configrotator.fake;
+
+import net.praqma.jenkins.configrotator.FeedStore;
+
+import java.util.Date;
+
+/**
+ * Feed entries for the tests, entry i is about build i and updated at i seconds.
+ */
+public final class FakeRecords {
+
+    private FakeRecords() { }
+
+    public static FeedStore.Record record( int i ) {
+        return record( i, "COMPATIBLE" );
+    }
+
+    public static FeedStore.Record record( int i, String result ) {
+        return new FeedStore.Record( "job#" + i, "Entry " + i, new Date( i * 1000L ), "summary", "author", "content", result );
+    }
+}
@@ -0,0 +1,124 @@
+package net.praqma.jenkins.configrotator.unit;
+
+import hudson.model.AbstractProject;
+import hudson.model.FreeStyleProject;
+import java.util.ArrayList;
+import java.util.List;
+import net.praqma.jenkins.configrotator.AbstractConfiguration;
+import net.praqma.jenkins.configrotator.Bisection;
+import net.praqma.jenkins.configrotator.ConfigurationRotatorBuildAction;
+import net.praqma.jenkins.configrotator.fake.FakeConfiguration;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class BisectionTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ConfigurationRotatorBuildAction result( AbstractConfiguration configuration, boolean compatible, int number ) {
+        ConfigurationRotatorBuildAction action = Mockito.mock( ConfigurationRotatorBuildAction.class );
+        Mockito.when( action.getConfigurationWithOutCast() ).thenReturn( configuration );
+        Mockito.when( action.isCompatible() ).thenReturn( compatible );
+        Mockito.when( action.getNumber() ).thenReturn( number );
+        return action;
+    }
+
+    @Test
+    public void testIsolateFirstIncompatibleChange() throws Exception {
+        FreeStyleProject project = Mockito.mock( FreeStyleProject.class );
+        Mockito.when( project.getFullName() ).thenReturn( "bisect" );
+        Mockito.when( project.getRootDir() ).thenReturn( folder.getRoot() );
+
+        FakeConfiguration base = FakeConfiguration.of( "a1", "b1" );
+        List<AbstractConfiguration> batch = new ArrayList<>();
+        batch.add( FakeConfiguration.of( "a2", "b1" ) );
+        batch.add( FakeConfiguration.of( "a2", "b2" ) );
+        batch.add( FakeConfiguration.of( "a3", "b2" ) );
+        batch.add( FakeConfiguration.of( "a3", "b3" ) );
+
+        Bisection bisection = Bisection.get( project );
+        AbstractConfiguration tip = bisection.start( project, base, batch, result( base, true, 1 ) );
+        assertThat( tip, sameInstance( batch.get( 3 ) ) );
+        assertThat( tip.getChangedComponents().size(), is( 2 ) );
+
+        /* The batch is incompatible, the second change is compatible and the third is not */
+        AbstractConfiguration next = bisection.next( project, result( tip, false, 2 ), System.out );
+        assertThat( next, sameInstance( batch.get( 1 ) ) );
+
+        /* Described against the base, the last compatible step, not the batch built before it */
+        String description = next.getDescription( result( tip, false, 2 ) );
+        assertThat( description, containsString( "fake component[a1]<br/>fake component[a2]" ) );
+        assertThat( description, containsString( "fake component[b1]<br/>fake component[b2]" ) );
+        next = bisection.next( project, result( next, true, 3 ), System.out );
+        assertThat( next, sameInstance( batch.get( 2 ) ) );
+        assertThat( bisection.next( project, result( next, false, 4 ), System.out ), nullValue() );
+
+        assertThat( bisection.isPending(), is( false ) );
+        assertThat( bisection.getBase( next ), sameInstance( tip ) );
+    }
+
+    @Test
+    public void testRetestUndetermined() throws Exception {
+        FreeStyleProject project = Mockito.mock( FreeStyleProject.class );
+        Mockito.when( project.getFullName() ).thenReturn( "retest" );
+        Mockito.when( project.getRootDir() ).thenReturn( folder.getRoot() );
+
+        FakeConfiguration base = FakeConfiguration.of( "a1", "b1" );
+        List<AbstractConfiguration> batch = new ArrayList<>();
+        batch.add( FakeConfiguration.of( "a2", "b1" ) );
+        batch.add( FakeConfiguration.of( "a2", "b2" ) );
+
+        Bisection bisection = Bisection.get( project );
+        ConfigurationRotatorBuildAction last = result( base, true, 1 );
+        AbstractConfiguration tip = bisection.start( project, base, batch, last );
+
+        /* No new result, the batch is tested again */
+        assertThat( bisection.next( project, last, System.out ), sameInstance( tip ) );
+        assertThat( bisection.next( project, result( tip, true, 2 ), System.out ), nullValue() );
+        assertThat( bisection.getBase( tip ), sameInstance( tip ) );
+    }
+
+    @Test
+    public void testBatchIsForgottenWhenDeleted() throws Exception {
+        FreeStyleProject project = Mockito.mock( FreeStyleProject.class );
+        Mockito.when( project.getFullName() ).thenReturn( "deleted" );
+        Mockito.when( project.getRootDir() ).thenReturn( folder.newFolder( "deleted" ) );
+
+        FakeConfiguration base = FakeConfiguration.of( "a1" );
+        List<AbstractConfiguration> batch = new ArrayList<>();
+        batch.add( FakeConfiguration.of( "a2" ) );
+        batch.add( FakeConfiguration.of( "a3" ) );
+        Bisection.get( project ).start( project, base, batch, result( base, true, 1 ) );
+        assertThat( Bisection.get( project ).isPending(), is( true ) );
+
+        /* A new job by the same name starts afresh */
+        new Bisection.ItemListenerImpl().onDeleted( project );
+        FreeStyleProject recreated = Mockito.mock( FreeStyleProject.class );
+        Mockito.when( recreated.getFullName() ).thenReturn( "deleted" );
+        Mockito.when( recreated.getRootDir() ).thenReturn( folder.newFolder( "recreated" ) );
+        assertThat( Bisection.get( recreated ).isPending(), is( false ) );
+    }
+
+    @Test
+    public void testBatchFollowsRename() throws Exception {
+        FreeStyleProject project = Mockito.mock( FreeStyleProject.class );
+        Mockito.when( project.getFullName() ).thenReturn( "renamed" );
+        Mockito.when( project.getRootDir() ).thenReturn( folder.newFolder( "renamed" ) );
+        Bisection bisection = Bisection.get( project );
+
+        new Bisection.ItemListenerImpl().onLocationChanged( project, "renamed", "renamed-again" );
+        FreeStyleProject renamed = Mockito.mock( FreeStyleProject.class );
+        Mockito.when( renamed.getFullName() ).thenReturn( "renamed-again" );
+        Mockito.when( renamed.getRootDir() ).thenReturn( folder.newFolder( "renamed-again" ) );
+        assertThat( Bisection.get( renamed ), sameInstance( bisection ) );
+    }
+}
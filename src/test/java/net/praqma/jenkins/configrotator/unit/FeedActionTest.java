@@ -0,0 +1,109 @@
+package net.praqma.jenkins.configrotator.unit;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import net.praqma.jenkins.configrotator.ConfigurationRotatorFeedAction;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class FeedActionTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static class Output extends ServletOutputStream {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        @Override
+        public void write( int b ) throws IOException {
+            bytes.write( b );
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener( WriteListener listener ) {
+        }
+    }
+
+    private File feed() throws IOException {
+        File file = folder.newFile( "component.xml" );
+        FileUtils.writeStringToFile( file, "<feed>component</feed>", "UTF-8" );
+        return file;
+    }
+
+    private String etag( File file ) throws IOException {
+        StaplerRequest req = Mockito.mock( StaplerRequest.class );
+        Mockito.when( req.getDateHeader( "If-Modified-Since" ) ).thenReturn( -1L );
+        StaplerResponse rsp = Mockito.mock( StaplerResponse.class );
+        Mockito.when( rsp.getOutputStream() ).thenReturn( new Output() );
+        ConfigurationRotatorFeedAction.serveFeed( req, rsp, file );
+
+        ArgumentCaptor<String> etag = ArgumentCaptor.forClass( String.class );
+        Mockito.verify( rsp ).setHeader( Mockito.eq( "ETag" ), etag.capture() );
+        Mockito.verify( rsp ).setHeader( "Content-Length", Long.toString( file.length() ) );
+        return etag.getValue();
+    }
+
+    @Test
+    public void testNotModified() throws Exception {
+        File file = feed();
+        String etag = etag( file );
+
+        StaplerRequest req = Mockito.mock( StaplerRequest.class );
+        Mockito.when( req.getHeader( "If-None-Match" ) ).thenReturn( etag );
+        StaplerResponse rsp = Mockito.mock( StaplerResponse.class );
+        ConfigurationRotatorFeedAction.serveFeed( req, rsp, file );
+
+        Mockito.verify( rsp ).setStatus( HttpServletResponse.SC_NOT_MODIFIED );
+        Mockito.verify( rsp, Mockito.never() ).getOutputStream();
+    }
+
+    @Test
+    public void testFeedsWrittenWithinASecondDiffer() throws Exception {
+        File file = feed();
+        assertTrue( file.setLastModified( 1500000000100L ) );
+        String etag = etag( file );
+
+        /* Written again, just as long, in the same second */
+        assertTrue( file.setLastModified( 1500000000200L ) );
+        assertThat( etag( file ).equals( etag ), is( false ) );
+    }
+
+    @Test
+    public void testGzip() throws Exception {
+        File file = feed();
+
+        StaplerRequest req = Mockito.mock( StaplerRequest.class );
+        Mockito.when( req.getHeader( "Accept-Encoding" ) ).thenReturn( "deflate, gzip;q=0.8" );
+        Mockito.when( req.getDateHeader( "If-Modified-Since" ) ).thenReturn( -1L );
+        StaplerResponse rsp = Mockito.mock( StaplerResponse.class );
+        Output out = new Output();
+        Mockito.when( rsp.getOutputStream() ).thenReturn( out );
+        ConfigurationRotatorFeedAction.serveFeed( req, rsp, file );
+
+        Mockito.verify( rsp ).setHeader( "Content-Encoding", "gzip" );
+        String content = IOUtils.toString( new GZIPInputStream( new ByteArrayInputStream( out.bytes.toByteArray() ) ), "UTF-8" );
+        assertThat( content, is( "<feed>component</feed>" ) );
+    }
+}
@@ -0,0 +1,46 @@
+package net.praqma.jenkins.configrotator.unit;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Date;
+import net.praqma.jenkins.configrotator.FeedIndex;
+import net.praqma.jenkins.configrotator.FeedStore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static net.praqma.jenkins.configrotator.fake.FakeRecords.record;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class FeedIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testWrittenFeedsAreIndexed() throws Exception {
+        File feedFile = new File( folder.getRoot(), "component.xml" );
+        FeedStore.append( feedFile, "component", "id", record( 1, "COMPATIBLE" ) );
+        FeedStore.append( feedFile, "component", "id", Arrays.asList( record( 2, "COMPATIBLE" ), record( 3, "INCOMPATIBLE" ) ) );
+
+        FeedIndex.Info info = FeedIndex.get( folder.getRoot() ).getInfo( feedFile );
+        assertThat( info.getTitle(), is( "component" ) );
+        assertThat( info.getCount(), is( 3 ) );
+        assertThat( info.getUpdated(), is( new Date( 3000 ) ) );
+        assertThat( info.getResult(), is( "INCOMPATIBLE" ) );
+
+        /* Written once, after the feeds are written */
+        File index = new File( folder.getRoot(), FeedIndex.FILE_NAME );
+        assertFalse( index.exists() );
+        FeedIndex.get( folder.getRoot() ).flush();
+        assertTrue( index.exists() );
+
+        FeedStore.rebuild( feedFile, "component", "id", Arrays.asList( record( 3, "INCOMPATIBLE" ), record( 4, "COMPATIBLE" ) ) );
+        info = FeedIndex.get( folder.getRoot() ).getInfo( feedFile );
+        assertThat( info.getCount(), is( 4 ) );
+        assertThat( info.getResult(), is( "COMPATIBLE" ) );
+    }
+}
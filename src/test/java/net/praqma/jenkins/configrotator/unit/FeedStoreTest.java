@@ -0,0 +1,143 @@
+package net.praqma.jenkins.configrotator.unit;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import net.praqma.jenkins.configrotator.FeedIndex;
+import net.praqma.jenkins.configrotator.FeedStore;
+import net.praqma.util.xml.feed.AtomPublisher;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static net.praqma.jenkins.configrotator.fake.FakeRecords.record;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class FeedStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testAppendKeepsTheLastEntries() throws Exception {
+        File feedFile = new File( folder.getRoot(), "component.xml" );
+        int count = FeedStore.ENTRIES * 2 + 5;
+        for( int i = 1; i <= count; i++ ) {
+            FeedStore.append( feedFile, "component", "id", record( i ) );
+        }
+
+        List<FeedStore.Record> last = FeedStore.getLast( feedFile );
+        assertThat( last.size(), is( FeedStore.ENTRIES ) );
+        assertThat( last.get( last.size() - 1 ).getId(), is( "job#" + count ) );
+        assertThat( last.get( 0 ).getId(), is( "job#" + ( count - FeedStore.ENTRIES + 1 ) ) );
+
+        assertThat( FeedStore.getSegments( feedFile ).list().length, is( 3 ) );
+        assertTrue( FileUtils.readFileToString( feedFile, "UTF-8" ).contains( "job#" + count ) );
+    }
+
+    @Test
+    public void testLegacyFeedIsArchived() throws Exception {
+        File feedFile = new File( folder.getRoot(), "legacy.xml" );
+        FileUtils.writeStringToFile( feedFile, "<feed/>", "UTF-8" );
+
+        FeedStore.append( feedFile, "legacy", "id", record( 1 ) );
+
+        File archive = new File( FeedStore.getSegments( feedFile ), FeedStore.ARCHIVE );
+        assertThat( FileUtils.readFileToString( archive, "UTF-8" ), is( "<feed/>" ) );
+        assertThat( FeedStore.getLast( feedFile ).size(), is( 1 ) );
+    }
+
+    @Test
+    public void testLegacyEntriesAreImported() throws Exception {
+        File feedFile = new File( folder.getRoot(), "imported.xml" );
+        List<FeedStore.Record> legacy = new ArrayList<>();
+        for( int i = 1; i <= FeedStore.ENTRIES + 10; i++ ) {
+            legacy.add( record( i ) );
+        }
+        FileUtils.writeStringToFile( feedFile, FeedStore.render( "imported", "id", legacy ).getXML( new AtomPublisher() ), "UTF-8" );
+
+        FeedStore.append( feedFile, "imported", "id", record( FeedStore.ENTRIES + 11 ) );
+
+        List<FeedStore.Record> last = FeedStore.getLast( feedFile );
+        assertThat( last.size(), is( FeedStore.ENTRIES ) );
+        assertThat( last.get( 0 ).getId(), is( "job#12" ) );
+        assertThat( last.get( last.size() - 1 ).getId(), is( "job#" + ( FeedStore.ENTRIES + 11 ) ) );
+        assertTrue( new File( FeedStore.getSegments( feedFile ), FeedStore.ARCHIVE ).exists() );
+        assertThat( FeedIndex.get( folder.getRoot() ).getInfo( feedFile ).getCount(), is( FeedStore.ENTRIES + 11 ) );
+    }
+
+    @Test
+    public void testPartlyWrittenEntryIsCutOff() throws Exception {
+        File feedFile = new File( folder.getRoot(), "cut.xml" );
+        FeedStore.rebuild( feedFile, "cut", "id", Collections.singletonList( record( 1 ) ) );
+
+        File segment = new File( FeedStore.getSegments( feedFile ), "00000001.seg" );
+        FileUtils.writeByteArrayToFile( segment, new byte[]{ 0, 0, 0, 42, 'j' }, true );
+
+        FeedStore.append( feedFile, "cut", "id", record( 2 ) );
+
+        List<FeedStore.Record> last = FeedStore.getLast( feedFile );
+        assertThat( last.size(), is( 2 ) );
+        assertThat( last.get( 1 ).getId(), is( "job#2" ) );
+        assertFalse( new File( folder.getRoot(), "cut.xml.tmp" ).exists() );
+    }
+
+    @Test
+    public void testRebuildKeepsTheHealthySegments() throws Exception {
+        File feedFile = new File( folder.getRoot(), "rebuilt.xml" );
+        int count = FeedStore.ENTRIES * 2 + 5;
+        List<FeedStore.Record> records = new ArrayList<>();
+        for( int i = 1; i <= count; i++ ) {
+            records.add( record( i ) );
+        }
+        FeedStore.append( feedFile, "rebuilt", "id", records );
+
+        /* The second segment is cut in the middle of an entry */
+        File segments = FeedStore.getSegments( feedFile );
+        File first = new File( segments, "00000001.seg" );
+        File second = new File( segments, "00000002.seg" );
+        byte[] healthy = FileUtils.readFileToByteArray( first );
+        try( RandomAccessFile cut = new RandomAccessFile( second, "rw" ) ) {
+            cut.setLength( second.length() / 2 + 1 );
+        }
+
+        /* The builds since the damage, some of them still in the feed */
+        long intact = FeedStore.getIntact( feedFile ).getTime() / 1000;
+        assertTrue( intact > FeedStore.ENTRIES && intact < FeedStore.ENTRIES * 2 );
+        List<FeedStore.Record> rebuilt = new ArrayList<>();
+        for( int i = (int) intact + 1; i <= count; i++ ) {
+            rebuilt.add( record( i ) );
+        }
+        FeedStore.rebuild( feedFile, "rebuilt", "id", rebuilt );
+
+        assertThat( FileUtils.readFileToByteArray( first ), is( healthy ) );
+        assertTrue( new File( segments, "00000002.seg" + FeedStore.DAMAGED ).exists() );
+        assertFalse( new File( folder.getRoot(), segments.getName() + ".rebuilt" ).exists() );
+        assertFalse( new File( folder.getRoot(), segments.getName() + ".replaced" ).exists() );
+
+        List<FeedStore.Record> last = FeedStore.getLast( feedFile );
+        assertThat( last.size(), is( FeedStore.ENTRIES ) );
+        assertThat( last.get( 0 ).getId(), is( "job#" + ( count - FeedStore.ENTRIES + 1 ) ) );
+        assertThat( last.get( last.size() - 1 ).getId(), is( "job#" + count ) );
+        assertThat( FeedIndex.get( folder.getRoot() ).getInfo( feedFile ).getCount(), is( count ) );
+    }
+
+    @Test
+    public void testSegmentsReplacedArePutBack() throws Exception {
+        File feedFile = new File( folder.getRoot(), "crashed.xml" );
+        FeedStore.append( feedFile, "crashed", "id", record( 1 ) );
+
+        /* Jenkins stopped between moving the segments aside and moving the rebuilt ones in */
+        File segments = FeedStore.getSegments( feedFile );
+        assertTrue( segments.renameTo( new File( folder.getRoot(), segments.getName() + ".replaced" ) ) );
+
+        FeedStore.append( feedFile, "crashed", "id", record( 2 ) );
+        assertThat( FeedStore.getLast( feedFile ).size(), is( 2 ) );
+    }
+}
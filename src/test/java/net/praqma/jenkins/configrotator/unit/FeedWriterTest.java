@@ -0,0 +1,128 @@
+package net.praqma.jenkins.configrotator.unit;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import net.praqma.jenkins.configrotator.FeedStore;
+import net.praqma.jenkins.configrotator.FeedWriter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static net.praqma.jenkins.configrotator.fake.FakeRecords.record;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class FeedWriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Runs the tasks when asked to
+     */
+    private static class Deferred implements Executor {
+        private final List<Runnable> tasks = new ArrayList<>();
+
+        @Override
+        public void execute( Runnable command ) {
+            tasks.add( command );
+        }
+
+        void runAll() {
+            while( !tasks.isEmpty() ) {
+                tasks.remove( 0 ).run();
+            }
+        }
+    }
+
+    @Test
+    public void testEntriesAreWrittenTogether() throws Exception {
+        File journal = new File( folder.getRoot(), FeedWriter.JOURNAL );
+        File a = new File( folder.getRoot(), "a.xml" );
+        File b = new File( folder.getRoot(), "b.xml" );
+        Deferred executor = new Deferred();
+        FeedWriter writer = new FeedWriter( journal, 10, executor );
+
+        writer.submit( a, "a", "a", record( 1 ) );
+        writer.submit( b, "b", "b", record( 2 ) );
+        writer.submit( a, "a", "a", record( 3 ) );
+
+        assertThat( writer.getQueueDepth(), is( 3 ) );
+        assertThat( executor.tasks.size(), is( 1 ) );
+        assertFalse( a.exists() );
+        assertTrue( journal.exists() );
+
+        executor.runAll();
+
+        assertThat( writer.getQueueDepth(), is( 0 ) );
+        assertThat( FeedStore.getLast( a ).size(), is( 2 ) );
+        assertThat( FeedStore.getLast( b ).size(), is( 1 ) );
+        assertFalse( journal.exists() );
+    }
+
+    @Test
+    public void testFullQueueWritesDirectly() throws Exception {
+        File feed = new File( folder.getRoot(), "feed.xml" );
+        Deferred executor = new Deferred();
+        FeedWriter writer = new FeedWriter( new File( folder.getRoot(), FeedWriter.JOURNAL ), 1, executor );
+
+        writer.submit( feed, "feed", "feed", record( 1 ) );
+        writer.submit( feed, "feed", "feed", record( 2 ) );
+
+        /* The entry queued is written first */
+        assertThat( writer.getQueueDepth(), is( 0 ) );
+        List<FeedStore.Record> records = FeedStore.getLast( feed );
+        assertThat( records.size(), is( 2 ) );
+        assertThat( records.get( 0 ).getId(), is( "job#1" ) );
+        assertThat( records.get( 1 ).getId(), is( "job#2" ) );
+
+        executor.runAll();
+        assertThat( FeedStore.getLast( feed ).size(), is( 2 ) );
+    }
+
+    @Test
+    public void testJournalIsCompacted() throws Exception {
+        File journal = new File( folder.getRoot(), FeedWriter.JOURNAL );
+        File a = new File( folder.getRoot(), "a.xml" );
+        File b = new File( folder.getRoot(), "b.xml" );
+        FeedWriter writer = new FeedWriter( journal, 200, new Deferred() );
+
+        for( int i = 1; i <= 160; ++i ) {
+            writer.submit( a, "a", "a", record( i ) );
+        }
+        for( int i = 161; i <= 200; ++i ) {
+            writer.submit( b, "b", "b", record( i ) );
+        }
+
+        /* The queue is full, the entries of a are written and only those of b are left in the journal */
+        writer.submit( a, "a", "a", record( 201 ) );
+        assertThat( writer.getQueueDepth(), is( 40 ) );
+        assertThat( new FeedWriter( journal, 200, new Deferred() ).replay(), is( 40 ) );
+    }
+
+    @Test
+    public void testJournalIsReplayed() throws Exception {
+        File journal = new File( folder.getRoot(), FeedWriter.JOURNAL );
+        File feed = new File( folder.getRoot(), "feed.xml" );
+
+        /* Entries queued, and one of them written, before a restart */
+        FeedWriter before = new FeedWriter( journal, 10, new Deferred() );
+        before.submit( feed, "feed", "feed", record( 1 ) );
+        before.submit( feed, "feed", "feed", record( 2 ) );
+        FeedStore.append( feed, "feed", "feed", record( 1 ) );
+
+        Deferred executor = new Deferred();
+        FeedWriter after = new FeedWriter( journal, 10, executor );
+        assertThat( after.replay(), is( 1 ) );
+        executor.runAll();
+
+        List<FeedStore.Record> records = FeedStore.getLast( feed );
+        assertThat( records.size(), is( 2 ) );
+        assertThat( records.get( 1 ).getId(), is( "job#2" ) );
+        assertFalse( journal.exists() );
+    }
+}
@@ -0,0 +1,173 @@
+package net.praqma.jenkins.configrotator.unit;
+
+import hudson.FilePath;
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.TaskListener;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import jenkins.model.Jenkins;
+import net.praqma.jenkins.configrotator.AbstractConfiguration;
+import net.praqma.jenkins.configrotator.AbstractConfigurationRotatorSCM;
+import net.praqma.jenkins.configrotator.ConfigurationRotator.ResultType;
+import net.praqma.jenkins.configrotator.ConfigurationRotatorBuildAction;
+import net.praqma.jenkins.configrotator.FingerprintIndex;
+import net.praqma.jenkins.configrotator.RotationStrategy;
+import net.praqma.jenkins.configrotator.fake.FakeConfiguration;
+import net.praqma.jenkins.configrotator.fake.FakeSCM;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest( { Jenkins.class, AbstractBuild.class, FreeStyleBuild.class } )
+public class FingerprintIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File root;
+    private FreeStyleProject project;
+    private TaskListener listener;
+
+    @Before
+    public void initialize() throws Exception {
+        root = folder.newFolder( "jenkins" );
+        Jenkins jenkins = PowerMockito.mock( Jenkins.class );
+        PowerMockito.when( jenkins.getRootDir() ).thenReturn( root );
+        PowerMockito.mockStatic( Jenkins.class );
+        PowerMockito.when( Jenkins.getInstance() ).thenReturn( jenkins );
+
+        project = Mockito.mock( FreeStyleProject.class );
+        Mockito.when( project.getFullName() ).thenReturn( "job" );
+
+        listener = Mockito.mock( TaskListener.class );
+        Mockito.when( listener.getLogger() ).thenReturn( System.out );
+    }
+
+    private void record( int number, ResultType result, FakeConfiguration configuration ) {
+        FreeStyleBuild build = PowerMockito.mock( FreeStyleBuild.class );
+        PowerMockito.when( build.getProject() ).thenReturn( project );
+        Mockito.when( build.getNumber() ).thenReturn( number );
+        ConfigurationRotatorBuildAction action = Mockito.mock( ConfigurationRotatorBuildAction.class );
+        Mockito.when( action.getResult() ).thenReturn( result );
+        Mockito.when( action.isDetermined() ).thenReturn( result == ResultType.COMPATIBLE || result == ResultType.INCOMPATIBLE );
+        Mockito.when( action.getConfigurationWithOutCast() ).thenReturn( configuration );
+        Mockito.when( build.getAction( ConfigurationRotatorBuildAction.class ) ).thenReturn( action );
+        FingerprintIndex.record( build );
+    }
+
+    /**
+     * Rotates through a list of configurations, without a queue.
+     */
+    private static class ListSCM extends FakeSCM {
+        private final List<AbstractConfiguration> configurations = new ArrayList<>();
+
+        private ListSCM( AbstractConfiguration... configurations ) {
+            for( AbstractConfiguration configuration : configurations ) {
+                this.configurations.add( configuration );
+            }
+        }
+
+        @Override
+        public AbstractConfiguration nextConfiguration( TaskListener listener, AbstractConfiguration configuration, FilePath workspace, RotationStrategy.History history ) {
+            int i = configurations.indexOf( configuration );
+            return i + 1 < configurations.size() ? configurations.get( i + 1 ) : null;
+        }
+
+        @Override
+        public AbstractConfiguration takeConfiguration( AbstractProject<?, ?> project, TaskListener listener, AbstractConfiguration configuration, FilePath workspace ) {
+            return nextConfiguration( listener, configuration, workspace, null );
+        }
+
+        @Override
+        public RotationStrategy.History getHistory( AbstractProject<?, ?> project, AbstractConfiguration configuration ) {
+            return null;
+        }
+    }
+
+    @Test
+    public void testRecordAndLookup() throws Exception {
+        record( 1, ResultType.COMPATIBLE, FakeConfiguration.of( "a1", "b1" ) );
+        record( 2, ResultType.INCOMPATIBLE, FakeConfiguration.of( "a2", "b1" ) );
+
+        assertThat( FingerprintIndex.lookup( FakeConfiguration.of( "a1", "b1" ) ).getResult(), is( ResultType.COMPATIBLE ) );
+        assertThat( FingerprintIndex.lookup( FakeConfiguration.of( "a2", "b1" ) ).getBuild(), is( "job#2" ) );
+        assertThat( FingerprintIndex.lookup( FakeConfiguration.of( "a3", "b1" ) ), is( nullValue() ) );
+    }
+
+    @Test
+    public void testUndeterminedBuildIsRemoved() throws Exception {
+        record( 1, ResultType.COMPATIBLE, FakeConfiguration.of( "a1" ) );
+        record( 1, ResultType.UNDETERMINED, FakeConfiguration.of( "a1" ) );
+
+        assertThat( FingerprintIndex.lookup( FakeConfiguration.of( "a1" ) ), is( nullValue() ) );
+    }
+
+    @Test
+    public void testLogIsCompacted() throws Exception {
+        for( int i = 1; i <= 300; ++i ) {
+            record( i, ResultType.COMPATIBLE, FakeConfiguration.of( "a1" ) );
+        }
+
+        List<String> lines = Files.readAllLines( new File( root, FingerprintIndex.FILE_NAME ).toPath(), StandardCharsets.UTF_8 );
+        assertTrue( lines.size() <= 2 + FingerprintIndex.COMPACT_SLACK );
+        assertThat( FingerprintIndex.lookup( FakeConfiguration.of( "a1" ) ).getBuild(), is( "job#300" ) );
+    }
+
+    @Test
+    public void testSkipTested() throws Exception {
+        FakeConfiguration c1 = FakeConfiguration.of( "a1" );
+        FakeConfiguration c2 = FakeConfiguration.of( "a2" );
+        FakeConfiguration c3 = FakeConfiguration.of( "a3" );
+        record( 1, ResultType.COMPATIBLE, c1 );
+        record( 2, ResultType.INCOMPATIBLE, c2 );
+
+        ListSCM scm = new ListSCM( c1, c2, c3 );
+        assertThat( scm.skipTested( project, listener, c1, null, false ), is( (AbstractConfiguration) c3 ) );
+        assertThat( scm.skipTested( project, listener, c1, null, true ), is( (AbstractConfiguration) c3 ) );
+        assertThat( scm.skipTested( project, listener, c3, null, true ), is( (AbstractConfiguration) c3 ) );
+    }
+
+    @Test
+    public void testAllTestedIsNothingToRotate() throws Exception {
+        FakeConfiguration c1 = FakeConfiguration.of( "a1" );
+        FakeConfiguration c2 = FakeConfiguration.of( "a2" );
+        record( 1, ResultType.COMPATIBLE, c1 );
+        record( 2, ResultType.COMPATIBLE, c2 );
+
+        ListSCM scm = new ListSCM( c1, c2 );
+        assertThat( scm.skipTested( project, listener, c1, null, false ), is( nullValue() ) );
+    }
+
+    @Test
+    public void testSkippingIsCapped() throws Exception {
+        FakeConfiguration[] configurations = new FakeConfiguration[AbstractConfigurationRotatorSCM.MAX_SKIPPED + 2];
+        for( int i = 0; i < configurations.length; ++i ) {
+            configurations[i] = FakeConfiguration.of( "a" + i );
+            if( i <= AbstractConfigurationRotatorSCM.MAX_SKIPPED ) {
+                record( i + 1, ResultType.COMPATIBLE, configurations[i] );
+            }
+        }
+
+        /* The last configuration is not tested, but it is too far ahead */
+        ListSCM scm = new ListSCM( configurations );
+        assertThat( scm.skipTested( project, listener, configurations[0], null, true ), is( nullValue() ) );
+    }
+}
@@ -0,0 +1,29 @@
+package net.praqma.jenkins.configrotator.unit;
+
+import net.praqma.jenkins.configrotator.fake.FakeConfiguration;
+import net.praqma.jenkins.configrotator.fake.FakeConfigurationComponent;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+
+public class FingerprintTest {
+
+    @Test
+    public void testSameComponentsSameFingerprint() {
+        assertThat( FakeConfiguration.of( "a", "b" ).getFingerprint(), is( FakeConfiguration.of( "a", "b" ).getFingerprint() ) );
+    }
+
+    @Test
+    public void testOrderMatters() {
+        assertThat( FakeConfiguration.of( "a", "b" ).getFingerprint(), is( not( FakeConfiguration.of( "b", "a" ).getFingerprint() ) ) );
+    }
+
+    @Test
+    public void testFixedDoesNotMatter() {
+        FakeConfiguration fixed = new FakeConfiguration();
+        fixed.getList().add( new FakeConfigurationComponent( true, "a" ) );
+        assertThat( fixed.getFingerprint(), is( FakeConfiguration.of( "a" ).getFingerprint() ) );
+    }
+}
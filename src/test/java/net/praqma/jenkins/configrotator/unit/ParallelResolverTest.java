@@ -0,0 +1,58 @@
+package net.praqma.jenkins.configrotator.unit;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import net.praqma.jenkins.configrotator.ParallelResolver;
+import org.junit.Test;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsInstanceOf.instanceOf;
+import static org.junit.Assert.assertThat;
+
+public class ParallelResolverTest {
+
+    private static Callable<Integer> task( final int value, final long sleep ) {
+        return new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                Thread.sleep( sleep );
+                if( value < 0 ) {
+                    throw new IOException( "Failed " + value );
+                }
+                return value;
+            }
+        };
+    }
+
+    @Test
+    public void testOutcomesKeepTaskOrder() throws Exception {
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        tasks.add( task( 1, 200 ) );
+        tasks.add( task( 2, 0 ) );
+        tasks.add( task( -3, 50 ) );
+        tasks.add( task( 4, 10 ) );
+
+        List<ParallelResolver.Outcome<Integer>> outcomes = ParallelResolver.resolve( tasks, 3 );
+
+        assertThat( outcomes.size(), is( 4 ) );
+        assertThat( outcomes.get( 0 ).getValue(), is( 1 ) );
+        assertThat( outcomes.get( 1 ).getValue(), is( 2 ) );
+        assertThat( outcomes.get( 2 ).isFailed(), is( true ) );
+        assertThat( outcomes.get( 2 ).getFailure(), instanceOf( IOException.class ) );
+        assertThat( outcomes.get( 3 ).getValue(), is( 4 ) );
+    }
+
+    @Test
+    public void testSingleThreadRunsInline() throws Exception {
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        tasks.add( task( -1, 0 ) );
+        tasks.add( task( 2, 0 ) );
+
+        List<ParallelResolver.Outcome<Integer>> outcomes = ParallelResolver.resolve( tasks, 1 );
+
+        assertThat( outcomes.get( 0 ).isFailed(), is( true ) );
+        assertThat( outcomes.get( 1 ).getValue(), is( 2 ) );
+    }
+}
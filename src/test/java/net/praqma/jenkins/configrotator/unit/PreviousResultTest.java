@@ -0,0 +1,136 @@
+package net.praqma.jenkins.configrotator.unit;
+
+import hudson.model.AbstractBuild;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import java.io.IOException;
+import java.util.Collections;
+import net.praqma.jenkins.configrotator.ConfigurationRotator;
+import net.praqma.jenkins.configrotator.ConfigurationRotator.ResultType;
+import net.praqma.jenkins.configrotator.ConfigurationRotatorBuildAction;
+import net.praqma.jenkins.configrotator.ResultIndex;
+import net.praqma.jenkins.configrotator.scm.git.Git;
+import net.praqma.jenkins.configrotator.scm.git.GitTarget;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+import org.powermock.reflect.Whitebox;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest( { AbstractBuild.class, FreeStyleBuild.class } )
+public class PreviousResultTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * An indexed project without results
+     */
+    private FreeStyleProject project( String name ) throws IOException {
+        FreeStyleProject project = Mockito.mock( FreeStyleProject.class );
+        Mockito.when( project.getFullName() ).thenReturn( name );
+        Mockito.when( project.getRootDir() ).thenReturn( folder.newFolder( name ) );
+        Mockito.when( project.getScm() ).thenReturn( new ConfigurationRotator( new Git( Collections.<GitTarget>emptyList() ) ) );
+        ResultIndex.rebuild( project );
+        return project;
+    }
+
+    private FreeStyleBuild build( FreeStyleProject project, int number ) {
+        FreeStyleBuild build = PowerMockito.mock( FreeStyleBuild.class );
+        PowerMockito.when( build.getProject() ).thenReturn( project );
+        PowerMockito.when( build.getParent() ).thenReturn( project );
+        Mockito.when( build.getNumber() ).thenReturn( number );
+        Mockito.when( project.getBuildByNumber( number ) ).thenReturn( build );
+        return build;
+    }
+
+    /**
+     * A build with a determined result, recorded in the index
+     */
+    private ConfigurationRotatorBuildAction determined( FreeStyleProject project, int number ) {
+        FreeStyleBuild build = build( project, number );
+        ConfigurationRotatorBuildAction action = Mockito.mock( ConfigurationRotatorBuildAction.class );
+        Mockito.when( action.getResult() ).thenReturn( ResultType.COMPATIBLE );
+        Mockito.when( action.isDetermined() ).thenReturn( true );
+        Mockito.when( action.getNumber() ).thenReturn( number );
+        Mockito.doReturn( Git.class ).when( action ).getClazz();
+        Mockito.when( build.getAction( ConfigurationRotatorBuildAction.class ) ).thenReturn( action );
+        ResultIndex.record( build );
+        return action;
+    }
+
+    private ConfigurationRotatorBuildAction action( FreeStyleProject project, int number ) {
+        FreeStyleBuild build = build( project, number );
+        ConfigurationRotatorBuildAction action = new ConfigurationRotatorBuildAction( build, Git.class, null );
+        Mockito.when( build.getAction( ConfigurationRotatorBuildAction.class ) ).thenReturn( action );
+        return action;
+    }
+
+    @Test
+    public void testRememberedResultIsNotLookedUp() throws Exception {
+        FreeStyleProject project = project( "remembered" );
+        ConfigurationRotatorBuildAction previous = determined( project, 1 );
+        ConfigurationRotatorBuildAction action = action( project, 2 );
+        action.setPreviousResult( previous );
+
+        assertThat( action.getPreviousResult(), is( sameInstance( previous ) ) );
+        assertThat( action.getPreviousResult(), is( sameInstance( previous ) ) );
+        Mockito.verify( project, Mockito.never() ).getBuildByNumber( 1 );
+    }
+
+    @Test
+    public void testNoPreviousResultIsRemembered() throws Exception {
+        FreeStyleProject project = project( "none" );
+        ConfigurationRotatorBuildAction action = action( project, 1 );
+        action.setPreviousResult( null );
+
+        assertThat( action.getPreviousResult(), is( nullValue() ) );
+        Mockito.verify( project, Mockito.never() ).getScm();
+    }
+
+    @Test
+    public void testLoadedActionLoadsThePreviousBuildOnce() throws Exception {
+        FreeStyleProject project = project( "loaded" );
+        ConfigurationRotatorBuildAction previous = determined( project, 1 );
+        ConfigurationRotatorBuildAction action = action( project, 2 );
+
+        /* As read from disk, only the number is persisted */
+        Whitebox.setInternalState( action, "previousNumber", 1 );
+        assertThat( action.getPreviousResult(), is( sameInstance( previous ) ) );
+        assertThat( action.getPreviousResult(), is( sameInstance( previous ) ) );
+        Mockito.verify( project, Mockito.times( 1 ) ).getBuildByNumber( 1 );
+    }
+
+    @Test
+    public void testActionStoredBeforeIsResolvedOnce() throws Exception {
+        FreeStyleProject project = project( "stored" );
+        ConfigurationRotatorBuildAction previous = determined( project, 1 );
+        ConfigurationRotatorBuildAction action = action( project, 2 );
+
+        assertThat( action.getPreviousResult(), is( sameInstance( previous ) ) );
+        assertThat( action.getPreviousResult(), is( sameInstance( previous ) ) );
+        Mockito.verify( project, Mockito.times( 1 ) ).getScm();
+    }
+
+    @Test
+    public void testResolvedAgainWhenTheBuildCompletes() throws Exception {
+        FreeStyleProject project = project( "completed" );
+        ConfigurationRotatorBuildAction action = action( project, 2 );
+        action.setPreviousResult( null );
+
+        /* Build 1 completes after build 2 started */
+        ConfigurationRotatorBuildAction previous = determined( project, 1 );
+        ResultIndex.completed( action.getBuild() );
+        assertThat( action.getPreviousResult(), is( sameInstance( previous ) ) );
+    }
+}
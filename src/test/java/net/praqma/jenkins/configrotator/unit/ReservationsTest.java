@@ -0,0 +1,101 @@
+package net.praqma.jenkins.configrotator.unit;
+
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import java.util.Arrays;
+import java.util.Collections;
+import net.praqma.jenkins.configrotator.ConfigurationRotatorBuildAction;
+import net.praqma.jenkins.configrotator.Reservations;
+import net.praqma.jenkins.configrotator.fake.FakeConfiguration;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest( { AbstractBuild.class, FreeStyleBuild.class } )
+public class ReservationsTest {
+
+    private AbstractProject<?, ?> project( String name ) {
+        FreeStyleProject project = Mockito.mock( FreeStyleProject.class );
+        Mockito.when( project.getFullName() ).thenReturn( name );
+        return project;
+    }
+
+    private AbstractBuild<?, ?> build( AbstractProject project, int number, boolean determined ) {
+        FreeStyleBuild build = PowerMockito.mock( FreeStyleBuild.class );
+        PowerMockito.when( build.getProject() ).thenReturn( project );
+        Mockito.when( build.getNumber() ).thenReturn( number );
+        Mockito.when( build.getFullDisplayName() ).thenReturn( project.getFullName() + " #" + number );
+        Mockito.doReturn( build ).when( project ).getBuildByNumber( number );
+        if( determined ) {
+            ConfigurationRotatorBuildAction action = Mockito.mock( ConfigurationRotatorBuildAction.class );
+            Mockito.when( action.isDetermined() ).thenReturn( true );
+            Mockito.when( build.getAction( ConfigurationRotatorBuildAction.class ) ).thenReturn( action );
+        }
+        return build;
+    }
+
+    @Test
+    public void testCompletedInOrder() {
+        AbstractProject<?, ?> project = project( "in-order" );
+        Reservations reservations = Reservations.get( project );
+        AbstractBuild<?, ?> first = build( project, 1, true );
+        AbstractBuild<?, ?> second = build( project, 2, true );
+        reservations.reserve( first, new FakeConfiguration(), true );
+        reservations.reserve( second, new FakeConfiguration(), true );
+
+        assertThat( Reservations.complete( second ).isEmpty(), is( true ) );
+        assertThat( Reservations.complete( first ), is( Arrays.<AbstractBuild<?, ?>>asList( first, second ) ) );
+        assertThat( reservations.isActive(), is( false ) );
+    }
+
+    @Test
+    public void testRotateFromFurthestReserved() {
+        AbstractProject<?, ?> project = project( "furthest" );
+        Reservations reservations = Reservations.get( project );
+        FakeConfiguration last = new FakeConfiguration();
+        FakeConfiguration reserved = new FakeConfiguration();
+        AbstractBuild<?, ?> build = build( project, 1, true );
+
+        assertThat( reservations.getBase( last ), sameInstance( (Object) last ) );
+        reservations.reserve( build, reserved, true );
+        assertThat( reservations.getBase( last ), sameInstance( (Object) reserved ) );
+        assertThat( Reservations.complete( build ), is( Collections.<AbstractBuild<?, ?>>singletonList( build ) ) );
+        assertThat( reservations.getBase( last ), sameInstance( (Object) last ) );
+    }
+
+    @Test
+    public void testUndeterminedGivesBack() {
+        AbstractProject<?, ?> project = project( "give-back" );
+        Reservations reservations = Reservations.get( project );
+        FakeConfiguration configuration = new FakeConfiguration();
+        AbstractBuild<?, ?> build = build( project, 1, false );
+        reservations.reserve( build, configuration, true );
+        Reservations.complete( build );
+
+        assertThat( reservations.hasReleased(), is( true ) );
+        assertThat( reservations.takeReleased(), sameInstance( (Object) configuration ) );
+        assertThat( reservations.takeReleased(), nullValue() );
+    }
+
+    @Test
+    public void testForgottenWhenDeleted() {
+        AbstractProject<?, ?> project = project( "deleted" );
+        Reservations reservations = Reservations.get( project );
+        reservations.reserve( build( project, 1, true ), new FakeConfiguration(), true );
+
+        new Reservations.ItemListenerImpl().onDeleted( project );
+        assertThat( Reservations.get( project ) == reservations, is( false ) );
+        assertThat( Reservations.get( project ).isActive(), is( false ) );
+    }
+}
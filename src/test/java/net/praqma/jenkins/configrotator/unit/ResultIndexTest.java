@@ -0,0 +1,173 @@
+package net.praqma.jenkins.configrotator.unit;
+
+import hudson.model.AbstractBuild;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import net.praqma.jenkins.configrotator.ConfigurationRotator;
+import net.praqma.jenkins.configrotator.ConfigurationRotator.ResultType;
+import net.praqma.jenkins.configrotator.ConfigurationRotatorBuildAction;
+import net.praqma.jenkins.configrotator.ResultIndex;
+import net.praqma.jenkins.configrotator.RotationHistory;
+import net.praqma.jenkins.configrotator.scm.clearcaseucm.ClearCaseUCM;
+import net.praqma.jenkins.configrotator.scm.git.Git;
+import net.praqma.jenkins.configrotator.scm.git.GitConfiguration;
+import net.praqma.jenkins.configrotator.scm.git.GitConfigurationComponent;
+import net.praqma.jenkins.configrotator.scm.git.GitTarget;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest( { AbstractBuild.class, FreeStyleBuild.class } )
+public class ResultIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Git git;
+
+    @Before
+    public void initialize() {
+        git = new Git( Collections.<GitTarget>emptyList() );
+        git.setConfiguration( configuration( "c0" ) );
+    }
+
+    private GitConfiguration configuration( String commit ) {
+        GitConfigurationComponent c = new GitConfigurationComponent( "repo", "git@example.com:repo.git", "master", (RevCommit) null, false );
+        c.setCommitId( commit );
+        List<GitConfigurationComponent> components = new ArrayList<>();
+        components.add( c );
+        return new GitConfiguration( components );
+    }
+
+    private FreeStyleProject project( String name ) throws IOException {
+        FreeStyleProject project = Mockito.mock( FreeStyleProject.class );
+        Mockito.when( project.getFullName() ).thenReturn( name );
+        Mockito.when( project.getRootDir() ).thenReturn( folder.newFolder( name ) );
+        Mockito.when( project.getScm() ).thenReturn( new ConfigurationRotator( git ) );
+        return project;
+    }
+
+    /**
+     * A build of the project, which is what the project returns for its number
+     */
+    private FreeStyleBuild build( FreeStyleProject project, int number, ResultType result ) {
+        FreeStyleBuild build = PowerMockito.mock( FreeStyleBuild.class );
+        PowerMockito.when( build.getProject() ).thenReturn( project );
+        PowerMockito.when( build.getParent() ).thenReturn( project );
+        Mockito.when( build.getNumber() ).thenReturn( number );
+        ConfigurationRotatorBuildAction action = Mockito.mock( ConfigurationRotatorBuildAction.class );
+        Mockito.when( action.getResult() ).thenReturn( result );
+        Mockito.when( action.isDetermined() ).thenReturn( result == ResultType.COMPATIBLE || result == ResultType.INCOMPATIBLE );
+        Mockito.doReturn( Git.class ).when( action ).getClazz();
+        Mockito.when( action.getConfigurationWithOutCast() ).thenReturn( configuration( "c" + number ) );
+        Mockito.when( build.getAction( ConfigurationRotatorBuildAction.class ) ).thenReturn( action );
+        Mockito.when( project.getBuildByNumber( number ) ).thenReturn( build );
+        return build;
+    }
+
+    private static ConfigurationRotatorBuildAction action( FreeStyleBuild build ) {
+        return build.getAction( ConfigurationRotatorBuildAction.class );
+    }
+
+    @Test
+    public void testRebuiltFromTheBuilds() throws Exception {
+        FreeStyleProject project = project( "builds" );
+        FreeStyleBuild b1 = build( project, 1, ResultType.COMPATIBLE );
+        FreeStyleBuild b2 = build( project, 2, ResultType.FAILED );
+        FreeStyleBuild b3 = build( project, 3, ResultType.INCOMPATIBLE );
+        PowerMockito.when( b3.getPreviousBuild() ).thenReturn( b2 );
+        PowerMockito.when( b2.getPreviousBuild() ).thenReturn( b1 );
+        Mockito.when( project.getLastCompletedBuild() ).thenReturn( b3 );
+
+        ResultIndex.rebuild( project );
+        assertTrue( ResultIndex.isIndexed( project ) );
+        assertThat( ResultIndex.getLastResult( project, Git.class ), is( sameInstance( action( b3 ) ) ) );
+        assertThat( ResultIndex.getPreviousResult( b3, null ), is( sameInstance( action( b1 ) ) ) );
+        assertThat( ResultIndex.getPreviousResult( b1, null ), is( nullValue() ) );
+
+        /* The history is written for the next time */
+        assertThat( RotationHistory.read( project ).size(), is( 2 ) );
+    }
+
+    @Test
+    public void testRecordedResultsAreLookedUp() throws Exception {
+        FreeStyleProject project = project( "recorded" );
+        ResultIndex.rebuild( project );
+
+        FreeStyleBuild b1 = build( project, 1, ResultType.COMPATIBLE );
+        ResultIndex.record( b1 );
+        FreeStyleBuild b2 = build( project, 2, ResultType.INCOMPATIBLE );
+        ResultIndex.record( b2 );
+        ResultIndex.record( build( project, 3, ResultType.FAILED ) );
+
+        assertThat( ResultIndex.getLastResult( project, null ), is( sameInstance( action( b2 ) ) ) );
+        assertThat( ResultIndex.getPreviousResult( project, 2, null ), is( sameInstance( action( b1 ) ) ) );
+        assertThat( ResultIndex.getLastResults( project, null, 10 ).size(), is( 2 ) );
+        assertThat( ResultIndex.getLastResult( project, ClearCaseUCM.class ), is( nullValue() ) );
+    }
+
+    @Test
+    public void testUndeterminedBuildIsRemoved() throws Exception {
+        FreeStyleProject project = project( "undetermined" );
+        ResultIndex.rebuild( project );
+
+        FreeStyleBuild b1 = build( project, 1, ResultType.COMPATIBLE );
+        ResultIndex.record( b1 );
+        ResultIndex.record( build( project, 2, ResultType.COMPATIBLE ) );
+        ResultIndex.record( build( project, 2, ResultType.UNDETERMINED ) );
+
+        assertThat( ResultIndex.getLastResult( project, null ), is( sameInstance( action( b1 ) ) ) );
+        List<RotationHistory.Entry> entries = RotationHistory.read( project );
+        assertThat( entries.get( entries.size() - 1 ).getNumber(), is( 2 ) );
+        assertFalse( entries.get( entries.size() - 1 ).isDetermined() );
+    }
+
+    @Test
+    public void testBuildChangedBehindOurBackIsSkipped() throws Exception {
+        FreeStyleProject project = project( "changed" );
+        ResultIndex.rebuild( project );
+
+        FreeStyleBuild b1 = build( project, 1, ResultType.COMPATIBLE );
+        ResultIndex.record( b1 );
+        ResultIndex.record( build( project, 2, ResultType.COMPATIBLE ) );
+
+        /* Not recorded, only seen when the build is loaded */
+        build( project, 2, ResultType.UNDETERMINED );
+        assertThat( ResultIndex.getLastResult( project, null ), is( sameInstance( action( b1 ) ) ) );
+    }
+
+    @Test( timeout = 10000 )
+    public void testUnindexedProjectIsIndexedInTheBackground() throws Exception {
+        FreeStyleProject project = project( "unindexed" );
+        FreeStyleBuild b1 = build( project, 1, ResultType.COMPATIBLE );
+        Mockito.when( project.getLastCompletedBuild() ).thenReturn( b1 );
+
+        /* The callers walk the builds meanwhile */
+        assertThat( ResultIndex.getLastResult( project, null ), is( nullValue() ) );
+        while( !ResultIndex.isIndexed( project ) ) {
+            Thread.sleep( 10 );
+        }
+        assertThat( ResultIndex.getLastResult( project, null ), is( sameInstance( action( b1 ) ) ) );
+        assertTrue( new File( project.getRootDir(), RotationHistory.FILE_NAME ).exists() );
+    }
+}
@@ -0,0 +1,149 @@
+package net.praqma.jenkins.configrotator.unit;
+
+import hudson.model.AbstractBuild;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import net.praqma.jenkins.configrotator.ConfigurationRotator;
+import net.praqma.jenkins.configrotator.ConfigurationRotator.ResultType;
+import net.praqma.jenkins.configrotator.ConfigurationRotatorBuildAction;
+import net.praqma.jenkins.configrotator.ResultIndex;
+import net.praqma.jenkins.configrotator.RotationHistory;
+import net.praqma.jenkins.configrotator.scm.git.Git;
+import net.praqma.jenkins.configrotator.scm.git.GitConfiguration;
+import net.praqma.jenkins.configrotator.scm.git.GitConfigurationComponent;
+import net.praqma.jenkins.configrotator.scm.git.GitTarget;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest( { AbstractBuild.class, FreeStyleBuild.class } )
+public class RotationHistoryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Git git;
+
+    @Before
+    public void initialize() {
+        git = new Git( Collections.<GitTarget>emptyList() );
+        git.setConfiguration( configuration( "c0", "d0" ) );
+    }
+
+    private GitConfiguration configuration( String... commits ) {
+        List<GitConfigurationComponent> components = new ArrayList<>();
+        for( int i = 0; i < commits.length; ++i ) {
+            GitConfigurationComponent c = new GitConfigurationComponent( "repo" + i, "git@example.com:repo" + i + ".git", "master", (RevCommit) null, false );
+            c.setCommitId( commits[i] );
+            components.add( c );
+        }
+        return new GitConfiguration( components );
+    }
+
+    private FreeStyleProject project( String name ) throws IOException {
+        FreeStyleProject project = Mockito.mock( FreeStyleProject.class );
+        Mockito.when( project.getFullName() ).thenReturn( name );
+        Mockito.when( project.getRootDir() ).thenReturn( folder.newFolder( name ) );
+        Mockito.when( project.getScm() ).thenReturn( new ConfigurationRotator( git ) );
+        return project;
+    }
+
+    private FreeStyleBuild build( FreeStyleProject project, int number, ResultType result, GitConfiguration configuration ) {
+        FreeStyleBuild build = PowerMockito.mock( FreeStyleBuild.class );
+        PowerMockito.when( build.getProject() ).thenReturn( project );
+        PowerMockito.when( build.getParent() ).thenReturn( project );
+        Mockito.when( build.getNumber() ).thenReturn( number );
+        ConfigurationRotatorBuildAction action = Mockito.mock( ConfigurationRotatorBuildAction.class );
+        Mockito.when( action.getResult() ).thenReturn( result );
+        Mockito.when( action.isDetermined() ).thenReturn( result == ResultType.COMPATIBLE || result == ResultType.INCOMPATIBLE );
+        Mockito.doReturn( Git.class ).when( action ).getClazz();
+        Mockito.when( action.getConfigurationWithOutCast() ).thenReturn( configuration );
+        Mockito.when( build.getAction( ConfigurationRotatorBuildAction.class ) ).thenReturn( action );
+        return build;
+    }
+
+    private void append( FreeStyleProject project, int number, ResultType result, String... commits ) throws IOException {
+        FreeStyleBuild build = build( project, number, result, configuration( commits ) );
+        RotationHistory.append( project, RotationHistory.Entry.of( build, build.getAction( ConfigurationRotatorBuildAction.class ) ) );
+    }
+
+    private String commit( ConfigurationRotatorBuildAction action, int component ) {
+        return ( (GitConfiguration) action.getConfigurationWithOutCast() ).getList().get( component ).getCommitId();
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        FreeStyleProject project = project( "round-trip" );
+        append( project, 1, ResultType.COMPATIBLE, "c1", "d1" );
+        append( project, 2, ResultType.INCOMPATIBLE, "c2", "d1" );
+
+        List<RotationHistory.Entry> entries = RotationHistory.read( project );
+        assertThat( entries.size(), is( 2 ) );
+        assertThat( entries.get( 1 ).getNumber(), is( 2 ) );
+        assertThat( entries.get( 1 ).getResult(), is( ResultType.INCOMPATIBLE ) );
+        assertThat( entries.get( 1 ).getClazz(), is( Git.class.getName() ) );
+        assertThat( entries.get( 1 ).getIdentities(), is( Arrays.asList( "git@example.com:repo0.git@c2", "git@example.com:repo1.git@d1" ) ) );
+
+        /* Only the commits differ from the current configuration */
+        ConfigurationRotatorBuildAction action = entries.get( 0 ).getDetachedAction( project );
+        assertTrue( action.isDetached() );
+        assertThat( action.getNumber(), is( 1 ) );
+        assertThat( commit( action, 0 ), is( "c1" ) );
+        assertThat( commit( action, 1 ), is( "d1" ) );
+    }
+
+    @Test
+    public void testIndexRebuiltFromHistory() throws Exception {
+        FreeStyleProject project = project( "rebuilt" );
+        append( project, 1, ResultType.COMPATIBLE, "c1", "d0" );
+        append( project, 2, ResultType.INCOMPATIBLE, "c1", "d2" );
+        append( project, 3, ResultType.FAILED, "c3", "d2" );
+        append( project, 4, ResultType.COMPATIBLE, "c4", "d2" );
+        ResultIndex.rebuild( project );
+
+        /* The builds are discarded, the results are recreated from the history */
+        ConfigurationRotatorBuildAction last = ResultIndex.getLastResult( project, Git.class );
+        assertThat( last.getNumber(), is( 4 ) );
+        assertThat( commit( last, 0 ), is( "c4" ) );
+        assertThat( ResultIndex.getPreviousResult( project, 4, null ).getNumber(), is( 2 ) );
+        assertThat( ResultIndex.getLastResults( project, null, 10 ).size(), is( 3 ) );
+    }
+
+    @Test
+    public void testDeletedBuildsAreRemoved() throws Exception {
+        FreeStyleProject project = project( "deleted" );
+        append( project, 1, ResultType.COMPATIBLE, "c1", "d0" );
+        append( project, 2, ResultType.COMPATIBLE, "c2", "d0" );
+        append( project, 3, ResultType.COMPATIBLE, "c3", "d0" );
+        ResultIndex.rebuild( project );
+
+        ResultIndex.deleted( build( project, 2, ResultType.COMPATIBLE, null ) );
+        assertThat( ResultIndex.getPreviousResult( project, 3, null ).getNumber(), is( 1 ) );
+
+        /* The rotation continues from the last result */
+        ResultIndex.deleted( build( project, 3, ResultType.COMPATIBLE, null ) );
+        assertThat( ResultIndex.getLastResult( project, null ).getNumber(), is( 3 ) );
+
+        List<RotationHistory.Entry> entries = RotationHistory.read( project );
+        assertThat( entries.get( entries.size() - 1 ).getNumber(), is( 2 ) );
+        assertFalse( entries.get( entries.size() - 1 ).isDetermined() );
+    }
+}
@@ -0,0 +1,112 @@
+package net.praqma.jenkins.configrotator.unit;
+
+import hudson.model.FreeStyleProject;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import net.praqma.jenkins.configrotator.AbstractConfiguration;
+import net.praqma.jenkins.configrotator.RotationQueue;
+import net.praqma.jenkins.configrotator.fake.FakeConfiguration;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class RotationQueueTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private FreeStyleProject project( String name ) throws IOException {
+        FreeStyleProject project = Mockito.mock( FreeStyleProject.class );
+        Mockito.when( project.getFullName() ).thenReturn( name );
+        File root = folder.newFolder( name );
+        Mockito.when( project.getRootDir() ).thenReturn( root );
+        return project;
+    }
+
+    private RotationQueue filled( FreeStyleProject project, String settings ) {
+        RotationQueue queue = RotationQueue.get( project );
+        queue.fill( project, FakeConfiguration.of( "a1" ), settings, Arrays.<AbstractConfiguration>asList( FakeConfiguration.of( "a2" ), FakeConfiguration.of( "a3" ) ) );
+        return queue;
+    }
+
+    @Test
+    public void testFollowsTheConfigurationTaken() throws Exception {
+        FreeStyleProject project = project( "follows" );
+        RotationQueue queue = filled( project, "s" );
+
+        assertThat( queue.peek( FakeConfiguration.of( "a2" ), "s" ), is( nullValue() ) );
+        AbstractConfiguration next = queue.pop( project, FakeConfiguration.of( "a1" ), "s" );
+        assertThat( next.getFingerprint(), is( FakeConfiguration.of( "a2" ).getFingerprint() ) );
+        assertThat( queue.peek( FakeConfiguration.of( "a1" ), "s" ), is( nullValue() ) );
+        assertThat( queue.peek( FakeConfiguration.of( "a2" ), "s" ).getFingerprint(), is( FakeConfiguration.of( "a3" ).getFingerprint() ) );
+        assertThat( queue.size(), is( 1 ) );
+    }
+
+    @Test
+    public void testOtherSettingsAreNotQueued() throws Exception {
+        FreeStyleProject project = project( "settings" );
+        RotationQueue queue = filled( project, "oldest" );
+
+        assertThat( queue.peek( FakeConfiguration.of( "a1" ), "round-robin" ), is( nullValue() ) );
+        assertThat( queue.pop( project, FakeConfiguration.of( "a1" ), "round-robin" ), is( nullValue() ) );
+        assertThat( queue.size(), is( 2 ) );
+    }
+
+    @Test
+    public void testMovedSourceDropsTheQueue() throws Exception {
+        FreeStyleProject project = project( "source" );
+        RotationQueue queue = filled( project, "s" );
+
+        assertTrue( queue.isFrom( project, null ) );
+        assertTrue( queue.isFrom( project, "tips" ) );
+        assertTrue( queue.isFrom( project, "tips" ) );
+        assertFalse( queue.isFrom( project, "rewritten" ) );
+        assertThat( queue.peek( FakeConfiguration.of( "a1" ), "s" ), is( nullValue() ) );
+
+        /* Refilled from the new source */
+        queue.fill( project, FakeConfiguration.of( "a1" ), "s", Collections.<AbstractConfiguration>singletonList( FakeConfiguration.of( "b2" ) ) );
+        assertTrue( queue.isFrom( project, "rewritten" ) );
+        assertThat( queue.peek( FakeConfiguration.of( "a1" ), "s" ).getFingerprint(), is( FakeConfiguration.of( "b2" ).getFingerprint() ) );
+    }
+
+    @Test
+    public void testQueueIsForgottenWhenDeleted() throws Exception {
+        FreeStyleProject project = project( "deleted" );
+        RotationQueue queue = filled( project, "s" );
+
+        new RotationQueue.ItemListenerImpl().onDeleted( project );
+        new File( project.getRootDir(), RotationQueue.FILE_NAME ).delete();
+        assertThat( RotationQueue.get( project ) == queue, is( false ) );
+        assertThat( RotationQueue.get( project ).size(), is( 0 ) );
+    }
+
+    @Test
+    public void testQueueFollowsRename() throws Exception {
+        FreeStyleProject project = project( "renamed" );
+        RotationQueue queue = filled( project, "s" );
+
+        FreeStyleProject renamed = project( "renamed-again" );
+        new RotationQueue.ItemListenerImpl().onLocationChanged( project, "renamed", "renamed-again" );
+        assertThat( RotationQueue.get( renamed ) == queue, is( true ) );
+    }
+
+    @Test
+    public void testQueueIsReadFromTheJob() throws Exception {
+        FreeStyleProject project = project( "persisted" );
+        filled( project, "s" );
+
+        new RotationQueue.ItemListenerImpl().onDeleted( project );
+        RotationQueue read = RotationQueue.get( project );
+        assertThat( read.size(), is( 2 ) );
+        assertThat( read.peek( FakeConfiguration.of( "a1" ), "s" ).getFingerprint(), is( FakeConfiguration.of( "a2" ).getFingerprint() ) );
+    }
+}
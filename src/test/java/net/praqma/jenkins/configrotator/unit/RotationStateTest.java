@@ -0,0 +1,155 @@
+package net.praqma.jenkins.configrotator.unit;
+
+import hudson.model.FreeStyleProject;
+import hudson.model.Items;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import net.praqma.jenkins.configrotator.AbstractConfigurationRotatorSCM;
+import net.praqma.jenkins.configrotator.ConfigurationRotator;
+import net.praqma.jenkins.configrotator.RotationState;
+import net.praqma.jenkins.configrotator.scm.git.Git;
+import net.praqma.jenkins.configrotator.scm.git.GitConfiguration;
+import net.praqma.jenkins.configrotator.scm.git.GitConfigurationComponent;
+import net.praqma.jenkins.configrotator.scm.git.GitTarget;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+import org.powermock.reflect.Whitebox;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class RotationStateTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void initialize() {
+        RotationState.omitState();
+    }
+
+    private GitConfiguration configuration( String commit ) {
+        GitConfigurationComponent c = new GitConfigurationComponent( "repo", "git@example.com:repo.git", "master", (RevCommit) null, false );
+        c.setCommitId( commit );
+        List<GitConfigurationComponent> components = new ArrayList<>();
+        components.add( c );
+        return new GitConfiguration( components );
+    }
+
+    private FreeStyleProject project( String name ) throws IOException {
+        FreeStyleProject project = Mockito.mock( FreeStyleProject.class );
+        Mockito.when( project.getFullName() ).thenReturn( name );
+        Mockito.when( project.getRootDir() ).thenReturn( folder.newFolder( name ) );
+        return project;
+    }
+
+    /**
+     * A rotator as it is read from the job configuration
+     */
+    private ConfigurationRotator read( ConfigurationRotator rotator ) {
+        return (ConfigurationRotator) Items.XSTREAM2.fromXML( Items.XSTREAM2.toXML( rotator ) );
+    }
+
+    private static String commit( ConfigurationRotator rotator ) {
+        return ( (GitConfiguration) rotator.getAcrs().getConfiguration() ).getList().get( 0 ).getCommitId();
+    }
+
+    @Test
+    public void testStateIsOmittedFromTheJobConfiguration() throws Exception {
+        Git git = new Git( Collections.<GitTarget>emptyList() );
+        git.setConfiguration( configuration( "c1" ) );
+        ConfigurationRotator rotator = new ConfigurationRotator( git );
+        rotator.setReconfigure( true );
+
+        String xml = Items.XSTREAM2.toXML( rotator );
+        assertThat( xml, not( containsString( "reconfigure" ) ) );
+        assertThat( xml, not( containsString( "justConfigured" ) ) );
+        assertThat( xml, not( containsString( "c1" ) ) );
+        assertThat( read( rotator ).getAcrs().getConfiguration(), is( nullValue() ) );
+    }
+
+    @Test
+    public void testConfiguredRotatorKeepsItsState() throws Exception {
+        FreeStyleProject project = project( "configured" );
+        Git git = new Git( Collections.<GitTarget>emptyList() );
+        git.setConfiguration( configuration( "c1" ) );
+        ConfigurationRotator rotator = new ConfigurationRotator( git );
+        rotator.setReconfigure( true );
+
+        /* An earlier state is replaced */
+        new RotationState( false, false, configuration( "c0" ) ).save( project );
+        rotator.loadState( project );
+        assertTrue( rotator.justConfigured );
+        assertTrue( rotator.doReconfigure() );
+        assertThat( commit( rotator ), is( "c1" ) );
+
+        RotationState state = RotationState.load( project );
+        assertTrue( state.isJustConfigured() );
+        assertTrue( state.isReconfigure() );
+        assertThat( ( (GitConfiguration) state.getConfiguration() ).getList().get( 0 ).getCommitId(), is( "c1" ) );
+    }
+
+    @Test
+    public void testStateIsLoadedOnce() throws Exception {
+        FreeStyleProject project = project( "loaded" );
+        new RotationState( false, false, configuration( "c2" ) ).save( project );
+
+        ConfigurationRotator rotator = read( new ConfigurationRotator( new Git( Collections.<GitTarget>emptyList() ) ) );
+        rotator.loadState( project );
+        assertFalse( rotator.justConfigured );
+        assertFalse( rotator.doReconfigure() );
+        assertThat( commit( rotator ), is( "c2" ) );
+
+        /* The rotation continues from the rotator, not the file */
+        rotator.getAcrs().setConfiguration( configuration( "c3" ) );
+        rotator.loadState( project );
+        assertThat( commit( rotator ), is( "c3" ) );
+    }
+
+    @Test
+    public void testJobWithoutStateIsCheckedForReconfiguration() throws Exception {
+        FreeStyleProject project = project( "without" );
+        ConfigurationRotator rotator = read( new ConfigurationRotator( new Git( Collections.<GitTarget>emptyList() ) ) );
+        assertFalse( rotator.justConfigured );
+
+        rotator.loadState( project );
+        assertTrue( rotator.justConfigured );
+        assertTrue( new File( project.getRootDir(), RotationState.FILE_NAME ).exists() );
+        assertTrue( RotationState.load( project ).isJustConfigured() );
+    }
+
+    @Test
+    public void testConfigurationOfTheJobIsMigrated() throws Exception {
+        FreeStyleProject project = project( "migrated" );
+        Git git = new Git( Collections.<GitTarget>emptyList() );
+
+        /* As written by an earlier version */
+        Whitebox.setInternalState( git, "projectConfiguration", configuration( "c1" ), AbstractConfigurationRotatorSCM.class );
+        ConfigurationRotator rotator = read( new ConfigurationRotator( git ) );
+        assertThat( commit( rotator ), is( "c1" ) );
+
+        rotator.loadState( project );
+        assertThat( ( (GitConfiguration) RotationState.load( project ).getConfiguration() ).getList().get( 0 ).getCommitId(), is( "c1" ) );
+        assertThat( Items.XSTREAM2.toXML( rotator ), not( containsString( "c1" ) ) );
+    }
+
+    @Test
+    public void testUnreadableStateIsIgnored() throws Exception {
+        FreeStyleProject project = project( "unreadable" );
+        RotationState.getFile( project ).getFile().createNewFile();
+
+        assertThat( RotationState.load( project ), is( nullValue() ) );
+    }
+}
@@ -0,0 +1,69 @@
+package net.praqma.jenkins.configrotator.unit;
+
+import java.util.ArrayList;
+import java.util.List;
+import net.praqma.jenkins.configrotator.RotationStrategy;
+import net.praqma.jenkins.configrotator.Timeline;
+import net.praqma.jenkins.configrotator.strategy.LeastRecentlyRotatedStrategy;
+import net.praqma.jenkins.configrotator.strategy.OldestFirstStrategy;
+import net.praqma.jenkins.configrotator.strategy.RoundRobinStrategy;
+import net.praqma.jenkins.configrotator.strategy.WeightedPriorityStrategy;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class RotationStrategyTest {
+
+    /**
+     * A busy component with a version every minute, and a quiet one with a version every ten minutes
+     */
+    private Timeline<String> timeline() {
+        Timeline<String> timeline = new Timeline<>( 2 );
+        for( int i = 0; i < 10; i++ ) {
+            timeline.add( 0, "busy" + i, i );
+        }
+        for( int i = 0; i < 3; i++ ) {
+            timeline.add( 1, "quiet" + i, i * 10 );
+        }
+        return timeline;
+    }
+
+    private String rotate( RotationStrategy strategy, RotationStrategy.History history, int limit ) {
+        List<Integer> components = new ArrayList<>();
+        for( Timeline.Step<String> step : timeline().merge( limit, strategy, history ) ) {
+            components.add( step.getComponent() );
+        }
+        return components.toString();
+    }
+
+    @Test
+    public void testOldestFirst() {
+        assertThat( rotate( new OldestFirstStrategy(), new RotationStrategy.History( 2 ), 6 ), is( "[0, 1, 0, 0, 0, 0]" ) );
+    }
+
+    @Test
+    public void testRoundRobin() {
+        assertThat( rotate( new RoundRobinStrategy(), new RotationStrategy.History( 2 ), 6 ), is( "[0, 1, 0, 1, 0, 1]" ) );
+    }
+
+    @Test
+    public void testRoundRobinGoesOnFromHistory() {
+        RotationStrategy.History history = new RotationStrategy.History( 2 );
+        history.advanced( 0 );
+        assertThat( rotate( new RoundRobinStrategy(), history, 2 ), is( "[1, 0]" ) );
+    }
+
+    @Test
+    public void testWeightedPriority() {
+        assertThat( rotate( new WeightedPriorityStrategy( "2, 1" ), new RotationStrategy.History( 2 ), 6 ), is( "[0, 1, 0, 0, 0, 1]" ) );
+    }
+
+    @Test
+    public void testLeastRecentlyRotated() {
+        RotationStrategy.History history = new RotationStrategy.History( 2 );
+        history.advanced( 1 );
+        history.advanced( 0 );
+        assertThat( rotate( new LeastRecentlyRotatedStrategy(), history, 4 ), is( "[1, 0, 1, 0]" ) );
+    }
+}
@@ -0,0 +1,48 @@
+package net.praqma.jenkins.configrotator.unit;
+
+import java.util.List;
+import net.praqma.jenkins.configrotator.RotationStrategy;
+import net.praqma.jenkins.configrotator.Timeline;
+import net.praqma.jenkins.configrotator.strategy.OldestFirstStrategy;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class TimelineTest {
+
+    private List<Timeline.Step<String>> merge( Timeline<String> timeline, int limit ) {
+        return timeline.merge( limit, new OldestFirstStrategy(), new RotationStrategy.History( 2 ) );
+    }
+
+    @Test
+    public void testMergedInTimeOrder() {
+        Timeline<String> timeline = new Timeline<>( 2 );
+        timeline.add( 0, "a1", 10 );
+        timeline.add( 0, "a2", 30 );
+        timeline.add( 1, "b1", 20 );
+        timeline.add( 1, "b2", 40 );
+
+        List<Timeline.Step<String>> steps = merge( timeline, 10 );
+        assertThat( steps.size(), is( 4 ) );
+        assertThat( steps.get( 0 ).getVersion(), is( "a1" ) );
+        assertThat( steps.get( 1 ).getVersion(), is( "b1" ) );
+        assertThat( steps.get( 2 ).getVersion(), is( "a2" ) );
+        assertThat( steps.get( 3 ).getVersion(), is( "b2" ) );
+        assertThat( steps.get( 3 ).getComponent(), is( 1 ) );
+    }
+
+    @Test
+    public void testComponentOrderKeptAndTiesToFirst() {
+        Timeline<String> timeline = new Timeline<>( 2 );
+        /* Out of time order within a component, the component order is kept */
+        timeline.add( 0, "a1", 50 );
+        timeline.add( 0, "a2", 5 );
+        timeline.add( 1, "b1", 50 );
+
+        List<Timeline.Step<String>> steps = merge( timeline, 2 );
+        assertThat( steps.size(), is( 2 ) );
+        assertThat( steps.get( 0 ).getVersion(), is( "a1" ) );
+        assertThat( steps.get( 1 ).getVersion(), is( "a2" ) );
+    }
+}
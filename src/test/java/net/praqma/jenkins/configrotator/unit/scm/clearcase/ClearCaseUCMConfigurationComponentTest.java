@@ -0,0 +1,136 @@
+package net.praqma.jenkins.configrotator.unit.scm.clearcase;
+
+import hudson.FilePath;
+import hudson.model.Run;
+import net.praqma.clearcase.ucm.entities.Baseline;
+import net.praqma.clearcase.ucm.entities.Component;
+import net.praqma.clearcase.ucm.entities.Project;
+import net.praqma.clearcase.ucm.entities.Stream;
+import net.praqma.jenkins.configrotator.scm.clearcaseucm.ClearCaseUCM;
+import net.praqma.jenkins.configrotator.scm.clearcaseucm.ClearCaseUCMConfigurationComponent;
+import net.praqma.jenkins.configrotator.scm.clearcaseucm.LoadEntity;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+import org.powermock.reflect.Whitebox;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Only the names of a component are persisted, and the baseline is rehydrated from them.
+ */
+@RunWith(PowerMockRunner.class)
+@PrepareForTest( { Baseline.class, Component.class, Stream.class, FilePath.class } )
+public class ClearCaseUCMConfigurationComponentTest {
+
+    @Before
+    public void initialize() {
+        ClearCaseUCM.omitBaselineEntities();
+        PowerMockito.mockStatic( Baseline.class );
+    }
+
+    private Baseline baseline( String name ) {
+        Component c = PowerMockito.mock( Component.class );
+        Mockito.when( c.getFullyQualifiedName() ).thenReturn( "component:comp@\\pvob" );
+        Stream s = PowerMockito.mock( Stream.class );
+        Mockito.when( s.getFullyQualifiedName() ).thenReturn( "stream:comp_int@\\pvob" );
+        Baseline b = PowerMockito.mock( Baseline.class );
+        Mockito.when( b.getFullyQualifiedName() ).thenReturn( "baseline:" + name + "@\\pvob" );
+        Mockito.when( b.getComponent() ).thenReturn( c );
+        Mockito.when( b.getStream() ).thenReturn( s );
+        return b;
+    }
+
+    private ClearCaseUCMConfigurationComponent roundTrip( ClearCaseUCMConfigurationComponent component ) {
+        return (ClearCaseUCMConfigurationComponent) Run.XSTREAM2.fromXML( Run.XSTREAM2.toXML( component ) );
+    }
+
+    @Test
+    public void testOnlyTheNamesArePersisted() throws Exception {
+        ClearCaseUCMConfigurationComponent component = new ClearCaseUCMConfigurationComponent( baseline( "b1" ), Project.PromotionLevel.BUILT, false );
+
+        String xml = Run.XSTREAM2.toXML( component );
+        assertThat( xml, containsString( "baseline:b1@\\pvob" ) );
+        assertThat( xml, not( containsString( "<entity" ) ) );
+        assertThat( xml, not( containsString( "<baseline>" ) ) );
+
+        ClearCaseUCMConfigurationComponent read = roundTrip( component );
+        assertFalse( read.isMigrated() );
+        assertThat( read, is( component ) );
+        assertThat( read.getBaselineName(), is( "b1@\\pvob" ) );
+        assertThat( read.getComponentName(), is( "comp@\\pvob" ) );
+        assertThat( read.getStreamName(), is( "comp_int@\\pvob" ) );
+        assertThat( read.getPlevel(), is( Project.PromotionLevel.BUILT ) );
+    }
+
+    @Test
+    public void testBaselineIsRehydratedAndLoadedOnce() throws Exception {
+        ClearCaseUCMConfigurationComponent read = roundTrip( new ClearCaseUCMConfigurationComponent( baseline( "b1" ), Project.PromotionLevel.INITIAL, false ) );
+        Baseline rehydrated = PowerMockito.mock( Baseline.class );
+        PowerMockito.when( Baseline.get( "baseline:b1@\\pvob" ) ).thenReturn( rehydrated );
+        Baseline loaded = PowerMockito.mock( Baseline.class );
+        FilePath workspace = PowerMockito.mock( FilePath.class );
+        PowerMockito.when( workspace.act( Mockito.any( LoadEntity.class ) ) ).thenReturn( loaded );
+
+        assertThat( read.getBaseline(), is( sameInstance( rehydrated ) ) );
+        assertThat( read.loadBaseline( workspace ), is( sameInstance( loaded ) ) );
+        assertThat( read.loadBaseline( workspace ), is( sameInstance( loaded ) ) );
+        assertThat( read.getBaseline(), is( sameInstance( loaded ) ) );
+        Mockito.verify( workspace, Mockito.times( 1 ) ).act( Mockito.any( LoadEntity.class ) );
+    }
+
+    @Test
+    public void testUsedBaselineIsNotLoadedAgain() throws Exception {
+        Baseline b1 = baseline( "b1" );
+        ClearCaseUCMConfigurationComponent component = new ClearCaseUCMConfigurationComponent( b1, Project.PromotionLevel.INITIAL, false );
+        FilePath workspace = PowerMockito.mock( FilePath.class );
+
+        assertThat( component.loadBaseline( workspace ), is( sameInstance( b1 ) ) );
+        Mockito.verify( workspace, Mockito.never() ).act( Mockito.any( LoadEntity.class ) );
+    }
+
+    @Test
+    public void testFullBaselineIsMigrated() throws Exception {
+        ClearCaseUCMConfigurationComponent component = new ClearCaseUCMConfigurationComponent( baseline( "b1" ), Project.PromotionLevel.INITIAL, true );
+
+        /* As read from an earlier version */
+        Baseline b2 = baseline( "b2" );
+        Whitebox.setInternalState( component, "baseline", b2 );
+        Whitebox.setInternalState( component, "entity", (Baseline) null );
+        Whitebox.invokeMethod( component, "readResolve" );
+
+        assertTrue( component.isMigrated() );
+        assertThat( component.getBaselineFullyQualifiedName(), is( "baseline:b2@\\pvob" ) );
+        assertThat( component.getBaseline(), is( sameInstance( b2 ) ) );
+        assertThat( Run.XSTREAM2.toXML( component ), not( containsString( "<baseline>" ) ) );
+    }
+
+    @Test
+    public void testOtherBaselineIsRehydrated() throws Exception {
+        Baseline b1 = baseline( "b1" );
+        ClearCaseUCMConfigurationComponent component = new ClearCaseUCMConfigurationComponent( b1, Project.PromotionLevel.INITIAL, false );
+        component.setChangedLast( true );
+        Baseline b2 = PowerMockito.mock( Baseline.class );
+        PowerMockito.when( Baseline.get( "baseline:b2@\\pvob" ) ).thenReturn( b2 );
+
+        ClearCaseUCMConfigurationComponent other = Whitebox.invokeMethod( component, "withBaseline", "baseline:b2@\\pvob" );
+        assertThat( other.getBaselineName(), is( "b2@\\pvob" ) );
+        assertThat( other.getComponentName(), is( "comp@\\pvob" ) );
+        assertFalse( other.isChangedLast() );
+        assertThat( other.getBaseline(), is( sameInstance( b2 ) ) );
+
+        /* The original is untouched */
+        assertThat( component.getBaseline(), is( sameInstance( b1 ) ) );
+        assertTrue( component.isChangedLast() );
+    }
+}
@@ -0,0 +1,160 @@
+package net.praqma.jenkins.configrotator.unit.scm.clearcase;
+
+import hudson.FilePath;
+import hudson.model.TaskListener;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.praqma.clearcase.ucm.entities.Baseline;
+import net.praqma.clearcase.ucm.entities.Component;
+import net.praqma.clearcase.ucm.entities.Project;
+import net.praqma.clearcase.ucm.entities.Stream;
+import net.praqma.jenkins.configrotator.scm.clearcaseucm.ClearCaseUCM;
+import net.praqma.jenkins.configrotator.scm.clearcaseucm.ClearCaseUCMConfiguration;
+import net.praqma.jenkins.configrotator.scm.clearcaseucm.ClearCaseUCMConfigurationComponent;
+import net.praqma.jenkins.configrotator.scm.clearcaseucm.NextBaseline;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+import org.powermock.reflect.Whitebox;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * The next baselines of the components are queried concurrently, and chosen among as if queried one at a time.
+ */
+@RunWith(PowerMockRunner.class)
+@PrepareForTest( { Baseline.class, Component.class, Stream.class, FilePath.class } )
+public class NextBaselinesTest {
+
+    private TaskListener listener;
+    private FilePath workspace;
+
+    /**
+     * The next baseline of each baseline, a baseline without one fails the query
+     */
+    private final Map<Baseline, Baseline> next = new HashMap<>();
+
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger concurrent = new AtomicInteger();
+
+    @Before
+    public void initialize() throws Exception {
+        listener = Mockito.mock( TaskListener.class );
+        Mockito.when( listener.getLogger() ).thenReturn( System.out );
+        workspace = PowerMockito.mock( FilePath.class );
+    }
+
+    private Baseline baseline( String component, String name, long date ) {
+        Component c = PowerMockito.mock( Component.class );
+        Mockito.when( c.getFullyQualifiedName() ).thenReturn( "component:" + component + "@\\pvob" );
+        Stream s = PowerMockito.mock( Stream.class );
+        Mockito.when( s.getFullyQualifiedName() ).thenReturn( "stream:" + component + "_int@\\pvob" );
+        Baseline b = PowerMockito.mock( Baseline.class );
+        Mockito.when( b.getFullyQualifiedName() ).thenReturn( "baseline:" + name + "@\\pvob" );
+        Mockito.when( b.getComponent() ).thenReturn( c );
+        Mockito.when( b.getStream() ).thenReturn( s );
+        Mockito.when( b.getDate() ).thenReturn( new Date( date ) );
+        return b;
+    }
+
+    private ClearCaseUCMConfiguration configuration( Baseline... baselines ) {
+        List<ClearCaseUCMConfigurationComponent> components = new ArrayList<>();
+        for( Baseline b : baselines ) {
+            components.add( new ClearCaseUCMConfigurationComponent( b, Project.PromotionLevel.INITIAL, false ) );
+        }
+        return new ClearCaseUCMConfiguration( components );
+    }
+
+    /**
+     * Answer the queries once as many are running at the same time
+     */
+    private void answer( final int together ) throws Exception {
+        final CountDownLatch latch = new CountDownLatch( together );
+        PowerMockito.when( workspace.act( Mockito.any( NextBaseline.class ) ) ).thenAnswer( new Answer<Baseline>() {
+            @Override
+            public Baseline answer( InvocationOnMock invocation ) throws Throwable {
+                int now = running.incrementAndGet();
+                synchronized( concurrent ) {
+                    if( now > concurrent.get() ) {
+                        concurrent.set( now );
+                    }
+                }
+                try {
+                    latch.countDown();
+                    latch.await( 5, TimeUnit.SECONDS );
+                    Baseline offset = Whitebox.getInternalState( invocation.getArguments()[0], "offset" );
+                    Baseline b = next.get( offset );
+                    if( b == null ) {
+                        throw new IOException( "No baselines after " + offset );
+                    }
+                    return b;
+                } finally {
+                    running.decrementAndGet();
+                }
+            }
+        } );
+    }
+
+    @Test
+    public void testOldestNextBaselineIsChosen() throws Exception {
+        Baseline a1 = baseline( "a", "a1", 1000 );
+        Baseline b1 = baseline( "b", "b1", 1000 );
+        Baseline c1 = baseline( "c", "c1", 1000 );
+        next.put( a1, baseline( "a", "a2", 3000 ) );
+        next.put( b1, baseline( "b", "b2", 2000 ) );
+        answer( 3 );
+
+        ClearCaseUCM ccucm = new ClearCaseUCM( "" );
+        ccucm.setResolveThreads( 3 );
+        ClearCaseUCMConfiguration current = configuration( a1, b1, c1 );
+        ClearCaseUCMConfiguration other = (ClearCaseUCMConfiguration) ccucm.nextConfiguration( listener, current, workspace );
+
+        /* All three were queried together, and the failed query of c is skipped */
+        assertThat( concurrent.get(), is( 3 ) );
+        assertThat( other.getList().get( 0 ).getBaselineName(), is( "a1@\\pvob" ) );
+        assertThat( other.getList().get( 1 ).getBaselineName(), is( "b2@\\pvob" ) );
+        assertThat( other.getList().get( 1 ).isChangedLast(), is( true ) );
+        assertThat( other.getList().get( 2 ).getBaselineName(), is( "c1@\\pvob" ) );
+        assertThat( current.getList().get( 1 ).getBaselineName(), is( "b1@\\pvob" ) );
+    }
+
+    @Test
+    public void testNewestMovesEveryComponent() throws Exception {
+        Baseline a1 = baseline( "a", "a1", 1000 );
+        Baseline b1 = baseline( "b", "b1", 1000 );
+        next.put( a1, baseline( "a", "a5", 3000 ) );
+        next.put( b1, baseline( "b", "b7", 2000 ) );
+        answer( 2 );
+
+        ClearCaseUCM ccucm = new ClearCaseUCM( "" );
+        ccucm.setUseNewest( true );
+        ccucm.setResolveThreads( 2 );
+        ClearCaseUCMConfiguration other = (ClearCaseUCMConfiguration) ccucm.nextConfiguration( listener, configuration( a1, b1 ), workspace );
+
+        assertThat( other.getList().get( 0 ).getBaselineName(), is( "a5@\\pvob" ) );
+        assertThat( other.getList().get( 1 ).getBaselineName(), is( "b7@\\pvob" ) );
+    }
+
+    @Test
+    public void testNothingNew() throws Exception {
+        Baseline a1 = baseline( "a", "a1", 1000 );
+        answer( 1 );
+
+        ClearCaseUCM ccucm = new ClearCaseUCM( "" );
+        assertThat( ccucm.nextConfiguration( listener, configuration( a1 ), workspace ) == null, is( true ) );
+    }
+}
@@ -0,0 +1,64 @@
+package net.praqma.jenkins.configrotator.unit.scm.git;
+
+import java.io.File;
+import net.praqma.jenkins.configrotator.scm.git.Checkout;
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class CheckoutTest {
+
+    @Rule
+    public GitRepositories repositories = new GitRepositories();
+
+    private Git git;
+    private File path;
+
+    @Before
+    public void initialize() throws Exception {
+        git = repositories.init( "repo" );
+        path = git.getRepository().getWorkTree();
+    }
+
+    private RevCommit commit( String file, String content ) throws Exception {
+        return GitRepositories.commit( git, file, content );
+    }
+
+    private void checkout( RevCommit commit ) throws Exception {
+        new Checkout( "repo", "master", commit.getName() ).invoke( repositories.getRoot(), null );
+    }
+
+    @Test
+    public void testOnlyChangedPathsAreUpdated() throws Exception {
+        commit( "a.txt", "1" );
+        RevCommit c2 = commit( "b.txt", "2" );
+        git.rm().addFilepattern( "b.txt" ).call();
+        RevCommit c3 = commit( "a.txt", "3" );
+
+        checkout( c2 );
+        assertThat( FileUtils.readFileToString( new File( path, "a.txt" ) ), is( "1" ) );
+        assertThat( new File( path, "b.txt" ).exists(), is( true ) );
+
+        checkout( c3 );
+        assertThat( FileUtils.readFileToString( new File( path, "a.txt" ) ), is( "3" ) );
+        assertThat( new File( path, "b.txt" ).exists(), is( false ) );
+        assertThat( FileUtils.readFileToString( new File( git.getRepository().getDirectory(), Checkout.MARKER ) ), is( c3.getName() ) );
+    }
+
+    @Test
+    public void testModifiedWorkingTreeIsRestored() throws Exception {
+        RevCommit c1 = commit( "a.txt", "1" );
+
+        checkout( c1 );
+        FileUtils.write( new File( path, "a.txt" ), "modified" );
+        checkout( c1 );
+
+        assertThat( FileUtils.readFileToString( new File( path, "a.txt" ) ), is( "1" ) );
+    }
+}
@@ -0,0 +1,116 @@
+package net.praqma.jenkins.configrotator.unit.scm.git;
+
+import java.io.File;
+import net.praqma.jenkins.configrotator.scm.git.FirstParentIndex;
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.MergeCommand;
+import org.eclipse.jgit.api.ResetCommand;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class FirstParentIndexTest {
+
+    @Rule
+    public GitRepositories repositories = new GitRepositories();
+
+    private Git git;
+    private File path;
+
+    @Before
+    public void initialize() throws Exception {
+        git = repositories.init( "repo" );
+        path = git.getRepository().getWorkTree();
+    }
+
+    private RevCommit commit( String content ) throws Exception {
+        return GitRepositories.commit( git, "file.txt", content );
+    }
+
+    @Test
+    public void testNextAndFastForward() throws Exception {
+        RevCommit c1 = commit( "1" );
+        RevCommit c2 = commit( "2" );
+
+        FirstParentIndex index = FirstParentIndex.get( path, git.getRepository().getDirectory(), "master" );
+        index.update( git.getRepository(), c2 );
+        assertThat( index.next( c1 ), is( (ObjectId) c2 ) );
+        assertThat( index.next( c2 ), is( nullValue() ) );
+
+        RevCommit c3 = commit( "3" );
+        index.update( git.getRepository(), c3 );
+        assertThat( index.next( c2 ), is( (ObjectId) c3 ) );
+        assertThat( index.getTip(), is( (ObjectId) c3 ) );
+    }
+
+    @Test
+    public void testRewrittenHistory() throws Exception {
+        RevCommit c1 = commit( "1" );
+        RevCommit c2 = commit( "2" );
+        RevCommit c3 = commit( "3" );
+
+        FirstParentIndex index = FirstParentIndex.get( path, git.getRepository().getDirectory(), "master" );
+        index.update( git.getRepository(), c3 );
+
+        /* Force push like rewrite of the last commit */
+        git.reset().setMode( ResetCommand.ResetType.HARD ).setRef( c2.getName() ).call();
+        RevCommit c4 = commit( "4" );
+        index.update( git.getRepository(), c4 );
+
+        assertThat( index.contains( c3 ), is( false ) );
+        assertThat( index.next( c1 ), is( (ObjectId) c2 ) );
+        assertThat( index.next( c2 ), is( (ObjectId) c4 ) );
+
+        /* The index is read back from disk */
+        FirstParentIndex reloaded = FirstParentIndex.get( path, git.getRepository().getDirectory(), "master" );
+        assertThat( reloaded.getTip(), is( (ObjectId) c4 ) );
+    }
+
+    @Test
+    public void testMergeCommitsAreSkipped() throws Exception {
+        RevCommit c1 = commit( "1" );
+        git.branchCreate().setName( "topic" ).call();
+        RevCommit c2 = commit( "2" );
+
+        git.checkout().setName( "topic" ).call();
+        FileUtils.write( new File( path, "other.txt" ), "topic" );
+        git.add().addFilepattern( "other.txt" ).call();
+        RevCommit t1 = git.commit().setMessage( "topic" ).call();
+
+        git.checkout().setName( "master" ).call();
+        git.merge().include( t1 ).setFastForward( MergeCommand.FastForwardMode.NO_FF ).setMessage( "merge" ).call();
+        ObjectId merge = git.getRepository().resolve( "HEAD" );
+        RevCommit c3 = commit( "3" );
+
+        FirstParentIndex index = FirstParentIndex.get( path, git.getRepository().getDirectory(), "master" );
+        index.update( git.getRepository(), c3 );
+        assertThat( index.contains( merge ), is( true ) );
+        assertThat( index.next( c1 ), is( (ObjectId) c2 ) );
+        assertThat( index.next( c2 ), is( (ObjectId) c3 ) );
+
+        /* The merge commits are read back from disk */
+        FirstParentIndex.forget( path.getAbsolutePath() );
+        FirstParentIndex reloaded = FirstParentIndex.get( path, git.getRepository().getDirectory(), "master" );
+        assertThat( reloaded.next( c2 ), is( (ObjectId) c3 ) );
+    }
+
+    @Test
+    public void testForget() throws Exception {
+        RevCommit c1 = commit( "1" );
+        FirstParentIndex index = FirstParentIndex.get( path, git.getRepository().getDirectory(), "master" );
+        index.update( git.getRepository(), c1 );
+
+        assertTrue( FirstParentIndex.forget( path.getAbsolutePath() ) > 0 );
+        assertThat( FirstParentIndex.get( path, git.getRepository().getDirectory(), "master" ), is( not( sameInstance( index ) ) ) );
+    }
+}
@@ -0,0 +1,72 @@
+package net.praqma.jenkins.configrotator.unit.scm.git;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import net.praqma.jenkins.configrotator.scm.git.RepositoryPool;
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.rules.ExternalResource;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Git repositories in a temporary folder, closed and forgotten by the {@link RepositoryPool} after each test.
+ */
+public class GitRepositories extends ExternalResource {
+
+    private final TemporaryFolder folder = new TemporaryFolder();
+    private final List<Git> repositories = new ArrayList<>();
+
+    @Override
+    protected void before() throws Throwable {
+        folder.create();
+    }
+
+    @Override
+    protected void after() {
+        for( Git git : repositories ) {
+            git.close();
+        }
+        RepositoryPool.clear();
+        folder.delete();
+    }
+
+    public File getRoot() {
+        return folder.getRoot();
+    }
+
+    public File newFolder( String name ) throws IOException {
+        return folder.newFolder( name );
+    }
+
+    /**
+     * @param name the name of the repository in the temporary folder
+     * @return a new repository
+     */
+    public Git init( String name ) throws Exception {
+        return init( folder.newFolder( name ) );
+    }
+
+    /**
+     * @param path the work tree of the repository
+     * @return a new repository
+     */
+    public Git init( File path ) throws Exception {
+        Git git = Git.init().setDirectory( path ).call();
+        repositories.add( git );
+        return git;
+    }
+
+    /**
+     * Write a file of the work tree and commit it.
+     *
+     * @return the commit
+     */
+    public static RevCommit commit( Git git, String file, String content ) throws Exception {
+        FileUtils.write( new File( git.getRepository().getWorkTree(), file ), content );
+        git.add().addFilepattern( file ).call();
+        return git.commit().setMessage( content ).call();
+    }
+}
@@ -0,0 +1,76 @@
+package net.praqma.jenkins.configrotator.unit.scm.git;
+
+import java.io.File;
+import net.praqma.jenkins.configrotator.scm.git.MirrorCache;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class MirrorCacheTest {
+
+    private static final String ROOT = MirrorCache.class.getName() + ".root";
+
+    @Rule
+    public GitRepositories repositories = new GitRepositories();
+
+    private Git origin;
+    private String url;
+
+    @Before
+    public void initialize() throws Exception {
+        System.setProperty( ROOT, repositories.newFolder( "mirrors" ).getAbsolutePath() );
+        origin = repositories.init( "origin" );
+        url = origin.getRepository().getWorkTree().toURI().toString();
+    }
+
+    @After
+    public void cleanup() {
+        System.clearProperty( ROOT );
+    }
+
+    private RevCommit commit( String content ) throws Exception {
+        return GitRepositories.commit( origin, "file.txt", content );
+    }
+
+    @Test
+    public void testCloneBorrowsObjectsFromMirror() throws Exception {
+        RevCommit c1 = commit( "1" );
+
+        File mirror = MirrorCache.update( url );
+        File local = new File( repositories.getRoot(), "workspace" );
+        MirrorCache.cloneFrom( url, mirror, local );
+
+        assertThat( new File( local, ".git/objects/info/alternates" ).exists(), is( true ) );
+        assertThat( new File( local, "file.txt" ).exists(), is( true ) );
+
+        Git clone = Git.open( local );
+        try {
+            assertThat( clone.getRepository().resolve( "HEAD" ), is( (ObjectId) c1 ) );
+            assertThat( clone.getRepository().getConfig().getString( "remote", "origin", "url" ), is( url ) );
+        } finally {
+            clone.close();
+        }
+    }
+
+    @Test
+    public void testMirrorIsUpdated() throws Exception {
+        commit( "1" );
+        File mirror = MirrorCache.update( url );
+        RevCommit c2 = commit( "2" );
+        MirrorCache.update( url );
+
+        Git git = Git.open( mirror );
+        try {
+            assertThat( git.getRepository().resolve( "refs/heads/master" ), is( (ObjectId) c2 ) );
+        } finally {
+            git.close();
+        }
+    }
+}
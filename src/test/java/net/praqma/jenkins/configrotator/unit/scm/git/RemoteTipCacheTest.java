@@ -0,0 +1,107 @@
+package net.praqma.jenkins.configrotator.unit.scm.git;
+
+import hudson.model.FreeStyleProject;
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import net.praqma.jenkins.configrotator.scm.git.GitConfiguration;
+import net.praqma.jenkins.configrotator.scm.git.GitConfigurationComponent;
+import net.praqma.jenkins.configrotator.scm.git.ListRemoteTips;
+import net.praqma.jenkins.configrotator.scm.git.RemoteTipCache;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class RemoteTipCacheTest {
+
+    @Rule
+    public GitRepositories repositories = new GitRepositories();
+
+    private Git origin;
+    private String url;
+
+    @Before
+    public void initialize() throws Exception {
+        origin = repositories.init( "origin" );
+        url = origin.getRepository().getWorkTree().toURI().toString();
+    }
+
+    private FreeStyleProject project( String name, File root ) {
+        FreeStyleProject project = Mockito.mock( FreeStyleProject.class );
+        Mockito.when( project.getFullName() ).thenReturn( name );
+        Mockito.when( project.getRootDir() ).thenReturn( root );
+        return project;
+    }
+
+    private GitConfiguration configuration( RevCommit commit ) {
+        return new GitConfiguration( Collections.singletonList( new GitConfigurationComponent( "component", url, "master", commit, false ) ) );
+    }
+
+    private Map<String, String> tips( String commitId ) {
+        Map<String, String> tips = new HashMap<>();
+        tips.put( ListRemoteTips.key( url, "master" ), commitId );
+        return tips;
+    }
+
+    @Test
+    public void testTipsAreListed() throws Exception {
+        RevCommit c1 = GitRepositories.commit( origin, "file.txt", "1" );
+        GitConfigurationComponent fixed = new GitConfigurationComponent( "fixed", "unreachable", "master", c1, true );
+        GitConfigurationComponent moving = new GitConfigurationComponent( "component", url, null, c1, false );
+
+        /* Fixed components are not listed, and the branch defaults to master */
+        Map<String, String> tips = new ListRemoteTips( Arrays.asList( fixed, moving ), 2 ).invoke( null, null );
+        assertThat( tips, is( tips( c1.getName() ) ) );
+    }
+
+    @Test
+    public void testUnchangedTips() throws Exception {
+        RevCommit c1 = GitRepositories.commit( origin, "file.txt", "1" );
+        RevCommit c2 = GitRepositories.commit( origin, "file.txt", "2" );
+        File root = repositories.newFolder( "job" );
+        FreeStyleProject project = project( "tips", root );
+
+        RemoteTipCache cache = RemoteTipCache.get( project );
+        assertFalse( cache.isUnchanged( configuration( c1 ), tips( c1.getName() ) ) );
+
+        cache.record( project, configuration( c1 ), tips( c1.getName() ) );
+        assertTrue( cache.isUnchanged( configuration( c1 ), tips( c1.getName() ) ) );
+        assertFalse( cache.isUnchanged( configuration( c1 ), tips( c2.getName() ) ) );
+        assertFalse( cache.isUnchanged( configuration( c2 ), tips( c1.getName() ) ) );
+
+        /* Read back from the job directory, as after a restart */
+        assertTrue( new File( root, RemoteTipCache.FILE_NAME ).exists() );
+        RemoteTipCache read = RemoteTipCache.get( project( "tips-restarted", root ) );
+        assertTrue( read.isUnchanged( configuration( c1 ), tips( c1.getName() ) ) );
+    }
+
+    @Test
+    public void testRecreatedJobPollsAgain() throws Exception {
+        RevCommit c1 = GitRepositories.commit( origin, "file.txt", "1" );
+        FreeStyleProject project = project( "recreated", repositories.newFolder( "deleted" ) );
+        RemoteTipCache.get( project ).record( project, configuration( c1 ), tips( c1.getName() ) );
+
+        new RemoteTipCache.ItemListenerImpl().onDeleted( project );
+        FreeStyleProject recreated = project( "recreated", repositories.newFolder( "recreated" ) );
+        assertFalse( RemoteTipCache.get( recreated ).isUnchanged( configuration( c1 ), tips( c1.getName() ) ) );
+    }
+
+    @Test
+    public void testTipsFollowRename() throws Exception {
+        FreeStyleProject project = project( "renamed", repositories.newFolder( "renamed" ) );
+        RemoteTipCache cache = RemoteTipCache.get( project );
+
+        new RemoteTipCache.ItemListenerImpl().onLocationChanged( project, "renamed", "renamed-again" );
+        assertThat( RemoteTipCache.get( project( "renamed-again", repositories.newFolder( "renamed-again" ) ) ) == cache, is( true ) );
+    }
+}
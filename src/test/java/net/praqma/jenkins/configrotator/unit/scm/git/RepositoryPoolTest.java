@@ -0,0 +1,49 @@
+package net.praqma.jenkins.configrotator.unit.scm.git;
+
+import java.io.File;
+import net.praqma.jenkins.configrotator.scm.git.RepositoryPool;
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.lib.Repository;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class RepositoryPoolTest {
+
+    @Rule
+    public GitRepositories repositories = new GitRepositories();
+
+    @Test
+    public void testRepositoryIsReused() throws Exception {
+        File gitDir = repositories.init( "repo" ).getRepository().getDirectory();
+
+        Repository first = RepositoryPool.acquire( gitDir );
+        RepositoryPool.release( first );
+        Repository second = RepositoryPool.acquire( gitDir );
+        RepositoryPool.release( second );
+
+        assertThat( second, is( sameInstance( first ) ) );
+    }
+
+    @Test
+    public void testRecreatedRepositoryIsReopened() throws Exception {
+        File path = repositories.newFolder( "repo" );
+        File gitDir = repositories.init( path ).getRepository().getDirectory();
+
+        Repository first = RepositoryPool.acquire( gitDir );
+        RepositoryPool.release( first );
+
+        /* Wipe out the workspace and clone again */
+        FileUtils.deleteDirectory( path );
+        repositories.init( path );
+
+        Repository second = RepositoryPool.acquire( gitDir );
+        RepositoryPool.release( second );
+
+        assertThat( second, is( not( sameInstance( first ) ) ) );
+    }
+}
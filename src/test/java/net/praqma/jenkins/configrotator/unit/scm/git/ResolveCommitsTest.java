@@ -0,0 +1,129 @@
+package net.praqma.jenkins.configrotator.unit.scm.git;
+
+import hudson.model.TaskListener;
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import net.praqma.jenkins.configrotator.scm.git.GitConfigurationComponent;
+import net.praqma.jenkins.configrotator.scm.git.GitTarget;
+import net.praqma.jenkins.configrotator.scm.git.MirrorCache;
+import net.praqma.jenkins.configrotator.scm.git.ResolveCommits;
+import net.praqma.jenkins.configrotator.scm.git.ResolvedCommit;
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class ResolveCommitsTest {
+
+    private static final String ROOT = MirrorCache.class.getName() + ".root";
+
+    @Rule
+    public GitRepositories repositories = new GitRepositories();
+
+    private Git origin;
+    private String url;
+    private File workspace;
+    private TaskListener listener;
+
+    @Before
+    public void initialize() throws Exception {
+        System.setProperty( ROOT, repositories.newFolder( "mirrors" ).getAbsolutePath() );
+        origin = repositories.init( "origin" );
+        url = origin.getRepository().getWorkTree().toURI().toString();
+        workspace = repositories.newFolder( "workspace" );
+        listener = Mockito.mock( TaskListener.class );
+        Mockito.when( listener.getLogger() ).thenReturn( System.out );
+    }
+
+    @After
+    public void cleanup() {
+        System.clearProperty( ROOT );
+    }
+
+    private RevCommit commit( String content ) throws Exception {
+        return GitRepositories.commit( origin, "file.txt", content );
+    }
+
+    private List<ResolvedCommit> initial( RevCommit commit ) throws Exception {
+        GitTarget target = new GitTarget( "component", url, "master", commit.getName(), false );
+        return ResolveCommits.initial( listener, Collections.singletonList( target ), 1 ).invoke( workspace, null );
+    }
+
+    private GitConfigurationComponent component( RevCommit commit ) {
+        return new GitConfigurationComponent( "component", url, "master", commit, false );
+    }
+
+    @Test
+    public void testTargetsAreResolvedInOrder() throws Exception {
+        RevCommit c1 = commit( "1" );
+        RevCommit c2 = commit( "2" );
+
+        String missing = new File( repositories.getRoot(), "missing" ).toURI().toString();
+        List<GitTarget> targets = Arrays.asList(
+                new GitTarget( "first", url, "master", c1.getName(), false ),
+                new GitTarget( "missing", missing, "master", null, false ),
+                new GitTarget( "head", url, "master", null, false ) );
+        List<ResolvedCommit> resolved = ResolveCommits.initial( listener, targets, 3 ).invoke( workspace, null );
+
+        /* A failure is reported for its target only */
+        assertThat( resolved.size(), is( 3 ) );
+        assertThat( resolved.get( 0 ).getName(), is( "first" ) );
+        assertThat( resolved.get( 0 ).getCommitId(), is( c1.getName() ) );
+        assertThat( resolved.get( 0 ).getCommitTime(), is( c1.getCommitTime() ) );
+        assertTrue( resolved.get( 1 ).isFailed() );
+        assertThat( resolved.get( 2 ).getCommitId(), is( c2.getName() ) );
+    }
+
+    @Test
+    public void testNextAndPendingCommits() throws Exception {
+        RevCommit c1 = commit( "1" );
+        initial( c1 );
+        RevCommit c2 = commit( "2" );
+        RevCommit c3 = commit( "3" );
+
+        List<ResolvedCommit> next = ResolveCommits.next( Collections.singletonList( component( c1 ) ), 1 ).invoke( workspace, null );
+        assertThat( next.get( 0 ).getCommitId(), is( c2.getName() ) );
+        assertThat( next.get( 0 ).getPending().size(), is( 1 ) );
+
+        List<ResolvedCommit> pending = ResolveCommits.pending( Collections.singletonList( component( c1 ) ), 5, 1 ).invoke( workspace, null );
+        List<ResolvedCommit> commits = pending.get( 0 ).getPending();
+        assertThat( commits.size(), is( 2 ) );
+        assertThat( commits.get( 0 ).getCommitId(), is( c2.getName() ) );
+        assertThat( commits.get( 1 ).getCommitId(), is( c3.getName() ) );
+
+        List<ResolvedCommit> none = ResolveCommits.next( Collections.singletonList( component( c3 ) ), 1 ).invoke( workspace, null );
+        assertThat( none.get( 0 ).isFound(), is( false ) );
+    }
+
+    @Test
+    public void testPollingLeavesTheCloneAlone() throws Exception {
+        RevCommit c1 = commit( "1" );
+        initial( c1 );
+        RevCommit c2 = commit( "2" );
+
+        List<ResolvedCommit> next = ResolveCommits.next( Collections.singletonList( component( c1 ) ), 1 ).invoke( workspace, null );
+        assertThat( next.get( 0 ).getCommitId(), is( c2.getName() ) );
+
+        /* Only the remote tracking branch has moved */
+        File local = new File( workspace, "component" );
+        assertThat( FileUtils.readFileToString( new File( local, "file.txt" ) ), is( "1" ) );
+        Git clone = Git.open( local );
+        try {
+            assertThat( clone.getRepository().resolve( "HEAD" ), is( (ObjectId) c1 ) );
+            assertThat( clone.getRepository().resolve( "refs/remotes/origin/master" ), is( (ObjectId) c2 ) );
+        } finally {
+            clone.close();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package net.praqma.jenkins.configrotator.unit.scm.git;
+
+import hudson.model.TaskListener;
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import net.praqma.jenkins.configrotator.scm.git.Checkout;
+import net.praqma.jenkins.configrotator.scm.git.GitConfigurationComponent;
+import net.praqma.jenkins.configrotator.scm.git.GitTarget;
+import net.praqma.jenkins.configrotator.scm.git.ResolveCommits;
+import net.praqma.jenkins.configrotator.scm.git.ResolvedCommit;
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.StoredConfig;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The shallow and blobless clones are made by the command line git, the tests are skipped without it.
+ */
+public class ShallowCloneTest {
+
+    @Rule
+    public GitRepositories repositories = new GitRepositories();
+
+    private Git origin;
+    private String url;
+    private File workspace;
+    private TaskListener listener;
+
+    @Before
+    public void initialize() throws Exception {
+        Assume.assumeTrue( hasGit() );
+
+        origin = repositories.init( "origin" );
+        StoredConfig config = origin.getRepository().getConfig();
+        config.setBoolean( "uploadpack", null, "allowFilter", true );
+        config.save();
+
+        /* Local paths are cloned in full, a file URL is cloned like a remote */
+        url = "file://" + origin.getRepository().getWorkTree().getAbsolutePath();
+        workspace = repositories.newFolder( "workspace" );
+        listener = Mockito.mock( TaskListener.class );
+        Mockito.when( listener.getLogger() ).thenReturn( System.out );
+    }
+
+    private static boolean hasGit() {
+        try {
+            return new ProcessBuilder( "git", "--version" ).start().waitFor() == 0;
+        } catch( Exception e ) {
+            return false;
+        }
+    }
+
+    private RevCommit commit( String content ) throws Exception {
+        return GitRepositories.commit( origin, "file.txt", content );
+    }
+
+    private ResolvedCommit initial( GitTarget target ) throws Exception {
+        return ResolveCommits.initial( listener, Collections.singletonList( target ), 1 ).invoke( workspace, null ).get( 0 );
+    }
+
+    @Test
+    public void testShallowCloneIsDeepenedToTheCommit() throws Exception {
+        RevCommit c1 = commit( "1" );
+        RevCommit c2 = commit( "2" );
+        commit( "3" );
+
+        GitTarget target = new GitTarget( "shallow", url, "master", c1.getName(), false );
+        target.setDepth( 1 );
+        assertThat( initial( target ).getCommitId(), is( c1.getName() ) );
+        assertTrue( new File( workspace, "shallow/.git/shallow" ).exists() );
+
+        GitConfigurationComponent component = new GitConfigurationComponent( "shallow", url, "master", c1, false );
+        List<ResolvedCommit> next = ResolveCommits.next( Collections.singletonList( component ), 1 ).invoke( workspace, null );
+        assertThat( next.get( 0 ).getCommitId(), is( c2.getName() ) );
+    }
+
+    @Test
+    public void testBloblessCloneIsCheckedOut() throws Exception {
+        commit( "1" );
+        RevCommit c2 = commit( "2" );
+
+        GitTarget target = new GitTarget( "blobless", url, "master", null, false );
+        target.setBlobless( true );
+        assertThat( initial( target ).getCommitId(), is( c2.getName() ) );
+        File local = new File( workspace, "blobless" );
+        assertThat( FileUtils.readFileToString( new File( local, ".git/config" ) ).toLowerCase(), containsString( "partialclonefilter" ) );
+
+        new Checkout( "blobless", "master", c2.getName() ).invoke( workspace, null );
+        assertThat( FileUtils.readFileToString( new File( local, "file.txt" ) ), is( "2" ) );
+    }
+}
@@ -0,0 +1,181 @@
+package net.praqma.jenkins.configrotator.unit.scm.git;
+
+import hudson.FilePath;
+import hudson.model.FreeStyleProject;
+import hudson.model.TaskListener;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import net.praqma.jenkins.configrotator.AbstractConfiguration;
+import net.praqma.jenkins.configrotator.Bisection;
+import net.praqma.jenkins.configrotator.ConfigurationRotatorBuildAction;
+import net.praqma.jenkins.configrotator.RotationStrategy;
+import net.praqma.jenkins.configrotator.scm.git.GitConfiguration;
+import net.praqma.jenkins.configrotator.scm.git.GitConfigurationComponent;
+import net.praqma.jenkins.configrotator.scm.git.GitTarget;
+import net.praqma.jenkins.configrotator.scm.git.MirrorCache;
+import net.praqma.jenkins.configrotator.scm.git.ResolveCommits;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The upcoming configurations of a Git rotation are distinct configurations, each a step from the one before.
+ */
+public class UpcomingConfigurationsTest {
+
+    private static final String ROOT = MirrorCache.class.getName() + ".root";
+
+    @Rule
+    public GitRepositories repositories = new GitRepositories();
+
+    private Git first;
+    private Git second;
+    private File workspace;
+    private TaskListener listener;
+
+    @Before
+    public void initialize() throws Exception {
+        System.setProperty( ROOT, repositories.newFolder( "mirrors" ).getAbsolutePath() );
+        first = repositories.init( "first" );
+        second = repositories.init( "second" );
+        workspace = repositories.newFolder( "workspace" );
+        listener = Mockito.mock( TaskListener.class );
+        Mockito.when( listener.getLogger() ).thenReturn( System.out );
+    }
+
+    @After
+    public void cleanup() {
+        System.clearProperty( ROOT );
+    }
+
+    private static String url( Git repository ) {
+        return repository.getRepository().getWorkTree().toURI().toString();
+    }
+
+    private GitConfiguration configuration( RevCommit a, RevCommit b ) throws Exception {
+        List<GitTarget> targets = new ArrayList<>();
+        targets.add( new GitTarget( "first", url( first ), "master", a.getName(), false ) );
+        targets.add( new GitTarget( "second", url( second ), "master", b.getName(), false ) );
+        ResolveCommits.initial( listener, targets, 1 ).invoke( workspace, null );
+
+        List<GitConfigurationComponent> components = new ArrayList<>();
+        components.add( new GitConfigurationComponent( "first", url( first ), "master", a, false ) );
+        components.add( new GitConfigurationComponent( "second", url( second ), "master", b, false ) );
+        return new GitConfiguration( components );
+    }
+
+    private static String commit( AbstractConfiguration configuration, int component ) {
+        return ( (GitConfiguration) configuration ).getList().get( component ).getCommitId();
+    }
+
+    private static boolean changed( AbstractConfiguration configuration, int component ) {
+        return ( (GitConfiguration) configuration ).getList().get( component ).isChangedLast();
+    }
+
+    private List<AbstractConfiguration> upcoming( GitConfiguration configuration ) throws Exception {
+        net.praqma.jenkins.configrotator.scm.git.Git git = new net.praqma.jenkins.configrotator.scm.git.Git( Collections.<GitTarget>emptyList() );
+        return git.upcomingConfigurations( listener, configuration, new FilePath( workspace ), 10, new RotationStrategy.History( 2 ) );
+    }
+
+    private ConfigurationRotatorBuildAction result( AbstractConfiguration configuration, boolean compatible, int number ) {
+        ConfigurationRotatorBuildAction action = Mockito.mock( ConfigurationRotatorBuildAction.class );
+        Mockito.when( action.getConfigurationWithOutCast() ).thenReturn( configuration );
+        Mockito.when( action.isCompatible() ).thenReturn( compatible );
+        Mockito.when( action.getNumber() ).thenReturn( number );
+        return action;
+    }
+
+    @Test
+    public void testStepsAreDistinct() throws Exception {
+        RevCommit a1 = GitRepositories.commit( first, "file.txt", "a1" );
+        RevCommit b1 = GitRepositories.commit( second, "file.txt", "b1" );
+        GitConfiguration configuration = configuration( a1, b1 );
+        configuration.getList().get( 1 ).setChangedLast( true );
+        String fingerprint = configuration.getFingerprint();
+
+        RevCommit a2 = GitRepositories.commit( first, "file.txt", "a2" );
+        Thread.sleep( 1000 );
+        RevCommit b2 = GitRepositories.commit( second, "file.txt", "b2" );
+        Thread.sleep( 1000 );
+        RevCommit a3 = GitRepositories.commit( first, "file.txt", "a3" );
+
+        List<AbstractConfiguration> upcoming = upcoming( configuration );
+
+        /* The oldest pending commit first */
+        assertThat( upcoming.size(), is( 3 ) );
+        assertThat( commit( upcoming.get( 0 ), 0 ), is( a2.getName() ) );
+        assertThat( commit( upcoming.get( 0 ), 1 ), is( b1.getName() ) );
+        assertTrue( changed( upcoming.get( 0 ), 0 ) );
+        assertFalse( changed( upcoming.get( 0 ), 1 ) );
+
+        assertThat( commit( upcoming.get( 1 ), 0 ), is( a2.getName() ) );
+        assertThat( commit( upcoming.get( 1 ), 1 ), is( b2.getName() ) );
+        assertFalse( changed( upcoming.get( 1 ), 0 ) );
+        assertTrue( changed( upcoming.get( 1 ), 1 ) );
+
+        assertThat( commit( upcoming.get( 2 ), 0 ), is( a3.getName() ) );
+        assertThat( commit( upcoming.get( 2 ), 1 ), is( b2.getName() ) );
+        assertTrue( changed( upcoming.get( 2 ), 0 ) );
+
+        /* The configuration they are from is untouched */
+        assertThat( commit( configuration, 0 ), is( a1.getName() ) );
+        assertThat( commit( configuration, 1 ), is( b1.getName() ) );
+        assertFalse( changed( configuration, 0 ) );
+        assertTrue( changed( configuration, 1 ) );
+        assertThat( configuration.getFingerprint(), is( fingerprint ) );
+    }
+
+    @Test
+    public void testBatchIsBisected() throws Exception {
+        RevCommit a1 = GitRepositories.commit( first, "file.txt", "a1" );
+        RevCommit b1 = GitRepositories.commit( second, "file.txt", "b1" );
+        GitConfiguration base = configuration( a1, b1 );
+
+        RevCommit a2 = GitRepositories.commit( first, "file.txt", "a2" );
+        Thread.sleep( 1000 );
+        RevCommit b2 = GitRepositories.commit( second, "file.txt", "b2" );
+        Thread.sleep( 1000 );
+        GitRepositories.commit( first, "file.txt", "a3" );
+        List<AbstractConfiguration> batch = upcoming( base );
+
+        FreeStyleProject project = Mockito.mock( FreeStyleProject.class );
+        Mockito.when( project.getFullName() ).thenReturn( "git-batch" );
+        Mockito.when( project.getRootDir() ).thenReturn( repositories.newFolder( "job" ) );
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream( log, true );
+
+        /* The tip is incompatible, the middle step is too, the first is compatible */
+        Bisection bisection = Bisection.get( project );
+        AbstractConfiguration tip = bisection.start( project, base, batch, result( base, true, 1 ) );
+        AbstractConfiguration next = bisection.next( project, result( tip, false, 2 ), out );
+        assertThat( next, sameInstance( batch.get( 1 ) ) );
+        assertThat( commit( next, 0 ), is( a2.getName() ) );
+        assertThat( commit( next, 1 ), is( b2.getName() ) );
+
+        next = bisection.next( project, result( next, false, 3 ), out );
+        assertThat( next, sameInstance( batch.get( 0 ) ) );
+        assertThat( commit( next, 0 ), is( a2.getName() ) );
+        assertThat( commit( next, 1 ), is( b1.getName() ) );
+        assertThat( bisection.next( project, result( next, true, 4 ), out ), nullValue() );
+
+        /* The second change, b2, is isolated */
+        assertThat( log.toString( "UTF-8" ), containsString( "The first incompatible change is 2 of 3" ) );
+        assertThat( log.toString( "UTF-8" ), containsString( "Changed: [second: " + url( second ) + ", master, " + b2.getName() + "]" ) );
+    }
+}